@@ -1,10 +1,9 @@
 import buildlogic.SudokuBuildLogic;
 import userinterface.UserInterfaceImpl;
+import userinterface.logic.ControlLogic;
 import javafx.application.Application;
 import javafx.stage.Stage;
 
-import java.io.IOException;
-
 /**
  * The SudokuApplication class is the main entry point for the Sudoku game
  * application.
@@ -19,6 +18,12 @@ public class SudokuApplication extends Application {
      */
     private UserInterfaceImpl uiImpl;
 
+    /**
+     * The ControlLogic object driving the user interface. It owns the background
+     * threads of the game and is shut down when the application exits.
+     */
+    private ControlLogic controlLogic;
+
     /**
      * The start method is the main entry point for all JavaFX applications.
      * It is called after the init method has returned, and after the system is
@@ -26,21 +31,23 @@ public class SudokuApplication extends Application {
      *
      * @param primaryStage the primary stage for this application, onto which the
      *                     application scene can be set.
-     * @throws IOException if there is an error during the building of the Sudoku
-     *                     game.
      */
     @Override
-    public void start(Stage primaryStage) throws IOException {
-        // Get SudokuGame object for a new game
+    public void start(Stage primaryStage) {
         uiImpl = new UserInterfaceImpl(primaryStage);
 
-        try {
-            // Build the Sudoku game
-            SudokuBuildLogic.build(uiImpl);
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw e;
-        }
+        // Build the Sudoku game; the saved game is loaded in the background
+        controlLogic = SudokuBuildLogic.build(uiImpl);
+    }
+
+    /**
+     * The stop method is called when the application exits.
+     * It waits for pending saves to finish and stops the background threads.
+     */
+    @Override
+    public void stop() {
+        if (controlLogic != null)
+            controlLogic.shutdown();
     }
 
     /**
@@ -1,9 +1,12 @@
 package buildlogic;
 
-import computationlogic.GameLogic;
-import persistence.LocalStorageImpl;
+import computationlogic.PuzzlePool;
+import javafx.application.Platform;
+import metrics.Metrics;
+import persistence.JournalStorageImpl;
+import persistence.PuzzleLibrary;
+import problemdomain.IPuzzleLibrary;
 import problemdomain.IStorage;
-import problemdomain.SudokuGame;
 import userinterface.IUserInterfaceContract;
 import userinterface.logic.ControlLogic;
 
@@ -11,46 +14,57 @@ import java.io.IOException;
 
 /**
  * The SudokuBuildLogic class is responsible for setting up the Sudoku game.
- * It tries to get the game data from local storage. If no game data is found,
- * it generates a new game and updates the game data in local storage.
- * It then creates an instance of ControlLogic, sets it as the event listener
- * for the user interface,
- * and updates the board view to reflect the current state of the game.
+ * It creates the storage, the library of stored puzzles, the pool of
+ * pre-generated games and an instance of ControlLogic, sets it as the event
+ * listener for the user interface, and asks it to load the saved game (or start a new one) in the background.
  */
 public class SudokuBuildLogic {
 
     /**
      * This method is responsible for building the Sudoku game.
-     * It first tries to get the game data from local storage. If no game data is
-     * found,
-     * it generates a new game and updates the game data in local storage.
-     * It then creates an instance of ControlLogic, sets it as the event listener
+     * It creates an instance of ControlLogic, sets it as the event listener
      * for the user interface,
-     * and updates the board view to reflect the current state of the game.
+     * and starts loading the game data from the local snapshot and move journal.
+     * If no game data is found,
+     * a new game is generated and saved instead. Loading happens on the
+     * ControlLogic worker thread, and the board view is updated on the JavaFX
+     * application thread once the game is available.
      *
      * @param userInterface The user interface for the Sudoku game.
-     * @throws IOException If there is an error getting or updating the game data in
-     *                     local storage.
+     * @return The ControlLogic driving the user interface, which must be shut down
+     *         when the application exits.
      */
-    public static void build(IUserInterfaceContract.View userInterface) throws IOException {
-        SudokuGame initialState;
-        IStorage storage = new LocalStorageImpl();
+    public static ControlLogic build(IUserInterfaceContract.View userInterface) {
+        // expose generation, solver, storage and UI latencies over JMX, and print
+        // them periodically if -Dsudoku.metrics.dumpSeconds is set
+        Metrics.registerMBean();
+        Metrics.startLogDumpIfConfigured();
 
-        try {
-            // will throw if no game data is found in local storage
+        // every input appends a few bytes to a move journal, so saves are cheap
+        // enough to write through; the journal is replayed when the game is loaded,
+        // which recovers every move made before a crash. Group commit forces the
+        // journal to disk once a second instead of on every input
+        IStorage storage = new JournalStorageImpl();
 
-            initialState = storage.getGameData();
-        } catch (IOException e) {
+        // start generating games for every difficulty level in the background, so
+        // that New Game does not have to wait for the generator
+        PuzzlePool puzzlePool = new PuzzlePool();
+        puzzlePool.prefill();
 
-            initialState = GameLogic.getNewGame();
-            // this method below will also throw an IOException
-            // if we cannot update the game data. At this point
-            // the application is considered unrecoverable
-            storage.updateGameData(initialState);
+        // new games are served from the puzzles stored by PuzzleGeneratorCli --library
+        // while it has unplayed ones of the selected level, and from the pool after;
+        // only the pool is used while the generator holds the library open
+        IPuzzleLibrary puzzleLibrary = null;
+        try {
+            puzzleLibrary = new PuzzleLibrary();
+        } catch (IOException e) {
+            e.printStackTrace();
         }
 
-        IUserInterfaceContract.EventListener uiLogic = new ControlLogic(storage, userInterface);
+        ControlLogic uiLogic = new ControlLogic(storage, userInterface, puzzlePool, puzzleLibrary,
+                Platform::runLater);
         userInterface.setListener(uiLogic);
-        userInterface.updateBoard(initialState);
+        uiLogic.loadGame();
+        return uiLogic;
     }
 }
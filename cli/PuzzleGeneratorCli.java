@@ -0,0 +1,329 @@
+package cli;
+
+import computationlogic.DifficultyGrader;
+import computationlogic.GameLogic;
+import computationlogic.PuzzleCanonicalizer;
+import computationlogic.SudokuUtilities;
+import constants.Difficulty;
+import constants.SolverType;
+import constants.SolvingTechnique;
+import persistence.CanonicalIndex;
+import persistence.PuzzleLibrary;
+import problemdomain.BoardGeometry;
+import problemdomain.SudokuGame;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * The PuzzleGeneratorCli class generates Sudoku puzzles without the user
+ * interface, for building puzzle packs offline.
+ *
+ * Puzzles are generated in parallel on a ForkJoinPool and written one per line,
+ * as 81 characters in typewriter order with '0' for an empty cell (see
+ * SudokuUtilities.toPuzzleString), in the order in which they were requested.
+ * With --box-size 2, 4 or 5 the puzzles are 4x4, 16x16 or 25x25 instead.
+ * At most a few puzzles per thread are in flight, so memory use does not grow
+ * with the count.
+ *
+ * Puzzle i is generated from a seed derived from the base seed and i, so a run
+ * with an explicit --seed produces the same file whatever the number of threads.
+ *
+ * With --dedupe, every 9x9 puzzle is checked against a CanonicalIndex file and
+ * skipped if the same puzzle up to symmetry is already in it; replacements are
+ * generated from the following indexes, so the output is still reproducible for
+ * a given seed and index file. Puzzles are added to the index once written, so
+ * successive runs with the same index file never repeat a puzzle.
+ *
+ * With --library, every written 9x9 puzzle is also graded and appended to a
+ * PuzzleLibrary, from which the game serves new games.
+ *
+ * Usage: PuzzleGeneratorCli --count N [--difficulty EASY|MEDIUM|HARD|EXPERT]
+ * [--box-size 2|3|4|5] [--threads T] [--seed S] [--out FILE] [--dedupe FILE]
+ * [--library FILE]
+ */
+public class PuzzleGeneratorCli {
+
+    /**
+     * The number of puzzles in flight per worker thread.
+     */
+    private static final int IN_FLIGHT_PER_THREAD = 4;
+
+    /**
+     * The exit status for invalid arguments.
+     */
+    private static final int USAGE_ERROR = 2;
+
+    /**
+     * The number of duplicates in a row after which generation gives up, as the
+     * difficulty level has run out of new puzzles.
+     */
+    private static final int MAX_CONSECUTIVE_DUPLICATES = 10_000;
+
+    /**
+     * Parses the arguments, generates the puzzles and writes them.
+     *
+     * @param args The command line arguments.
+     * @throws IOException If the output cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        long count = -1;
+        Difficulty difficulty = SudokuGame.getDifficulty();
+        BoardGeometry geometry = BoardGeometry.STANDARD;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        String out = null;
+        String dedupe = null;
+        String library = null;
+
+        try {
+            for (int index = 0; index < args.length; index++) {
+                String option = args[index];
+                if (option.equals("--help"))
+                    usage(null);
+                if (index + 1 >= args.length)
+                    usage("Missing value for " + option);
+                String value = args[++index];
+                switch (option) {
+                    case "--count":
+                        count = Long.parseLong(value);
+                        break;
+                    case "--difficulty":
+                        difficulty = Difficulty.valueOf(value.toUpperCase(Locale.ROOT));
+                        break;
+                    case "--box-size":
+                        geometry = BoardGeometry.of(Integer.parseInt(value));
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "--out":
+                        out = value;
+                        break;
+                    case "--dedupe":
+                        dedupe = value;
+                        break;
+                    case "--library":
+                        library = value;
+                        break;
+                    default:
+                        usage("Unknown option " + option);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            usage("Invalid value: " + e.getMessage());
+        }
+        if (count < 0 || threads < 1)
+            usage("--count is required, and --threads must be at least 1");
+        if ((dedupe != null || library != null) && geometry != BoardGeometry.STANDARD)
+            usage("--dedupe and --library only support 9x9 puzzles");
+
+        long start = System.nanoTime();
+        long duplicates;
+        try (CanonicalIndex index = dedupe == null ? null : new CanonicalIndex(new File(dedupe));
+                PuzzleLibrary puzzleLibrary = library == null ? null : new PuzzleLibrary(new File(library));
+                OutputStream stream = out == null ? System.out : new FileOutputStream(out);
+                Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.US_ASCII))) {
+            duplicates = generate(count, geometry, difficulty, seed, threads, index, puzzleLibrary, writer);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("Generated %d %s %s puzzles in %.2f s (%.1f puzzles/s) on %d threads%n", count,
+                geometry, difficulty.getName(), seconds, count / seconds, threads);
+        if (dedupe != null)
+            System.err.printf("Skipped %d duplicates%n", duplicates);
+    }
+
+    /**
+     * Generates 9x9 puzzles in parallel and writes them in order.
+     *
+     * @param count      The number of puzzles.
+     * @param difficulty The difficulty level of the puzzles.
+     * @param seed       The base seed.
+     * @param threads    The number of worker threads.
+     * @param writer     The destination of the puzzle lines.
+     * @throws IOException If the output cannot be written.
+     */
+    public static void generate(long count, Difficulty difficulty, long seed, int threads, Writer writer)
+            throws IOException {
+        generate(count, BoardGeometry.STANDARD, difficulty, seed, threads, writer);
+    }
+
+    /**
+     * Generates puzzles in parallel and writes them in order.
+     *
+     * @param count      The number of puzzles.
+     * @param geometry   The geometry of the board of the puzzles.
+     * @param difficulty The difficulty level of the puzzles.
+     * @param seed       The base seed.
+     * @param threads    The number of worker threads.
+     * @param writer     The destination of the puzzle lines.
+     * @throws IOException If the output cannot be written.
+     */
+    public static void generate(long count, BoardGeometry geometry, Difficulty difficulty, long seed, int threads,
+            Writer writer) throws IOException {
+        generate(count, geometry, difficulty, seed, threads, null, null, writer);
+    }
+
+    /**
+     * Generates puzzles in parallel and writes them in order, skipping those
+     * already in an index and storing them in a library.
+     *
+     * @param count      The number of puzzles to write.
+     * @param geometry   The geometry of the board of the puzzles, which must be
+     *                   9x9 if there is an index or a library.
+     * @param difficulty The difficulty level of the puzzles.
+     * @param seed       The base seed.
+     * @param threads    The number of worker threads.
+     * @param index      The index of the puzzles already stored, which the written
+     *                   puzzles are added to, or null to write every puzzle.
+     * @param library    The library the written puzzles are appended to, with
+     *                   their grade, or null.
+     * @param writer     The destination of the puzzle lines.
+     * @return The number of duplicates skipped.
+     * @throws IOException If the output, the index or the library cannot be
+     *                     written.
+     */
+    public static long generate(long count, BoardGeometry geometry, Difficulty difficulty, long seed, int threads,
+            CanonicalIndex index, PuzzleLibrary library, Writer writer) throws IOException {
+        ExecutorService pool = new ForkJoinPool(threads);
+        Deque<Future<GeneratedPuzzle>> inFlight = new ArrayDeque<>();
+        int window = threads * IN_FLIGHT_PER_THREAD;
+        long duplicates = 0;
+        try {
+            long submitted = 0;
+            long written = 0;
+            int consecutiveDuplicates = 0;
+            while (written < count) {
+                while (submitted < count + duplicates && inFlight.size() < window) {
+                    long puzzleSeed = puzzleSeed(seed, submitted++);
+                    inFlight.add(pool.submit(() -> {
+                        SudokuGame game = GameLogic.getNewGame(geometry, difficulty,
+                                SolverType.CONSTRAINT_PROPAGATION, puzzleSeed);
+                        int[][] grid = library == null ? null : game.getBoard().toGrid();
+                        return new GeneratedPuzzle(SudokuUtilities.toPuzzleString(game.getBoard()),
+                                index == null ? null : PuzzleCanonicalizer.canonicalize(game.getBoard()), grid,
+                                grid == null ? null : new DifficultyGrader().grade(grid));
+                    }));
+                }
+
+                GeneratedPuzzle puzzle = inFlight.poll().get();
+                if (index != null && index.contains(puzzle.canonicalForm)) {
+                    duplicates++;
+                    if (++consecutiveDuplicates >= MAX_CONSECUTIVE_DUPLICATES)
+                        throw new IllegalStateException("No new " + difficulty.getName() + " puzzles after "
+                                + consecutiveDuplicates + " attempts");
+                    continue;
+                }
+                consecutiveDuplicates = 0;
+                writer.write(puzzle.line);
+                writer.write('\n');
+                if (library != null)
+                    library.add(puzzle.grid, difficulty, puzzle.grade);
+                // the puzzle is only recorded as seen once it has been stored, so a
+                // failed write does not make later runs skip it
+                if (index != null) {
+                    writer.flush();
+                    index.add(puzzle.canonicalForm);
+                }
+                written++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Generation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Generation failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return duplicates;
+    }
+
+    /**
+     * Derives the seed of a puzzle from the base seed and its index, scrambling
+     * the bits so that neighbouring indexes get unrelated seeds (the finalizer of
+     * SplitMix64).
+     *
+     * @param seed  The base seed.
+     * @param index The index of the puzzle.
+     * @return The seed of the puzzle.
+     */
+    static long puzzleSeed(long seed, long index) {
+        long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Prints the usage, and an error if there is one, and exits.
+     *
+     * @param error The error, or null if the usage was requested.
+     */
+    private static void usage(String error) {
+        if (error != null)
+            System.err.println(error);
+        System.err.println("Usage: PuzzleGeneratorCli --count N [--difficulty EASY|MEDIUM|HARD|EXPERT]"
+                + " [--box-size 2|3|4|5] [--threads T] [--seed S] [--out FILE] [--dedupe FILE]"
+                + " [--library FILE]");
+        System.exit(error == null ? 0 : USAGE_ERROR);
+    }
+
+    /**
+     * The GeneratedPuzzle class holds a generated puzzle as an output line and,
+     * when deduplicating, its canonical form, and when storing it in a library,
+     * its grid and grade.
+     */
+    private static final class GeneratedPuzzle {
+
+        /**
+         * The puzzle as an output line.
+         */
+        private final String line;
+
+        /**
+         * The canonical form of the puzzle, or null when not deduplicating.
+         */
+        private final byte[] canonicalForm;
+
+        /**
+         * The puzzle, indexed by x then y, or null when not storing it.
+         */
+        private final int[][] grid;
+
+        /**
+         * The hardest technique the puzzle needs, or null when not storing it.
+         */
+        private final SolvingTechnique grade;
+
+        /**
+         * Constructs a new GeneratedPuzzle.
+         *
+         * @param line          The puzzle as an output line.
+         * @param canonicalForm The canonical form of the puzzle, or null.
+         * @param grid          The puzzle, or null.
+         * @param grade         The hardest technique the puzzle needs, or null.
+         */
+        private GeneratedPuzzle(String line, byte[] canonicalForm, int[][] grid, SolvingTechnique grade) {
+            this.line = line;
+            this.canonicalForm = canonicalForm;
+            this.grid = grid;
+            this.grade = grade;
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package cli;
+
+import computationlogic.ISolver;
+import computationlogic.SudokuSolver;
+import computationlogic.SudokuUtilities;
+import constants.SolverType;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import problemdomain.BoardGeometry;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * The PuzzleSolverCli class solves a file of Sudoku puzzles without the user
+ * interface, for validating large puzzle collections.
+ *
+ * The input holds one puzzle per line, as 81 characters in typewriter order with
+ * '0' or '.' for an empty cell. Lines of 16, 256 or 625 characters hold 4x4,
+ * 16x16 or 25x25 puzzles, with 'A' onwards for the values above 9, and may be
+ * mixed with 9x9 puzzles in the same file. It is split into chunks of about a megabyte at
+ * line boundaries, and every chunk is memory-mapped and solved by a worker of a
+ * ForkJoinPool, so the file is never loaded as a whole. Each worker reuses its
+ * own solver.
+ *
+ * For every input line one output line is written, in input order:
+ * "&lt;solution or input&gt; &lt;status&gt; &lt;microseconds&gt;", where the
+ * status is solved, unsolvable, multiple (only with --unique) or malformed.
+ * A summary with the throughput, the p50/p99 solve latency and the number of
+ * failures is printed to standard error. Solve times are counted in a
+ * LatencyHistogram of fixed size, so the memory used for the summary does not
+ * grow with the number of puzzles.
+ *
+ * Usage: PuzzleSolverCli --in FILE [--out FILE] [--threads T]
+ * [--solver CONSTRAINT_PROPAGATION|DANCING_LINKS|PARALLEL] [--unique]
+ */
+public class PuzzleSolverCli {
+
+    /**
+     * The approximate size of a chunk of input in bytes.
+     */
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    /**
+     * The number of chunks in flight per worker thread.
+     */
+    private static final int IN_FLIGHT_PER_THREAD = 2;
+
+    /**
+     * The exit status for invalid arguments.
+     */
+    private static final int USAGE_ERROR = 2;
+
+    /**
+     * The solve time of every well-formed puzzle.
+     */
+    private static final LatencyHistogram SOLVE_TIME = Metrics.histogram("solvercli.solve.nanos");
+
+    /**
+     * The result of solving one chunk.
+     */
+    private static class ChunkResult {
+
+        /**
+         * The output lines of the chunk.
+         */
+        private final byte[] output;
+
+        /**
+         * The number of puzzles which were not solved: unsolvable, multiple or
+         * malformed.
+         */
+        private final int failures;
+
+        /**
+         * The number of non-empty lines of the chunk.
+         */
+        private final int lines;
+
+        /**
+         * Constructs a new ChunkResult.
+         *
+         * @param output   The output lines of the chunk.
+         * @param failures The number of puzzles which were not solved.
+         * @param lines    The number of non-empty lines of the chunk.
+         */
+        private ChunkResult(byte[] output, int failures, int lines) {
+            this.output = output;
+            this.failures = failures;
+            this.lines = lines;
+        }
+    }
+
+    /**
+     * The totals of a run.
+     */
+    private static class Totals {
+
+        /**
+         * The number of non-empty input lines.
+         */
+        private long puzzles;
+
+        /**
+         * The number of puzzles which were not solved.
+         */
+        private long failures;
+
+        /**
+         * Adds the result of a chunk.
+         *
+         * @param result The result of the chunk.
+         */
+        private void add(ChunkResult result) {
+            puzzles += result.lines;
+            failures += result.failures;
+        }
+    }
+
+    /**
+     * Parses the arguments, solves the puzzles and prints the summary.
+     *
+     * @param args The command line arguments.
+     * @throws IOException If the input cannot be read or the output written.
+     */
+    public static void main(String[] args) throws IOException {
+        String in = null;
+        String out = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        SolverType solverType = SolverType.CONSTRAINT_PROPAGATION;
+        boolean unique = false;
+
+        try {
+            for (int index = 0; index < args.length; index++) {
+                String option = args[index];
+                if (option.equals("--help"))
+                    usage(null);
+                if (option.equals("--unique")) {
+                    unique = true;
+                    continue;
+                }
+                if (index + 1 >= args.length)
+                    usage("Missing value for " + option);
+                String value = args[++index];
+                switch (option) {
+                    case "--in":
+                        in = value;
+                        break;
+                    case "--out":
+                        out = value;
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--solver":
+                        solverType = SolverType.valueOf(value.toUpperCase(Locale.ROOT));
+                        break;
+                    default:
+                        usage("Unknown option " + option);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            usage("Invalid value: " + e.getMessage());
+        }
+        if (in == null || threads < 1)
+            usage("--in is required, and --threads must be at least 1");
+
+        long start = System.nanoTime();
+        Totals totals;
+        try (FileChannel input = FileChannel.open(Paths.get(in), StandardOpenOption.READ);
+                OutputStream output = new BufferedOutputStream(
+                        out == null ? System.out : new FileOutputStream(out), 1 << 16)) {
+            totals = solve(input, output, threads, solverType, unique);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.err.printf("Processed %d puzzles in %.2f s (%.0f puzzles/s) on %d threads, %d failures%n",
+                totals.puzzles, seconds, totals.puzzles / seconds, threads, totals.failures);
+        System.err.printf("Solve latency p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                SOLVE_TIME.getValueAtPercentile(50) / 1e3, SOLVE_TIME.getValueAtPercentile(99) / 1e3,
+                SOLVE_TIME.getMax() / 1e3);
+    }
+
+    /**
+     * Solves every puzzle of the input in parallel and writes the output lines in
+     * input order.
+     *
+     * @param input      The input file.
+     * @param output     The destination of the output lines.
+     * @param threads    The number of worker threads.
+     * @param solverType The solver backend.
+     * @param unique     Whether puzzles with more than one solution are failures.
+     * @return The totals of the run.
+     * @throws IOException If the input cannot be read or the output written.
+     */
+    private static Totals solve(FileChannel input, OutputStream output, int threads, SolverType solverType,
+            boolean unique) throws IOException {
+        ExecutorService pool = new ForkJoinPool(threads);
+        ThreadLocal<ISolver> solvers = ThreadLocal.withInitial(() -> SudokuSolver.getSolver(solverType));
+        Deque<Future<ChunkResult>> inFlight = new ArrayDeque<>();
+        int window = threads * IN_FLIGHT_PER_THREAD;
+
+        Totals totals = new Totals();
+        try {
+            long size = input.size();
+            long chunkStart = 0;
+            while (chunkStart < size || !inFlight.isEmpty()) {
+                while (chunkStart < size && inFlight.size() < window) {
+                    long chunkEnd = lineBoundaryAfter(input, Math.min(size, chunkStart + CHUNK_SIZE));
+                    MappedByteBuffer chunk = input.map(FileChannel.MapMode.READ_ONLY, chunkStart,
+                            chunkEnd - chunkStart);
+                    inFlight.add(pool.submit(() -> solveChunk(chunk, solvers.get(), unique)));
+                    chunkStart = chunkEnd;
+                }
+
+                ChunkResult result = inFlight.poll().get();
+                output.write(result.output);
+                totals.add(result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Solving was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Solving failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return totals;
+    }
+
+    /**
+     * Solves every line of a chunk.
+     *
+     * @param chunk  The chunk, ending at a line boundary or the end of the file.
+     * @param solver The solver of the calling worker.
+     * @param unique Whether puzzles with more than one solution are failures.
+     * @return The output lines and failures of the chunk.
+     */
+    private static ChunkResult solveChunk(ByteBuffer chunk, ISolver solver, boolean unique) {
+        StringBuilder output = new StringBuilder(chunk.remaining() * 2);
+        int failures = 0;
+        int lines = 0;
+        // one reusable grid per board size
+        int[][][] grids = new int[BoardGeometry.MAX_BOX_SIZE + 1][][];
+
+        int lineStart = chunk.position();
+        while (lineStart < chunk.limit()) {
+            int lineEnd = lineStart;
+            while (lineEnd < chunk.limit() && chunk.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int contentEnd = lineEnd > lineStart && chunk.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            int next = lineEnd + 1;
+
+            if (contentEnd == lineStart) {
+                lineStart = next;
+                continue;
+            }
+            lines++;
+
+            int[][] grid = parseLine(chunk, lineStart, contentEnd, grids);
+            if (grid == null) {
+                appendLine(output, chunk, lineStart, contentEnd);
+                output.append(" malformed 0\n");
+                failures++;
+                lineStart = next;
+                continue;
+            }
+
+            long begin = System.nanoTime();
+            String status;
+            if (unique && solver.countSolutions(grid, 2) > 1)
+                status = "multiple";
+            else
+                status = solver.solve(grid) ? "solved" : "unsolvable";
+            long elapsed = System.nanoTime() - begin;
+            SOLVE_TIME.record(elapsed);
+
+            if (status.equals("solved")) {
+                output.append(SudokuUtilities.toPuzzleString(grid));
+            } else {
+                appendLine(output, chunk, lineStart, contentEnd);
+                failures++;
+            }
+            output.append(' ').append(status).append(' ').append(elapsed / 1000).append('\n');
+            lineStart = next;
+        }
+        return new ChunkResult(output.toString().getBytes(StandardCharsets.US_ASCII), failures, lines);
+    }
+
+    /**
+     * Parses a line of a chunk into a grid, the size of the board being given by
+     * the length of the line.
+     *
+     * @param chunk The chunk.
+     * @param start The position of the first character of the line.
+     * @param end   The position after the last character of the line.
+     * @param grids The reusable grid of each box size, allocated on first use.
+     * @return The filled grid, indexed [x][y], or null if the line is not a
+     *         well-formed puzzle.
+     */
+    private static int[][] parseLine(ByteBuffer chunk, int start, int end, int[][][] grids) {
+        BoardGeometry geometry = BoardGeometry.forCellCount(end - start);
+        if (geometry == null)
+            return null;
+        int size = geometry.getSize();
+        int[][] grid = grids[geometry.getBoxSize()];
+        if (grid == null) {
+            grid = new int[size][size];
+            grids[geometry.getBoxSize()] = grid;
+        }
+        for (int cell = 0; cell < end - start; cell++) {
+            int value = SudokuUtilities.fromPuzzleChar((char) (chunk.get(start + cell) & 0xFF));
+            if (value < 0 || value > size)
+                return null;
+            grid[cell % size][cell / size] = value;
+        }
+        return grid;
+    }
+
+    /**
+     * Copies a line of a chunk to the output.
+     *
+     * @param output The output.
+     * @param chunk  The chunk.
+     * @param start  The position of the first character of the line.
+     * @param end    The position after the last character of the line.
+     */
+    private static void appendLine(StringBuilder output, ByteBuffer chunk, int start, int end) {
+        for (int position = start; position < end; position++) {
+            output.append((char) (chunk.get(position) & 0xFF));
+        }
+    }
+
+    /**
+     * Finds the end of the line containing the given position, so that chunks
+     * never split a line.
+     *
+     * @param input    The input file.
+     * @param position A position in the file.
+     * @return The position after the next line feed at or after position, or the
+     *         size of the file.
+     * @throws IOException If the input cannot be read.
+     */
+    private static long lineBoundaryAfter(FileChannel input, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        long size = input.size();
+        while (position < size) {
+            buffer.clear();
+            int read = input.read(buffer, position);
+            for (int index = 0; index < read; index++) {
+                if (buffer.get(index) == '\n')
+                    return position + index + 1;
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Prints the usage, and an error if there is one, and exits.
+     *
+     * @param error The error, or null if the usage was requested.
+     */
+    private static void usage(String error) {
+        if (error != null)
+            System.err.println(error);
+        System.err.println("Usage: PuzzleSolverCli --in FILE [--out FILE] [--threads T]"
+                + " [--solver CONSTRAINT_PROPAGATION|DANCING_LINKS|PARALLEL] [--unique]");
+        System.exit(error == null ? 0 : USAGE_ERROR);
+    }
+}
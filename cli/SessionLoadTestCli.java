@@ -0,0 +1,353 @@
+package cli;
+
+import computationlogic.PuzzlePool;
+import constants.Difficulty;
+import metrics.Counter;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import problemdomain.Hint;
+import problemdomain.SudokuGame;
+import session.GameSession;
+import session.HeadlessView;
+import session.SessionEngine;
+import userinterface.IUserInterfaceContract;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The SessionLoadTestCli class measures how many game sessions a SessionEngine
+ * serves, by replaying synthetic players against it.
+ *
+ * Every player opens its own session on a thread of the engine and plays its
+ * games to completion through the EventListener API: it asks for a hint, enters
+ * the suggested value, and repeats until no hint is left, then starts a new
+ * game. With --mistake-rate, a share of the values entered are wrong, so the
+ * next hint is a correction. Players pause --think-millis between moves, to
+ * simulate people rather than a tight loop. Player i draws its mistakes from a
+ * seed derived from the base seed and i.
+ *
+ * Throughput, the hint round trip latency and the number of failures are
+ * printed to standard error, followed by the Metrics of the run.
+ *
+ * With --target-p99-millis, the run is repeated with twice as many sessions
+ * each round, starting from --sessions, until the p99 of the hint round trip
+ * exceeds the target, a player fails, or --max-sessions is reached. The largest
+ * number of sessions which met the target is reported per core: that is the
+ * measured capacity of the engine for the given think time.
+ *
+ * Usage: SessionLoadTestCli --sessions N [--games G]
+ * [--difficulty EASY|MEDIUM|HARD|EXPERT] [--mistake-rate R] [--think-millis T]
+ * [--timeout-seconds S] [--seed S] [--target-p99-millis P] [--max-sessions M]
+ */
+public class SessionLoadTestCli {
+
+    /**
+     * The exit status for invalid arguments.
+     */
+    private static final int USAGE_ERROR = 2;
+
+    /**
+     * The default largest number of sessions of a ramp.
+     */
+    private static final int DEFAULT_MAX_SESSIONS = 1 << 20;
+
+    /**
+     * The time from a hint request to its answer reaching the player.
+     */
+    private static final LatencyHistogram HINT_ROUND_TRIP = Metrics.histogram("loadtest.hintRoundTrip.nanos");
+
+    /**
+     * The number of values entered by the players.
+     */
+    private static final Counter MOVES = Metrics.counter("loadtest.moves");
+
+    /**
+     * The number of games played to completion.
+     */
+    private static final Counter GAMES = Metrics.counter("loadtest.games");
+
+    /**
+     * The number of players which stopped on a timeout or an error.
+     */
+    private static final Counter FAILURES = Metrics.counter("loadtest.failures");
+
+    /**
+     * Parses the arguments, runs the players and prints the results.
+     *
+     * @param args The command line arguments.
+     * @throws InterruptedException If the main thread is interrupted while waiting
+     *                              for the players.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int sessions = -1;
+        int games = 1;
+        Difficulty difficulty = SudokuGame.getDifficulty();
+        double mistakeRate = 0;
+        long thinkMillis = 0;
+        long timeoutSeconds = 30;
+        long seed = System.nanoTime();
+        long targetP99Millis = -1;
+        int maxSessions = DEFAULT_MAX_SESSIONS;
+
+        try {
+            for (int index = 0; index < args.length; index++) {
+                String option = args[index];
+                if (option.equals("--help"))
+                    usage(null);
+                if (index + 1 >= args.length)
+                    usage("Missing value for " + option);
+                String value = args[++index];
+                switch (option) {
+                    case "--sessions":
+                        sessions = Integer.parseInt(value);
+                        break;
+                    case "--games":
+                        games = Integer.parseInt(value);
+                        break;
+                    case "--difficulty":
+                        difficulty = Difficulty.valueOf(value.toUpperCase(Locale.ROOT));
+                        break;
+                    case "--mistake-rate":
+                        mistakeRate = Double.parseDouble(value);
+                        break;
+                    case "--think-millis":
+                        thinkMillis = Long.parseLong(value);
+                        break;
+                    case "--timeout-seconds":
+                        timeoutSeconds = Long.parseLong(value);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "--target-p99-millis":
+                        targetP99Millis = Long.parseLong(value);
+                        break;
+                    case "--max-sessions":
+                        maxSessions = Integer.parseInt(value);
+                        break;
+                    default:
+                        usage("Unknown option " + option);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            usage("Invalid value: " + e.getMessage());
+        }
+        if (sessions < 1 || games < 1 || mistakeRate < 0 || mistakeRate >= 1 || thinkMillis < 0
+                || timeoutSeconds < 1 || maxSessions < sessions)
+            usage("--sessions is required, --games must be at least 1, --mistake-rate below 1"
+                    + " and --max-sessions at least --sessions");
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        if (targetP99Millis < 0) {
+            run(sessions, games, difficulty, mistakeRate, thinkMillis, timeoutSeconds, seed);
+            System.err.print(Metrics.dump());
+            return;
+        }
+
+        long targetNanos = targetP99Millis * 1_000_000;
+        int served = 0;
+        for (int round = sessions; round > 0 && round <= maxSessions; round *= 2) {
+            Metrics.reset();
+            run(round, games, difficulty, mistakeRate, thinkMillis, timeoutSeconds, seed);
+            if (FAILURES.getCount() > 0 || HINT_ROUND_TRIP.getValueAtPercentile(99) > targetNanos)
+                break;
+            served = round;
+        }
+        if (served == 0)
+            System.err.printf("%d sessions already miss the p99 target of %d ms%n", sessions, targetP99Millis);
+        else
+            System.err.printf("Served %d sessions within the p99 target of %d ms on %d cores: %.1f sessions per core%n",
+                    served, targetP99Millis, cores, (double) served / cores);
+        if (served > 0 && served * 2L > maxSessions)
+            System.err.println("The ramp stopped at --max-sessions, so the engine may serve more");
+        System.err.print(Metrics.dump());
+    }
+
+    /**
+     * Runs one round of players to completion and prints its results.
+     *
+     * @param sessions       The number of players, each with its own session.
+     * @param games          The number of games each player plays.
+     * @param difficulty     The difficulty level of the games.
+     * @param mistakeRate    The share of values entered wrong.
+     * @param thinkMillis    The pause between moves, in milliseconds.
+     * @param timeoutSeconds How long to wait for a board or a hint, in seconds.
+     * @param seed           The base seed of the mistakes.
+     * @throws InterruptedException If the main thread is interrupted while waiting
+     *                              for the players.
+     */
+    private static void run(int sessions, int games, Difficulty difficulty, double mistakeRate, long thinkMillis,
+            long timeoutSeconds, long seed) throws InterruptedException {
+        // new games of every session come from one pool, deep enough for every
+        // session to start without generating on its own worker
+        int cores = Runtime.getRuntime().availableProcessors();
+        int depth = Math.max(PuzzlePool.DEFAULT_DEPTH, sessions);
+        PuzzlePool puzzlePool = new PuzzlePool(depth, depth / 2, cores);
+        SessionEngine engine = new SessionEngine(puzzlePool);
+
+        long start = System.nanoTime();
+        List<Thread> players = new ArrayList<>();
+        for (int player = 0; player < sessions; player++) {
+            Random random = new Random(PuzzleGeneratorCli.puzzleSeed(seed, player));
+            players.add(engine.startThread(
+                    new SyntheticPlayer(engine, difficulty, games, mistakeRate, thinkMillis, timeoutSeconds * 1000,
+                            random)));
+        }
+        for (Thread player : players) {
+            player.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        engine.shutdown();
+        puzzlePool.shutdown();
+
+        System.err.printf("Played %d %s games in %d sessions in %.2f s on %d cores with %s threads, %d failures%n",
+                GAMES.getCount(), difficulty.getName(), sessions, seconds, cores,
+                engine.usesVirtualThreads() ? "virtual" : "platform", FAILURES.getCount());
+        System.err.printf("%.0f moves/s (%.0f moves/s per core)%n", MOVES.getCount() / seconds,
+                MOVES.getCount() / seconds / cores);
+        System.err.printf("Hint round trip p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                HINT_ROUND_TRIP.getValueAtPercentile(50) / 1e3, HINT_ROUND_TRIP.getValueAtPercentile(99) / 1e3,
+                HINT_ROUND_TRIP.getMax() / 1e3);
+    }
+
+    /**
+     * Prints the usage, and an error if there is one, and exits.
+     *
+     * @param error The error, or null if the usage was requested.
+     */
+    private static void usage(String error) {
+        if (error != null)
+            System.err.println(error);
+        System.err.println("Usage: SessionLoadTestCli --sessions N [--games G]"
+                + " [--difficulty EASY|MEDIUM|HARD|EXPERT] [--mistake-rate R] [--think-millis T]"
+                + " [--timeout-seconds S] [--seed S] [--target-p99-millis P] [--max-sessions M]");
+        System.exit(error == null ? 0 : USAGE_ERROR);
+    }
+
+    /**
+     * The SyntheticPlayer class plays the games of one session by following its
+     * hints, as described in the class comment of SessionLoadTestCli.
+     */
+    private static final class SyntheticPlayer implements Runnable {
+
+        /**
+         * The engine the session is opened in.
+         */
+        private final SessionEngine engine;
+
+        /**
+         * The difficulty level of the games.
+         */
+        private final Difficulty difficulty;
+
+        /**
+         * The number of games to play.
+         */
+        private final int games;
+
+        /**
+         * The share of values entered wrong.
+         */
+        private final double mistakeRate;
+
+        /**
+         * The pause between moves, in milliseconds.
+         */
+        private final long thinkMillis;
+
+        /**
+         * How long to wait for a board or a hint, in milliseconds.
+         */
+        private final long timeoutMillis;
+
+        /**
+         * The source of the mistakes.
+         */
+        private final Random random;
+
+        /**
+         * Constructs a new SyntheticPlayer.
+         *
+         * @param engine        The engine the session is opened in.
+         * @param difficulty    The difficulty level of the games.
+         * @param games         The number of games to play.
+         * @param mistakeRate   The share of values entered wrong.
+         * @param thinkMillis   The pause between moves, in milliseconds.
+         * @param timeoutMillis How long to wait for a board or a hint, in
+         *                      milliseconds.
+         * @param random        The source of the mistakes.
+         */
+        private SyntheticPlayer(SessionEngine engine, Difficulty difficulty, int games, double mistakeRate,
+                long thinkMillis, long timeoutMillis, Random random) {
+            this.engine = engine;
+            this.difficulty = difficulty;
+            this.games = games;
+            this.mistakeRate = mistakeRate;
+            this.thinkMillis = thinkMillis;
+            this.timeoutMillis = timeoutMillis;
+            this.random = random;
+        }
+
+        /**
+         * Opens a session, plays its games and closes it.
+         */
+        @Override
+        public void run() {
+            GameSession session = engine.openSession(difficulty);
+            HeadlessView view = session.getView();
+            IUserInterfaceContract.EventListener listener = session.getListener();
+            try {
+                view.awaitBoard(timeoutMillis);
+                for (int game = 0; game < games; game++) {
+                    if (game > 0) {
+                        listener.onNewGameButtonClick();
+                        view.awaitBoard(timeoutMillis);
+                    }
+                    play(view, listener);
+                    GAMES.increment();
+                }
+                if (view.getErrors() > 0)
+                    FAILURES.increment();
+            } catch (TimeoutException e) {
+                FAILURES.increment();
+            } catch (InterruptedException e) {
+                FAILURES.increment();
+                Thread.currentThread().interrupt();
+            } finally {
+                engine.closeSession(session);
+            }
+        }
+
+        /**
+         * Follows the hints of the session until there is none left.
+         *
+         * @param view     The view of the session.
+         * @param listener The listener of the session.
+         * @throws InterruptedException If the thread is interrupted while waiting.
+         * @throws TimeoutException     If a hint does not arrive in time.
+         */
+        private void play(HeadlessView view, IUserInterfaceContract.EventListener listener)
+                throws InterruptedException, TimeoutException {
+            while (true) {
+                long start = System.nanoTime();
+                listener.onHintRequest();
+                Hint hint = view.awaitHint(timeoutMillis);
+                HINT_ROUND_TRIP.recordSince(start);
+                if (hint == null)
+                    return;
+
+                int value = hint.getValue();
+                if (!hint.isCorrection() && random.nextDouble() < mistakeRate)
+                    value = value % 9 + 1;
+                if (thinkMillis > 0)
+                    Thread.sleep(thinkMillis);
+                listener.onSudokuInput(hint.getX(), hint.getY(), value);
+                MOVES.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,494 @@
+package computationlogic;
+
+import metrics.Counter;
+import metrics.Metrics;
+import problemdomain.BoardGeometry;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The ConstraintSolver class solves Sudoku puzzles using candidate bitsets and
+ * constraint propagation.
+ *
+ * Every empty cell keeps a mask of the values it may still take. Placing a value
+ * removes it from the masks of the cell's peers (20 on a 9x9 board). After each placement the
+ * solver repeatedly applies two deductions until neither makes progress:
+ *
+ * - Naked singles: a cell with a single candidate left takes that value.
+ * - Hidden singles: a value which fits in only one cell of a row, column or box
+ * is placed in that cell.
+ *
+ * When no deduction applies, the solver branches on the empty cell with the
+ * fewest remaining candidates (minimum remaining values), which keeps the
+ * search tree very small even for Hard and Expert puzzles.
+ *
+ * Cells are numbered in typewriter order (left to right, top to bottom), i.e.
+ * the cell at grid[x][y] has index y * size + x. The size of the board is taken
+ * from the puzzle, and the units and peers come from its BoardGeometry.
+ *
+ * An instance reuses its internal buffers between calls (reallocating them only
+ * when the size of the board changes) and is therefore not thread safe.
+ *
+ * The nodes and backtracks of every search are added to the shared solver
+ * metrics once the search ends, so the search loop itself only touches plain
+ * fields.
+ */
+public class ConstraintSolver implements ISolver {
+
+    /**
+     * The number of searches run by every solver.
+     */
+    static final Counter SEARCHES = Metrics.counter("solver.searches");
+
+    /**
+     * The number of search nodes visited by every solver.
+     */
+    static final Counter NODES = Metrics.counter("solver.nodes");
+
+    /**
+     * The number of dead ends (search nodes whose every branch failed) met by
+     * every solver.
+     */
+    static final Counter BACKTRACKS = Metrics.counter("solver.backtracks");
+
+    /**
+     * The number of search nodes between two polls of the stop flag, minus one.
+     */
+    private static final int STOP_POLL_MASK = 63;
+
+    /**
+     * The geometry of the board the buffers are sized for.
+     */
+    private BoardGeometry geometry;
+
+    /**
+     * The values of every cell at each depth of the search; 0 means empty.
+     */
+    private int[][] valueStack;
+
+    /**
+     * The candidate masks of every cell at each depth of the search.
+     */
+    private int[][] candidateStack;
+
+    /**
+     * The depth at which the last solution was found.
+     */
+    private int solutionDepth;
+
+    /**
+     * The number of solutions found by the current search.
+     */
+    private int solutionCount;
+
+    /**
+     * The number of solutions after which the current search stops.
+     */
+    private int solutionLimit;
+
+    /**
+     * The source of randomness used to order the candidates of a branch cell, or
+     * null to try them in ascending order.
+     */
+    private Random random;
+
+    /**
+     * The number of search nodes visited by the current search.
+     */
+    private long nodes;
+
+    /**
+     * The number of dead ends met by the current search.
+     */
+    private long backtracks;
+
+    /**
+     * The number of search nodes after which the current search is abandoned.
+     */
+    private long nodeLimit;
+
+    /**
+     * Whether the current search was abandoned because it reached the node limit
+     * or was stopped.
+     */
+    private boolean aborted;
+
+    /**
+     * A flag set by another thread to stop the current search, or null. It is
+     * polled every STOP_POLL_MASK + 1 nodes.
+     */
+    private AtomicBoolean stop;
+
+    /**
+     * Solves the provided puzzle in place.
+     *
+     * If the puzzle can be solved, every empty cell of the grid is filled with the
+     * solution. Otherwise the grid is left untouched.
+     *
+     * @param puzzle The 2D array representing the Sudoku puzzle to be solved.
+     * @return true if the puzzle can be solved, false otherwise.
+     */
+    @Override
+    public boolean solve(int[][] puzzle) {
+        return solve(puzzle, null, Long.MAX_VALUE);
+    }
+
+    /**
+     * Fills every empty cell of the provided grid with a random valid value.
+     *
+     * The candidates of every branch cell are tried in an order drawn from the
+     * given source of randomness, so the same seed always produces the same grid.
+     * The search gives up after visiting nodeLimit nodes, which bounds its running
+     * time.
+     *
+     * @param grid      The grid to fill, typically empty.
+     * @param random    The source of randomness.
+     * @param nodeLimit The number of search nodes after which the search gives up.
+     * @return true if the grid was filled, false if it has no solution or the node
+     *         limit was reached.
+     */
+    public boolean fillRandomly(int[][] grid, Random random, long nodeLimit) {
+        return solve(grid, random, nodeLimit);
+    }
+
+    /**
+     * Solves the provided puzzle in place with the given search settings.
+     *
+     * @param puzzle    The 2D array representing the Sudoku puzzle to be solved.
+     * @param random    The source of randomness for the candidate order, or null.
+     * @param nodeLimit The number of search nodes after which the search gives up.
+     * @return true if the puzzle was solved, false otherwise.
+     */
+    private boolean solve(int[][] puzzle, Random random, long nodeLimit) {
+        prepareBuffers(BoardGeometry.of(puzzle));
+        if (!load(geometry, puzzle, valueStack[0], candidateStack[0]))
+            return false;
+        prepareSearch(1, random, nodeLimit);
+        boolean solved = search(0) && !aborted;
+        recordSearch();
+        this.random = null;
+        if (!solved)
+            return false;
+
+        int[] solution = valueStack[solutionDepth];
+        int size = geometry.getSize();
+        for (int cell = 0; cell < solution.length; cell++) {
+            puzzle[cell % size][cell / size] = solution[cell];
+        }
+        return true;
+    }
+
+    /**
+     * Counts the solutions of the provided puzzle, stopping as soon as the given
+     * limit is reached. The puzzle is not modified.
+     *
+     * @param puzzle The 2D array representing the Sudoku puzzle.
+     * @param limit  The number of solutions after which counting stops.
+     * @return The number of solutions, capped at limit.
+     */
+    @Override
+    public int countSolutions(int[][] puzzle, int limit) {
+        return countSolutions(puzzle, limit, Long.MAX_VALUE);
+    }
+
+    /**
+     * Counts the solutions of the provided puzzle, giving up after visiting the
+     * given number of search nodes. The puzzle is not modified.
+     *
+     * @param puzzle    The 2D array representing the Sudoku puzzle.
+     * @param limit     The number of solutions after which counting stops.
+     * @param nodeLimit The number of search nodes after which counting gives up.
+     * @return The number of solutions, capped at limit, or limit if counting gave
+     *         up.
+     */
+    @Override
+    public int countSolutions(int[][] puzzle, int limit, long nodeLimit) {
+        if (limit <= 0)
+            return 0;
+        prepareBuffers(BoardGeometry.of(puzzle));
+        if (!load(geometry, puzzle, valueStack[0], candidateStack[0]))
+            return 0;
+        prepareSearch(limit, null, nodeLimit);
+        search(0);
+        recordSearch();
+        return aborted ? limit : solutionCount;
+    }
+
+    /**
+     * Searches a subtree whose root state has already been loaded, for
+     * ParallelSolver. The search ends early once the given flag is set.
+     *
+     * @param geometry   The geometry of the board.
+     * @param values     The value of every cell at the root of the subtree.
+     * @param candidates The candidate mask of every cell at the root of the
+     *                   subtree.
+     * @param limit      The number of solutions after which the search stops.
+     * @param stop       The flag another thread sets to stop the search.
+     * @param solution   The array receiving the value of every cell of the last
+     *                   solution found, if the search was not stopped.
+     * @return The number of solutions found, capped at limit. It may be too low if
+     *         the search was stopped.
+     */
+    int searchSubtree(BoardGeometry geometry, int[] values, int[] candidates, int limit, AtomicBoolean stop,
+            int[] solution) {
+        prepareBuffers(geometry);
+        System.arraycopy(values, 0, valueStack[0], 0, values.length);
+        System.arraycopy(candidates, 0, candidateStack[0], 0, candidates.length);
+        prepareSearch(limit, null, Long.MAX_VALUE);
+        this.stop = stop;
+        try {
+            search(0);
+        } finally {
+            this.stop = null;
+            recordSearch();
+        }
+        if (solutionCount > 0 && !aborted)
+            System.arraycopy(valueStack[solutionDepth], 0, solution, 0, solution.length);
+        return solutionCount;
+    }
+
+    /**
+     * Sizes the search buffers for a board of the given geometry, keeping the
+     * current buffers if they already fit it.
+     *
+     * @param geometry The geometry of the board about to be searched.
+     */
+    private void prepareBuffers(BoardGeometry geometry) {
+        if (this.geometry == geometry)
+            return;
+        int cellCount = geometry.getCellCount();
+        valueStack = new int[cellCount + 1][cellCount];
+        candidateStack = new int[cellCount + 1][cellCount];
+        this.geometry = geometry;
+    }
+
+    /**
+     * Resets the counters of the search.
+     *
+     * @param limit     The number of solutions after which the search stops.
+     * @param random    The source of randomness for the candidate order, or null.
+     * @param nodeLimit The number of search nodes after which the search gives up.
+     */
+    private void prepareSearch(int limit, Random random, long nodeLimit) {
+        this.solutionCount = 0;
+        this.solutionLimit = limit;
+        this.random = random;
+        this.nodes = 0;
+        this.backtracks = 0;
+        this.nodeLimit = nodeLimit;
+        this.aborted = false;
+    }
+
+    /**
+     * Adds the nodes and backtracks of the search which just ended to the solver
+     * metrics.
+     */
+    private void recordSearch() {
+        SEARCHES.increment();
+        NODES.add(nodes);
+        BACKTRACKS.add(backtracks);
+    }
+
+    /**
+     * Loads a grid into the given value and candidate arrays, propagating every
+     * given value to its peers.
+     *
+     * @param geometry   The geometry of the board.
+     * @param puzzle     The grid to load.
+     * @param values     The array receiving the value of every cell.
+     * @param candidates The array receiving the candidate mask of every cell.
+     * @return false if two given values conflict, true otherwise.
+     */
+    static boolean load(BoardGeometry geometry, int[][] puzzle, int[] values, int[] candidates) {
+        int size = geometry.getSize();
+        int cellCount = geometry.getCellCount();
+        for (int cell = 0; cell < cellCount; cell++) {
+            values[cell] = 0;
+            candidates[cell] = geometry.getAllValues();
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            int value = puzzle[cell % size][cell / size];
+            if (value != 0) {
+                if ((candidates[cell] & (1 << value)) == 0)
+                    return false;
+                if (!assign(geometry, values, candidates, cell, value))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Propagates the state at the given depth and then branches on the cell with
+     * the fewest candidates, counting every solution found.
+     *
+     * @param depth The depth of the state to search from.
+     * @return true once the solution limit or the node limit has been reached,
+     *         false otherwise.
+     */
+    private boolean search(int depth) {
+        if (++nodes > nodeLimit || (stop != null && (nodes & STOP_POLL_MASK) == 0 && stop.get())) {
+            aborted = true;
+            return true;
+        }
+        int[] values = valueStack[depth];
+        int[] candidates = candidateStack[depth];
+
+        if (!propagate(geometry, values, candidates)) {
+            backtracks++;
+            return false;
+        }
+
+        int cell = selectBranchCell(values, candidates);
+        if (cell < 0) {
+            solutionDepth = depth;
+            return ++solutionCount >= solutionLimit;
+        }
+
+        int[] nextValues = valueStack[depth + 1];
+        int[] nextCandidates = candidateStack[depth + 1];
+        int options = candidates[cell];
+        while (options != 0) {
+            int bit = random == null ? options & -options : randomBit(options);
+            options ^= bit;
+
+            System.arraycopy(values, 0, nextValues, 0, values.length);
+            System.arraycopy(candidates, 0, nextCandidates, 0, candidates.length);
+            if (assign(geometry, nextValues, nextCandidates, cell, Integer.numberOfTrailingZeros(bit))
+                    && search(depth + 1))
+                return true;
+        }
+        backtracks++;
+        return false;
+    }
+
+    /**
+     * Picks one of the set bits of a mask at random.
+     *
+     * @param mask A mask with at least one bit set.
+     * @return A mask holding only the chosen bit.
+     */
+    private int randomBit(int mask) {
+        for (int skip = random.nextInt(Integer.bitCount(mask)); skip > 0; skip--) {
+            mask &= mask - 1;
+        }
+        return mask & -mask;
+    }
+
+    /**
+     * Places a value in a cell and removes it from the candidates of the cell's
+     * peers.
+     *
+     * @param geometry   The geometry of the board.
+     * @param values     The value of every cell.
+     * @param candidates The candidate mask of every cell.
+     * @param cell       The index of the cell.
+     * @param value      The value to place, from 1 to the board size.
+     * @return false if the placement leaves a peer without candidates or repeats a
+     *         value, true otherwise.
+     */
+    static boolean assign(BoardGeometry geometry, int[] values, int[] candidates, int cell, int value) {
+        int bit = 1 << value;
+        values[cell] = value;
+        candidates[cell] = bit;
+        for (int peer : geometry.getPeers()[cell]) {
+            if (values[peer] != 0) {
+                if (values[peer] == value)
+                    return false;
+            } else if ((candidates[peer] & bit) != 0) {
+                candidates[peer] &= ~bit;
+                if (candidates[peer] == 0)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Applies naked and hidden singles until neither makes progress.
+     *
+     * @param geometry   The geometry of the board.
+     * @param values     The value of every cell.
+     * @param candidates The candidate mask of every cell.
+     * @return false if a contradiction was found, true otherwise.
+     */
+    static boolean propagate(BoardGeometry geometry, int[] values, int[] candidates) {
+        int allValues = geometry.getAllValues();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            // naked singles
+            for (int cell = 0; cell < values.length; cell++) {
+                int mask = candidates[cell];
+                if (values[cell] == 0 && (mask & (mask - 1)) == 0) {
+                    if (!assign(geometry, values, candidates, cell, Integer.numberOfTrailingZeros(mask)))
+                        return false;
+                    changed = true;
+                }
+            }
+
+            // hidden singles
+            for (int[] unit : geometry.getUnits()) {
+                int once = 0;
+                int twice = 0;
+                int placed = 0;
+                for (int cell : unit) {
+                    if (values[cell] != 0) {
+                        placed |= 1 << values[cell];
+                    } else {
+                        twice |= once & candidates[cell];
+                        once |= candidates[cell];
+                    }
+                }
+                if ((once | placed) != allValues)
+                    return false;
+
+                int hidden = once & ~twice & ~placed;
+                while (hidden != 0) {
+                    int bit = hidden & -hidden;
+                    hidden ^= bit;
+                    int target = -1;
+                    for (int cell : unit) {
+                        if (values[cell] == 0 && (candidates[cell] & bit) != 0) {
+                            target = cell;
+                            break;
+                        }
+                    }
+                    // an earlier hidden single may have taken the only cell for this value
+                    if (target < 0)
+                        return false;
+                    if (!assign(geometry, values, candidates, target, Integer.numberOfTrailingZeros(bit)))
+                        return false;
+                    changed = true;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Selects the empty cell with the fewest remaining candidates.
+     *
+     * @param values     The value of every cell.
+     * @param candidates The candidate mask of every cell.
+     * @return The index of the selected cell, or -1 if every cell is filled.
+     */
+    static int selectBranchCell(int[] values, int[] candidates) {
+        int best = -1;
+        int bestCount = Integer.MAX_VALUE;
+        for (int cell = 0; cell < values.length; cell++) {
+            if (values[cell] == 0) {
+                int count = Integer.bitCount(candidates[cell]);
+                if (count < bestCount) {
+                    best = cell;
+                    bestCount = count;
+                    if (count == 2)
+                        break;
+                }
+            }
+        }
+        return best;
+    }
+}
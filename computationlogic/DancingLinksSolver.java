@@ -0,0 +1,403 @@
+package computationlogic;
+
+import problemdomain.BoardGeometry;
+
+/**
+ * The DancingLinksSolver class solves Sudoku puzzles with Knuth's Algorithm X,
+ * implemented with Dancing Links.
+ *
+ * Sudoku is modelled as an exact cover problem. Each row of the matrix places
+ * one value in one cell (729 rows on a 9x9 board), and each column is a
+ * constraint which must be satisfied exactly once (324 columns on a 9x9 board):
+ *
+ * - every cell holds a value,
+ * - every row holds each value,
+ * - every column holds each value,
+ * - every box holds each value.
+ *
+ * The matrix is stored as circular doubly linked lists in parallel int arrays
+ * and is built once per instance, and again only when a puzzle of a different
+ * size is solved. The given values of a puzzle are selected
+ * before the search starts, and every cover is undone afterwards, so the same
+ * instance can solve any number of puzzles. Because the search always branches
+ * on the constraint with the fewest remaining options, its running time is
+ * predictable even on puzzles designed to defeat cell-order backtracking.
+ *
+ * An instance is not thread safe.
+ */
+public class DancingLinksSolver implements ISolver {
+
+    /**
+     * The index of the root header node. Column headers follow at 1 to the
+     * number of columns.
+     */
+    private static final int ROOT = 0;
+
+    /**
+     * The geometry of the board the matrix is built for.
+     */
+    private BoardGeometry geometry;
+
+    /**
+     * The left, right, up and down neighbours of every node.
+     */
+    private int[] left;
+    private int[] right;
+    private int[] up;
+    private int[] down;
+
+    /**
+     * The column header of every node.
+     */
+    private int[] column;
+
+    /**
+     * The candidate row (cell * size + value - 1) of every node.
+     */
+    private int[] rowId;
+
+    /**
+     * The number of uncovered nodes in every column, indexed by header node.
+     */
+    private int[] size;
+
+    /**
+     * Whether each column, indexed by header node, is currently covered.
+     */
+    private boolean[] covered;
+
+    /**
+     * The first node of every candidate row.
+     */
+    private int[] firstNodeOfRow;
+
+    /**
+     * The candidate rows of the current partial solution.
+     */
+    private int[] solution;
+
+    /**
+     * The number of solutions found by the current search.
+     */
+    private int solutionCount;
+
+    /**
+     * The number of solutions after which the current search stops.
+     */
+    private int solutionLimit;
+
+    /**
+     * The number of search nodes visited by the current search.
+     */
+    private long nodes;
+
+    /**
+     * The number of dead ends met by the current search.
+     */
+    private long backtracks;
+
+    /**
+     * The number of search nodes after which the current search is abandoned.
+     */
+    private long nodeLimit;
+
+    /**
+     * Whether the current search was abandoned because it reached the node limit.
+     */
+    private boolean aborted;
+
+    /**
+     * Constructs a new DancingLinksSolver and builds the exact cover matrix of
+     * the standard 9x9 board.
+     */
+    public DancingLinksSolver() {
+        build(BoardGeometry.STANDARD);
+    }
+
+    /**
+     * Builds the exact cover matrix of a board, unless it is already built.
+     *
+     * @param geometry The geometry of the board.
+     */
+    private void build(BoardGeometry geometry) {
+        if (this.geometry == geometry)
+            return;
+        int boardSize = geometry.getSize();
+        int cellCount = geometry.getCellCount();
+        // four groups of constraints, and one candidate row per cell and value
+        int columnCount = cellCount * 4;
+        int rowCount = cellCount * boardSize;
+
+        int nodeCount = 1 + columnCount + rowCount * 4;
+        left = new int[nodeCount];
+        right = new int[nodeCount];
+        up = new int[nodeCount];
+        down = new int[nodeCount];
+        column = new int[nodeCount];
+        rowId = new int[nodeCount];
+        size = new int[1 + columnCount];
+        covered = new boolean[1 + columnCount];
+        firstNodeOfRow = new int[rowCount];
+        solution = new int[cellCount];
+
+        for (int header = 0; header <= columnCount; header++) {
+            left[header] = header == 0 ? columnCount : header - 1;
+            right[header] = header == columnCount ? 0 : header + 1;
+            up[header] = header;
+            down[header] = header;
+            column[header] = header;
+        }
+
+        int node = columnCount + 1;
+        for (int cell = 0; cell < cellCount; cell++) {
+            int x = cell % boardSize;
+            int y = cell / boardSize;
+            int box = geometry.boxIndex(x, y);
+            for (int digit = 0; digit < boardSize; digit++) {
+                int row = cell * boardSize + digit;
+                int[] headers = {
+                        1 + cell,
+                        1 + cellCount + y * boardSize + digit,
+                        1 + cellCount * 2 + x * boardSize + digit,
+                        1 + cellCount * 3 + box * boardSize + digit
+                };
+                firstNodeOfRow[row] = node;
+                for (int index = 0; index < headers.length; index++) {
+                    int header = headers[index];
+                    column[node] = header;
+                    rowId[node] = row;
+
+                    // append to the bottom of the column
+                    up[node] = up[header];
+                    down[node] = header;
+                    down[up[header]] = node;
+                    up[header] = node;
+                    size[header]++;
+
+                    // link into the row
+                    left[node] = index == 0 ? node + 3 : node - 1;
+                    right[node] = index == 3 ? node - 3 : node + 1;
+                    node++;
+                }
+            }
+        }
+        this.geometry = geometry;
+    }
+
+    /**
+     * Solves the provided puzzle in place.
+     *
+     * @param puzzle The 2D array representing the Sudoku puzzle to be solved.
+     * @return true if the puzzle can be solved, false otherwise.
+     */
+    @Override
+    public boolean solve(int[][] puzzle) {
+        build(BoardGeometry.of(puzzle));
+        int givens = selectGivens(puzzle);
+        prepareSearch(1, Long.MAX_VALUE);
+        boolean solved = givens >= 0 && search(givens);
+        if (solved) {
+            int boardSize = geometry.getSize();
+            for (int index = 0; index < solution.length; index++) {
+                int cell = solution[index] / boardSize;
+                puzzle[cell % boardSize][cell / boardSize] = solution[index] % boardSize + 1;
+            }
+        }
+        deselectGivens(givens < 0 ? -givens - 1 : givens);
+        recordSearch();
+        return solved;
+    }
+
+    /**
+     * Counts the solutions of the provided puzzle, stopping as soon as the given
+     * limit is reached. The puzzle is not modified.
+     *
+     * @param puzzle The 2D array representing the Sudoku puzzle.
+     * @param limit  The number of solutions after which counting stops.
+     * @return The number of solutions, capped at limit.
+     */
+    @Override
+    public int countSolutions(int[][] puzzle, int limit) {
+        return countSolutions(puzzle, limit, Long.MAX_VALUE);
+    }
+
+    /**
+     * Counts the solutions of the provided puzzle, giving up after visiting the
+     * given number of search nodes. The puzzle is not modified.
+     *
+     * @param puzzle    The 2D array representing the Sudoku puzzle.
+     * @param limit     The number of solutions after which counting stops.
+     * @param nodeLimit The number of search nodes after which counting gives up.
+     * @return The number of solutions, capped at limit, or limit if counting gave
+     *         up.
+     */
+    @Override
+    public int countSolutions(int[][] puzzle, int limit, long nodeLimit) {
+        build(BoardGeometry.of(puzzle));
+        int givens = selectGivens(puzzle);
+        prepareSearch(limit, nodeLimit);
+        if (givens >= 0 && limit > 0)
+            search(givens);
+        deselectGivens(givens < 0 ? -givens - 1 : givens);
+        recordSearch();
+        return aborted ? limit : solutionCount;
+    }
+
+    /**
+     * Resets the counters of the search.
+     *
+     * @param limit     The number of solutions after which the search stops.
+     * @param nodeLimit The number of search nodes after which the search gives up.
+     */
+    private void prepareSearch(int limit, long nodeLimit) {
+        this.solutionCount = 0;
+        this.solutionLimit = limit;
+        this.nodes = 0;
+        this.backtracks = 0;
+        this.nodeLimit = nodeLimit;
+        this.aborted = false;
+    }
+
+    /**
+     * Adds the nodes and backtracks of the search which just ended to the solver
+     * metrics shared with ConstraintSolver.
+     */
+    private void recordSearch() {
+        ConstraintSolver.SEARCHES.increment();
+        ConstraintSolver.NODES.add(nodes);
+        ConstraintSolver.BACKTRACKS.add(backtracks);
+    }
+
+    /**
+     * Selects the candidate row of every given value of the puzzle.
+     *
+     * @param puzzle The puzzle whose given values are selected.
+     * @return The number of selected rows, or -(count + 1) if a given value is
+     *         out of range or conflicts with the rows selected before it.
+     */
+    private int selectGivens(int[][] puzzle) {
+        int boardSize = geometry.getSize();
+        int count = 0;
+        for (int cell = 0; cell < solution.length; cell++) {
+            int value = puzzle[cell % boardSize][cell / boardSize];
+            if (value != 0) {
+                // like ConstraintSolver, a value outside the board has no solution
+                if (value < 0 || value > boardSize)
+                    return -count - 1;
+                int first = firstNodeOfRow[cell * boardSize + value - 1];
+                int node = first;
+                do {
+                    if (covered[column[node]])
+                        return -count - 1;
+                    node = right[node];
+                } while (node != first);
+
+                node = first;
+                do {
+                    cover(column[node]);
+                    node = right[node];
+                } while (node != first);
+                solution[count++] = rowId[first];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Undoes selectGivens, restoring the matrix for the next puzzle.
+     *
+     * @param count The number of rows that were selected.
+     */
+    private void deselectGivens(int count) {
+        for (int index = count - 1; index >= 0; index--) {
+            int first = firstNodeOfRow[solution[index]];
+            int node = left[first];
+            do {
+                uncover(column[node]);
+                node = left[node];
+            } while (node != left[first]);
+        }
+    }
+
+    /**
+     * Runs Algorithm X from the given depth, always branching on the column with
+     * the fewest remaining rows, and counts every solution found. The matrix is
+     * fully restored before returning.
+     *
+     * @param depth The number of rows already in the partial solution.
+     * @return true once the solution limit or the node limit has been reached,
+     *         false otherwise.
+     */
+    private boolean search(int depth) {
+        if (++nodes > nodeLimit) {
+            aborted = true;
+            return true;
+        }
+        if (right[ROOT] == ROOT)
+            return ++solutionCount >= solutionLimit;
+
+        int chosen = right[ROOT];
+        for (int header = right[chosen]; header != ROOT; header = right[header]) {
+            if (size[header] < size[chosen])
+                chosen = header;
+        }
+        if (size[chosen] == 0) {
+            backtracks++;
+            return false;
+        }
+
+        boolean found = false;
+        cover(chosen);
+        for (int row = down[chosen]; row != chosen && !found; row = down[row]) {
+            solution[depth] = rowId[row];
+            for (int node = right[row]; node != row; node = right[node]) {
+                cover(column[node]);
+            }
+            found = search(depth + 1);
+            for (int node = left[row]; node != row; node = left[node]) {
+                uncover(column[node]);
+            }
+        }
+        uncover(chosen);
+        if (!found)
+            backtracks++;
+        return found;
+    }
+
+    /**
+     * Removes a column from the header list and every row intersecting it from
+     * the other columns.
+     *
+     * @param header The header node of the column.
+     */
+    private void cover(int header) {
+        covered[header] = true;
+        right[left[header]] = right[header];
+        left[right[header]] = left[header];
+        for (int row = down[header]; row != header; row = down[row]) {
+            for (int node = right[row]; node != row; node = right[node]) {
+                down[up[node]] = down[node];
+                up[down[node]] = up[node];
+                size[column[node]]--;
+            }
+        }
+    }
+
+    /**
+     * Reverses cover, in the exact opposite order.
+     *
+     * @param header The header node of the column.
+     */
+    private void uncover(int header) {
+        for (int row = up[header]; row != header; row = up[row]) {
+            for (int node = left[row]; node != row; node = left[node]) {
+                size[column[node]]++;
+                down[up[node]] = node;
+                up[down[node]] = node;
+            }
+        }
+        right[left[header]] = header;
+        left[right[header]] = header;
+        covered[header] = false;
+    }
+}
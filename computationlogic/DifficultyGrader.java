@@ -0,0 +1,619 @@
+package computationlogic;
+
+import constants.SolvingTechnique;
+import problemdomain.BoardGeometry;
+
+/**
+ * The DifficultyGrader class grades a Sudoku puzzle by the hardest logical step
+ * a human needs to solve it.
+ *
+ * It solves the puzzle the way a person would: it keeps the candidates of every
+ * empty cell and, at every step, applies the easiest SolvingTechnique which
+ * makes progress (places a value or removes a candidate), starting again from
+ * the easiest after each step. The grade is the hardest technique used. A
+ * puzzle which none of the techniques can finish is graded TRIAL_AND_ERROR.
+ *
+ * Grading can be given a ceiling, in which case it stops as soon as the next
+ * step needs a technique above the ceiling. This is what lets the generator
+ * reject a candidate puzzle early, without finishing its grade. A puzzle solved
+ * without trial and error has exactly one solution, since every step only
+ * removes values that no solution can hold.
+ *
+ * The same steps find hints (see HintEngine): nextPlacement looks for the
+ * next value which can be placed, applying eliminations until one appears.
+ *
+ * Candidates are bitmasks in which bit `value` is set, as in ConstraintSolver,
+ * and an instance reuses its buffers between calls (reallocating them only when
+ * the size of the board changes), so it is not thread safe.
+ */
+public class DifficultyGrader {
+
+    /**
+     * The geometry of the board the buffers are sized for.
+     */
+    private BoardGeometry geometry;
+
+    /**
+     * The value of every cell, 0 if empty, in typewriter order.
+     */
+    private int[] values;
+
+    /**
+     * The candidate mask of every cell. A filled cell holds only its own value.
+     */
+    private int[] candidates;
+
+    /**
+     * The box index of every cell.
+     */
+    private int[] cellBoxes;
+
+    /**
+     * The masks searched for subsets and fish, indexed by the position, value or
+     * line they belong to.
+     */
+    private int[] subsetMasks;
+
+    /**
+     * Whether the current grading found that the puzzle has no solution.
+     */
+    private boolean contradiction;
+
+    /**
+     * The unit whose subsets are being searched.
+     */
+    private int subsetUnit;
+
+    /**
+     * The value whose fish are being searched.
+     */
+    private int fishValue;
+
+    /**
+     * Whether the fish being searched have rows (rather than columns) as their
+     * base lines.
+     */
+    private boolean fishOnRows;
+
+    /**
+     * Grades a puzzle by the hardest technique needed to solve it.
+     *
+     * @param puzzle The puzzle. It is not modified.
+     * @return The hardest technique needed, or null if the puzzle has no
+     *         solution.
+     */
+    public SolvingTechnique grade(int[][] puzzle) {
+        return grade(puzzle, SolvingTechnique.TRIAL_AND_ERROR);
+    }
+
+    /**
+     * Grades a puzzle, giving up as soon as a technique harder than the ceiling
+     * would be needed.
+     *
+     * @param puzzle  The puzzle. It is not modified.
+     * @param ceiling The hardest technique the grading may use.
+     * @return The hardest technique needed, or null if the puzzle needs a
+     *         technique above the ceiling or has no solution.
+     */
+    public SolvingTechnique grade(int[][] puzzle, SolvingTechnique ceiling) {
+        prepareBuffers(BoardGeometry.of(puzzle));
+        contradiction = false;
+        if (!ConstraintSolver.load(geometry, puzzle, values, candidates))
+            return null;
+
+        SolvingTechnique hardest = SolvingTechnique.NAKED_SINGLE;
+        while (hasEmptyCell()) {
+            SolvingTechnique technique = step(ceiling);
+            if (contradiction)
+                return null;
+            if (technique == null)
+                return ceiling == SolvingTechnique.TRIAL_AND_ERROR ? SolvingTechnique.TRIAL_AND_ERROR : null;
+            if (technique.compareTo(hardest) > 0)
+                hardest = technique;
+        }
+        return hardest;
+    }
+
+    /**
+     * Finds the next value which can be placed by logic, from the given state of
+     * a board. If no single is available, candidates are eliminated (on a copy of
+     * the state) with the easiest technique which makes progress until one is.
+     *
+     * @param geometry   The geometry of the board.
+     * @param values     The value of every cell, 0 if empty. Not modified.
+     * @param candidates The candidate mask of every empty cell. Not modified.
+     * @param placement  The array receiving the cell index and the value of the
+     *                   placement.
+     * @return The hardest technique needed to reach the placement, or null if
+     *         none is found without trial and error or the state is
+     *         contradictory.
+     */
+    SolvingTechnique nextPlacement(BoardGeometry geometry, int[] values, int[] candidates, int[] placement) {
+        prepareBuffers(geometry);
+        System.arraycopy(values, 0, this.values, 0, values.length);
+        System.arraycopy(candidates, 0, this.candidates, 0, candidates.length);
+        contradiction = false;
+
+        SolvingTechnique hardest = SolvingTechnique.NAKED_SINGLE;
+        while (!contradiction) {
+            SolvingTechnique single = findSingle(placement);
+            if (single != null)
+                return single.compareTo(hardest) > 0 ? single : hardest;
+
+            SolvingTechnique technique = null;
+            for (SolvingTechnique candidate : SolvingTechnique.values()) {
+                if (candidate.compareTo(SolvingTechnique.LOCKED_CANDIDATES) < 0)
+                    continue;
+                if (candidate == SolvingTechnique.TRIAL_AND_ERROR)
+                    return null;
+                if (apply(candidate)) {
+                    technique = candidate;
+                    break;
+                }
+            }
+            if (technique.compareTo(hardest) > 0)
+                hardest = technique;
+        }
+        return null;
+    }
+
+    /**
+     * Finds a naked single, or failing that a hidden single, without placing it.
+     *
+     * @param placement The array receiving the cell index and the value.
+     * @return NAKED_SINGLE or HIDDEN_SINGLE, or null if there is no single.
+     */
+    private SolvingTechnique findSingle(int[] placement) {
+        for (int cell = 0; cell < values.length; cell++) {
+            int mask = candidates[cell];
+            if (values[cell] == 0 && mask != 0 && (mask & (mask - 1)) == 0) {
+                placement[0] = cell;
+                placement[1] = Integer.numberOfTrailingZeros(mask);
+                return SolvingTechnique.NAKED_SINGLE;
+            }
+        }
+        for (int[] unit : geometry.getUnits()) {
+            int once = 0;
+            int twice = 0;
+            int placed = 0;
+            for (int cell : unit) {
+                if (values[cell] != 0) {
+                    placed |= 1 << values[cell];
+                } else {
+                    twice |= once & candidates[cell];
+                    once |= candidates[cell];
+                }
+            }
+            int singles = once & ~twice & ~placed;
+            if (singles == 0)
+                continue;
+            int bit = singles & -singles;
+            for (int cell : unit) {
+                if (values[cell] == 0 && (candidates[cell] & bit) != 0) {
+                    placement[0] = cell;
+                    placement[1] = Integer.numberOfTrailingZeros(bit);
+                    return SolvingTechnique.HIDDEN_SINGLE;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sizes the buffers for a board of the given geometry, keeping the current
+     * buffers if they already fit it.
+     *
+     * @param geometry The geometry of the board about to be graded.
+     */
+    private void prepareBuffers(BoardGeometry geometry) {
+        if (this.geometry == geometry)
+            return;
+        int size = geometry.getSize();
+        values = new int[geometry.getCellCount()];
+        candidates = new int[geometry.getCellCount()];
+        cellBoxes = new int[geometry.getCellCount()];
+        for (int cell = 0; cell < cellBoxes.length; cell++) {
+            cellBoxes[cell] = geometry.boxIndex(cell % size, cell / size);
+        }
+        subsetMasks = new int[size + 1];
+        this.geometry = geometry;
+    }
+
+    /**
+     * Checks if any cell is still empty.
+     *
+     * @return true if a cell is empty, false if the puzzle is solved.
+     */
+    private boolean hasEmptyCell() {
+        for (int value : values) {
+            if (value == 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Applies the easiest technique which makes progress.
+     *
+     * @param ceiling The hardest technique which may be applied.
+     * @return The technique applied, or null if no technique up to the ceiling
+     *         makes progress.
+     */
+    private SolvingTechnique step(SolvingTechnique ceiling) {
+        for (SolvingTechnique technique : SolvingTechnique.values()) {
+            if (technique.compareTo(ceiling) > 0 || technique == SolvingTechnique.TRIAL_AND_ERROR)
+                return null;
+            if (apply(technique) || contradiction)
+                return technique;
+        }
+        return null;
+    }
+
+    /**
+     * Applies a technique wherever it makes progress.
+     *
+     * @param technique The technique, other than TRIAL_AND_ERROR.
+     * @return true if a value was placed or a candidate removed.
+     */
+    private boolean apply(SolvingTechnique technique) {
+        switch (technique) {
+            case NAKED_SINGLE:
+                return nakedSingles();
+            case HIDDEN_SINGLE:
+                return hiddenSingles();
+            case LOCKED_CANDIDATES:
+                return lockedCandidates();
+            case NAKED_PAIR:
+                return nakedSubsets(2);
+            case HIDDEN_PAIR:
+                return hiddenSubsets(2);
+            case NAKED_TRIPLE:
+                return nakedSubsets(3);
+            case HIDDEN_TRIPLE:
+                return hiddenSubsets(3);
+            case X_WING:
+                return fish(2);
+            case SWORDFISH:
+                return fish(3);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Places every cell which has a single candidate left.
+     *
+     * @return true if a value was placed.
+     */
+    private boolean nakedSingles() {
+        boolean progress = false;
+        for (int cell = 0; cell < values.length && !contradiction; cell++) {
+            int mask = candidates[cell];
+            if (values[cell] == 0 && (mask & (mask - 1)) == 0) {
+                place(cell, Integer.numberOfTrailingZeros(mask));
+                progress = true;
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * Places every value which fits in a single cell of a unit.
+     *
+     * @return true if a value was placed.
+     */
+    private boolean hiddenSingles() {
+        boolean progress = false;
+        for (int[] unit : geometry.getUnits()) {
+            int once = 0;
+            int twice = 0;
+            int placed = 0;
+            for (int cell : unit) {
+                if (values[cell] != 0) {
+                    placed |= 1 << values[cell];
+                } else {
+                    twice |= once & candidates[cell];
+                    once |= candidates[cell];
+                }
+            }
+            if ((geometry.getAllValues() & ~(once | placed)) != 0) {
+                // a value fits nowhere in the unit
+                contradiction = true;
+                return true;
+            }
+            for (int singles = once & ~twice & ~placed; singles != 0; singles &= singles - 1) {
+                int bit = singles & -singles;
+                int target = -1;
+                for (int cell : unit) {
+                    if (values[cell] == 0 && (candidates[cell] & bit) != 0)
+                        target = cell;
+                }
+                if (target < 0) {
+                    // the only cell of the value was taken by another single
+                    contradiction = true;
+                    return true;
+                }
+                place(target, Integer.numberOfTrailingZeros(bit));
+                if (contradiction)
+                    return true;
+                progress = true;
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * Removes a value from the rest of a line when its candidates in a box all lie
+     * on that line (pointing), and from the rest of a box when its candidates in a
+     * line all lie in that box (claiming).
+     *
+     * @return true if a candidate was removed.
+     */
+    private boolean lockedCandidates() {
+        int size = geometry.getSize();
+        int[][] units = geometry.getUnits();
+        for (int value = 1; value <= size; value++) {
+            int bit = 1 << value;
+            for (int box = 0; box < size; box++) {
+                int rows = 0;
+                int columns = 0;
+                for (int cell : units[size * 2 + box]) {
+                    if (values[cell] == 0 && (candidates[cell] & bit) != 0) {
+                        rows |= 1 << (cell / size);
+                        columns |= 1 << (cell % size);
+                    }
+                }
+                boolean progress = false;
+                if (rows != 0 && (rows & (rows - 1)) == 0)
+                    progress = eliminateOutsideBox(units[Integer.numberOfTrailingZeros(rows)], box, bit);
+                if (columns != 0 && (columns & (columns - 1)) == 0)
+                    progress |= eliminateOutsideBox(units[size + Integer.numberOfTrailingZeros(columns)], box, bit);
+                if (progress)
+                    return true;
+            }
+            for (int line = 0; line < size * 2; line++) {
+                int boxes = 0;
+                for (int cell : units[line]) {
+                    if (values[cell] == 0 && (candidates[cell] & bit) != 0)
+                        boxes |= 1 << cellBoxes[cell];
+                }
+                if (boxes == 0 || (boxes & (boxes - 1)) != 0)
+                    continue;
+                boolean progress = false;
+                for (int cell : units[size * 2 + Integer.numberOfTrailingZeros(boxes)]) {
+                    boolean onLine = line < size ? cell / size == line : cell % size == line - size;
+                    if (!onLine)
+                        progress |= eliminate(cell, bit);
+                }
+                if (progress)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes candidates from the cells of a line which lie outside a box.
+     *
+     * @param line The cells of the line.
+     * @param box  The box whose cells are kept.
+     * @param mask The candidates to remove.
+     * @return true if a candidate was removed.
+     */
+    private boolean eliminateOutsideBox(int[] line, int box, int mask) {
+        boolean progress = false;
+        for (int cell : line) {
+            if (cellBoxes[cell] != box)
+                progress |= eliminate(cell, mask);
+        }
+        return progress;
+    }
+
+    /**
+     * Looks for n cells of a unit which share n candidates, and removes those
+     * candidates from the rest of the unit.
+     *
+     * @param n The number of cells, 2 for pairs and 3 for triples.
+     * @return true if a candidate was removed.
+     */
+    private boolean nakedSubsets(int n) {
+        int[][] units = geometry.getUnits();
+        for (subsetUnit = 0; subsetUnit < units.length; subsetUnit++) {
+            int[] unit = units[subsetUnit];
+            for (int position = 0; position < unit.length; position++) {
+                int mask = candidates[unit[position]];
+                int count = Integer.bitCount(mask);
+                subsetMasks[position] = values[unit[position]] == 0 && count >= 2 && count <= n ? mask : 0;
+            }
+            subsetMasks[unit.length] = 0;
+            if (searchSubsets(SolvingTechnique.NAKED_PAIR, n, 0, 0, 0, 0))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Looks for n values which fit only in the same n cells of a unit, and removes
+     * every other candidate from those cells.
+     *
+     * @param n The number of values, 2 for pairs and 3 for triples.
+     * @return true if a candidate was removed.
+     */
+    private boolean hiddenSubsets(int n) {
+        int[][] units = geometry.getUnits();
+        for (subsetUnit = 0; subsetUnit < units.length; subsetUnit++) {
+            int[] unit = units[subsetUnit];
+            subsetMasks[0] = 0;
+            for (int value = 1; value <= unit.length; value++) {
+                int bit = 1 << value;
+                int positions = 0;
+                for (int position = 0; position < unit.length; position++) {
+                    int cell = unit[position];
+                    if (values[cell] == value) {
+                        positions = 0;
+                        break;
+                    }
+                    if (values[cell] == 0 && (candidates[cell] & bit) != 0)
+                        positions |= 1 << position;
+                }
+                int count = Integer.bitCount(positions);
+                subsetMasks[value] = count >= 2 && count <= n ? positions : 0;
+            }
+            if (searchSubsets(SolvingTechnique.HIDDEN_PAIR, n, 0, 0, 0, 0))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Looks for n rows in which the candidates of a value lie in the same n
+     * columns, and removes the value from the rest of those columns; then the
+     * same with rows and columns swapped.
+     *
+     * @param n The number of lines, 2 for an X-Wing and 3 for a Swordfish.
+     * @return true if a candidate was removed.
+     */
+    private boolean fish(int n) {
+        int size = geometry.getSize();
+        int[][] units = geometry.getUnits();
+        for (fishValue = 1; fishValue <= size; fishValue++) {
+            int bit = 1 << fishValue;
+            for (int orientation = 0; orientation < 2; orientation++) {
+                fishOnRows = orientation == 0;
+                int firstLine = fishOnRows ? 0 : size;
+                for (int line = 0; line < size; line++) {
+                    int positions = 0;
+                    for (int position = 0; position < size; position++) {
+                        int cell = units[firstLine + line][position];
+                        if (values[cell] == fishValue) {
+                            positions = 0;
+                            break;
+                        }
+                        if (values[cell] == 0 && (candidates[cell] & bit) != 0)
+                            positions |= 1 << position;
+                    }
+                    int count = Integer.bitCount(positions);
+                    subsetMasks[line] = count >= 2 && count <= n ? positions : 0;
+                }
+                subsetMasks[size] = 0;
+                if (searchSubsets(SolvingTechnique.X_WING, n, 0, 0, 0, 0))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Searches subsetMasks for n entries whose union holds exactly n bits, and
+     * applies the deduction of the given kind to the first one which makes
+     * progress.
+     *
+     * @param kind   NAKED_PAIR, HIDDEN_PAIR or X_WING, standing for any size of
+     *               naked subset, hidden subset or fish.
+     * @param n      The size of the subset.
+     * @param start  The first entry which may be added.
+     * @param depth  The number of entries chosen so far.
+     * @param chosen The mask of the entries chosen so far.
+     * @param union  The union of the masks of the entries chosen so far.
+     * @return true if a candidate was removed.
+     */
+    private boolean searchSubsets(SolvingTechnique kind, int n, int start, int depth, int chosen, int union) {
+        for (int index = start; index < subsetMasks.length; index++) {
+            if (subsetMasks[index] == 0)
+                continue;
+            int next = union | subsetMasks[index];
+            if (Integer.bitCount(next) > n)
+                continue;
+            if (depth + 1 == n) {
+                if (Integer.bitCount(next) == n && applySubset(kind, chosen | 1 << index, next))
+                    return true;
+            } else if (searchSubsets(kind, n, index + 1, depth + 1, chosen | 1 << index, next)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Applies the deduction of a subset found by searchSubsets.
+     *
+     * @param kind   NAKED_PAIR, HIDDEN_PAIR or X_WING.
+     * @param chosen The mask of the chosen entries: positions in the unit, values
+     *               or base lines.
+     * @param union  The union of their masks: values, positions in the unit or
+     *               cover lines.
+     * @return true if a candidate was removed.
+     */
+    private boolean applySubset(SolvingTechnique kind, int chosen, int union) {
+        int[][] units = geometry.getUnits();
+        int size = geometry.getSize();
+        boolean progress = false;
+        if (kind == SolvingTechnique.NAKED_PAIR) {
+            int[] unit = units[subsetUnit];
+            for (int position = 0; position < unit.length; position++) {
+                if ((chosen & 1 << position) == 0)
+                    progress |= eliminate(unit[position], union);
+            }
+        } else if (kind == SolvingTechnique.HIDDEN_PAIR) {
+            int[] unit = units[subsetUnit];
+            for (int positions = union; positions != 0; positions &= positions - 1) {
+                progress |= restrict(unit[Integer.numberOfTrailingZeros(positions)], chosen);
+            }
+        } else {
+            // the cell at position p of a cover line lies on base line p
+            for (int lines = union; lines != 0; lines &= lines - 1) {
+                int coverLine = Integer.numberOfTrailingZeros(lines);
+                int[] cover = units[fishOnRows ? size + coverLine : coverLine];
+                for (int position = 0; position < size; position++) {
+                    if ((chosen & 1 << position) == 0)
+                        progress |= eliminate(cover[position], 1 << fishValue);
+                }
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * Places a value in an empty cell and removes it from its peers.
+     *
+     * @param cell  The index of the cell.
+     * @param value The value to place.
+     */
+    private void place(int cell, int value) {
+        if (values[cell] != 0 || (candidates[cell] & 1 << value) == 0
+                || !ConstraintSolver.assign(geometry, values, candidates, cell, value))
+            contradiction = true;
+    }
+
+    /**
+     * Removes candidates from an empty cell.
+     *
+     * @param cell The index of the cell.
+     * @param mask The candidates to remove.
+     * @return true if a candidate was removed.
+     */
+    private boolean eliminate(int cell, int mask) {
+        if (values[cell] != 0 || (candidates[cell] & mask) == 0)
+            return false;
+        candidates[cell] &= ~mask;
+        if (candidates[cell] == 0)
+            contradiction = true;
+        return true;
+    }
+
+    /**
+     * Keeps only the given candidates of an empty cell.
+     *
+     * @param cell The index of the cell.
+     * @param mask The candidates to keep.
+     * @return true if a candidate was removed.
+     */
+    private boolean restrict(int cell, int mask) {
+        if (values[cell] != 0 || (candidates[cell] & ~mask) == 0)
+            return false;
+        candidates[cell] &= mask;
+        if (candidates[cell] == 0)
+            contradiction = true;
+        return true;
+    }
+}
@@ -1,161 +1,405 @@
 package computationlogic;
 
-import problemdomain.Coordinates;
+import constants.Difficulty;
+import constants.SolvingTechnique;
+import metrics.Counter;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import problemdomain.BoardGeometry;
 import problemdomain.SudokuGame;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Locale;
 import java.util.Random;
 
-import static problemdomain.SudokuGame.GRID_BOUNDARY;
-
 /**
- * The GameGenerator class is responsible for generating new Sudoku games.
+ * The GameGenerator class is responsible for generating new Sudoku games, on the
+ * standard 9x9 board or on any other BoardGeometry.
+ *
+ * Games on the standard board are generated for the grade band of their
+ * difficulty level (see DifficultyGrader): tiles are only removed while the
+ * puzzle stays within the maximum grade, and removal goes on past the number of
+ * empty tiles of the level until the minimum grade is reached. Games on other
+ * boards are only generated for their number of empty tiles.
  */
 class GameGenerator {
 
+    /**
+     * The number of search nodes after which a random fill is abandoned in favour
+     * of transforming the base grid. Filling an empty grid needs roughly one node
+     * per empty cell, so this limit is practically never reached; it only exists to
+     * bound the running time. The limit applies to a 9x9 board and is scaled by
+     * the number of cells on other boards.
+     */
+    private static final long FILL_NODE_LIMIT = 10_000;
+
+    /**
+     * The number of search nodes after which a uniqueness check on a board larger
+     * than 9x9 gives up and keeps the tile. On sparse 16x16 and 25x25 boards a
+     * single check can otherwise run for minutes; giving up only ever keeps a
+     * given, so the puzzle stays unique but may end up with fewer empty tiles than
+     * the difficulty level asks for. Checks on the 9x9 board are not bounded.
+     */
+    private static final long UNIQUENESS_NODE_LIMIT = 1_000;
+
+    /**
+     * The number of solved games unsolved while looking for a puzzle in the grade
+     * band of the difficulty level. If none reaches the minimum grade, the
+     * hardest puzzle found is returned.
+     */
+    private static final int MAX_GRADE_ATTEMPTS = 20;
+
+    /**
+     * The number of solved games unsolved for a grade band.
+     */
+    private static final Counter GRADE_ATTEMPTS = Metrics.counter("generator.gradeAttempts");
+
+    /**
+     * The number of those which were rejected for staying below the minimum
+     * grade.
+     */
+    private static final Counter GRADE_REJECTIONS = Metrics.counter("generator.gradeRejections");
+
+    /**
+     * The time taken to generate a game, indexed by the ordinal of its
+     * difficulty level.
+     */
+    private static final LatencyHistogram[] GENERATION_TIME = new LatencyHistogram[Difficulty.values().length];
+
+    static {
+        for (Difficulty difficulty : Difficulty.values()) {
+            GENERATION_TIME[difficulty.ordinal()] = Metrics
+                    .histogram("generator." + difficulty.getName().toLowerCase(Locale.ROOT) + ".nanos");
+        }
+    }
+
     /**
      * Generates a new Sudoku game grid by first creating a solved game and then
      * unsolving it.
      * The unsolving process involves randomly removing a certain number of tiles
      * from the solved game.
      *
+     * @param solver The solver backend used to check the unsolved game.
+     * @return A 2D array representing the new Sudoku game grid.
+     */
+    public static int[][] getNewGameGrid(ISolver solver) {
+        return getNewGameGrid(solver, new Random().nextLong());
+    }
+
+    /**
+     * Generates a new Sudoku game grid from an explicit seed. The same seed, solver
+     * backend and difficulty level always produce the same grid.
+     *
+     * @param solver The solver backend used to check the unsolved game.
+     * @param seed   The seed of the random number generator.
+     * @return A 2D array representing the new Sudoku game grid.
+     */
+    public static int[][] getNewGameGrid(ISolver solver, long seed) {
+        return getNewGameGrid(solver, SudokuGame.getDifficulty(), seed);
+    }
+
+    /**
+     * Generates a new Sudoku game grid for an explicit difficulty level and seed.
+     * Unlike the other overloads it does not read the current difficulty of
+     * SudokuGame, so it can be called from background threads.
+     *
+     * @param solver     The solver backend used to check the unsolved game.
+     * @param difficulty The difficulty level, which sets the grade band and number
+     *                   of empty tiles.
+     * @param seed       The seed of the random number generator.
      * @return A 2D array representing the new Sudoku game grid.
      */
-    public static int[][] getNewGameGrid() {
-        return unsolveGame(getSolvedGame());
+    public static int[][] getNewGameGrid(ISolver solver, Difficulty difficulty, long seed) {
+        return getNewGameGrid(solver, BoardGeometry.STANDARD, difficulty, seed);
+    }
+
+    /**
+     * Generates a new Sudoku game grid on a board of the given geometry, for an
+     * explicit difficulty level and seed. On the standard board the grid is in
+     * the grade band of the difficulty level whenever one of MAX_GRADE_ATTEMPTS
+     * solved games allows it. On other boards the number of empty tiles of a
+     * difficulty level is scaled by the number of cells, so a 16x16 Easy game is
+     * as sparse as a 9x9 Easy game.
+     *
+     * @param solver     The solver backend used to check the unsolved game.
+     * @param geometry   The geometry of the board.
+     * @param difficulty The difficulty level, which sets the share of empty tiles.
+     * @param seed       The seed of the random number generator.
+     * @return A 2D array representing the new Sudoku game grid.
+     */
+    public static int[][] getNewGameGrid(ISolver solver, BoardGeometry geometry, Difficulty difficulty,
+            long seed) {
+        long start = System.nanoTime();
+        Random random = new Random(seed);
+        int removals = difficulty.getValue() * geometry.getCellCount() / BoardGeometry.STANDARD.getCellCount();
+        long nodeLimit = geometry.getCellCount() > BoardGeometry.STANDARD.getCellCount()
+                ? UNIQUENESS_NODE_LIMIT
+                : Long.MAX_VALUE;
+        int[][] grid = geometry == BoardGeometry.STANDARD
+                ? getGradedGame(solver, difficulty, random)
+                : unsolveGame(getSolvedGame(geometry, random), solver, removals, nodeLimit, random);
+        GENERATION_TIME[difficulty.ordinal()].recordSince(start);
+        return grid;
     }
 
     /**
      * Generates a solved Sudoku game.
      *
-     * This method works by allocating each value from 1 to 9, nine times each, to a
-     * 9x9 grid.
-     * The allocation is done randomly and follows the rules of Sudoku.
+     * The empty grid is filled by the ConstraintSolver, trying the candidates of
+     * every branch cell in a random order. If that search reaches
+     * FILL_NODE_LIMIT nodes, a randomly transformed copy of a fixed base grid is
+     * returned instead, so the running time is bounded in every case.
      *
-     * If an allocation results in an invalid game, the allocation is rolled back
-     * and tried again.
-     * If too many allocation attempts result in an invalid game, the most recent
-     * allocations are reset and the process is started over.
-     * As a failsafe, if the game keeps breaking after 500 attempts, the board is
-     * reset entirely and the process starts from the beginning.
+     * @param geometry The geometry of the board.
+     * @param random   The source of randomness.
+     * @return A 2D array representing a solved Sudoku game.
+     */
+    private static int[][] getSolvedGame(BoardGeometry geometry, Random random) {
+        int[][] newGrid = new int[geometry.getSize()][geometry.getSize()];
+        long nodeLimit = FILL_NODE_LIMIT * geometry.getCellCount() / BoardGeometry.STANDARD.getCellCount();
+        if (new ConstraintSolver().fillRandomly(newGrid, random, nodeLimit))
+            return newGrid;
+        return getTransformedGame(geometry, random);
+    }
+
+    /**
+     * Generates a solved Sudoku game by applying random symmetry transforms to a
+     * base grid: digit relabeling, band and row permutations, stack and column
+     * permutations, and transposition. Each transform preserves validity, and the
+     * whole operation is a single pass over the grid.
      *
+     * @param geometry The geometry of the board.
+     * @param random   The source of randomness.
      * @return A 2D array representing a solved Sudoku game.
      */
-    private static int[][] getSolvedGame() {
-        Random random = new Random(System.currentTimeMillis());
-        int[][] newGrid = new int[GRID_BOUNDARY][GRID_BOUNDARY];
-
-        // Value represents potential values for each square. Each value must be
-        // allocated 9 times.
-        for (int value = 1; value <= GRID_BOUNDARY; value++) {
-            // allocations refers to the number of times in which a square has been given a
-            // value.
-            int allocations = 0;
-
-            // If too many allocation attempts are made which end in an invalid game, we
-            // grab the most recent
-            // allocations stored in the List below, and reset them all to 0 (empty).
-            int interrupt = 0;
-
-            // Keep track of what has been allocated in the current frame of the loop
-            List<Coordinates> allocTracker = new ArrayList<>();
-
-            // As a failsafe, if we keep rolling back allocations on the most recent frame,
-            // and the game still
-            // keeps breaking, after 500 times we reset the board entirely and start again.
-            int attempts = 0;
-
-            while (allocations < GRID_BOUNDARY) {
-
-                if (interrupt > 200) {
-                    allocTracker.forEach(coord -> {
-                        newGrid[coord.getX()][coord.getY()] = 0;
-                    });
-
-                    interrupt = 0;
-                    allocations = 0;
-                    allocTracker.clear();
-                    attempts++;
-
-                    if (attempts > 500) {
-                        clearArray(newGrid);
-                        attempts = 0;
-                        value = 1;
-                    }
-                }
+    private static int[][] getTransformedGame(BoardGeometry geometry, Random random) {
+        int boxSize = geometry.getBoxSize();
+        int size = geometry.getSize();
+        int[] digits = shuffledLines(geometry, random, false);
+        int[] rows = shuffledLines(geometry, random, true);
+        int[] columns = shuffledLines(geometry, random, true);
+        boolean transpose = random.nextBoolean();
 
-                int xCoordinate = random.nextInt(GRID_BOUNDARY);
-                int yCoordinate = random.nextInt(GRID_BOUNDARY);
-
-                if (newGrid[xCoordinate][yCoordinate] == 0) {
-                    newGrid[xCoordinate][yCoordinate] = value;
-
-                    // if value results in an invalid game, then re-assign that element to 0 and try
-                    // again
-                    if (GameLogic.sudokuIsInvalid(newGrid)) {
-                        newGrid[xCoordinate][yCoordinate] = 0;
-                        interrupt++;
-                    }
-                    // otherwise, indicate that a value has been allocated, and add it to the
-                    // allocation tracker.
-                    else {
-                        allocTracker.add(new Coordinates(xCoordinate, yCoordinate));
-                        allocations++;
-                    }
-                }
+        int[][] newGrid = new int[size][size];
+        for (int xIndex = 0; xIndex < size; xIndex++) {
+            for (int yIndex = 0; yIndex < size; yIndex++) {
+                int x = columns[xIndex];
+                int y = rows[yIndex];
+                // base pattern: each row is the previous one shifted by a box width,
+                // and each band is shifted by one more
+                int value = (y * boxSize + y / boxSize + x) % size;
+                if (transpose)
+                    newGrid[yIndex][xIndex] = digits[value] + 1;
+                else
+                    newGrid[xIndex][yIndex] = digits[value] + 1;
             }
         }
         return newGrid;
     }
 
     /**
-     * This method takes a solved Sudoku game and unsolves it by randomly setting a
-     * certain number of tiles to 0.
-     * The unsolving process is done in a way that the resulting game is still
-     * solvable.
+     * Returns a random permutation of the indexes 0 to size - 1.
+     *
+     * @param geometry  The geometry of the board.
+     * @param random    The source of randomness.
+     * @param keepBoxes   If true, only permutations that keep lines inside their
+     *                    band (or stack) are returned: the bands are shuffled and
+     *                    the lines inside each band are shuffled.
+     * @return The permutation.
+     */
+    private static int[] shuffledLines(BoardGeometry geometry, Random random, boolean keepBoxes) {
+        int boxSize = geometry.getBoxSize();
+        int[] lines = new int[geometry.getSize()];
+        if (!keepBoxes) {
+            for (int index = 0; index < lines.length; index++) {
+                lines[index] = index;
+            }
+            shuffle(lines, 0, lines.length, random);
+            return lines;
+        }
+
+        int[] bands = new int[boxSize];
+        for (int band = 0; band < boxSize; band++) {
+            bands[band] = band;
+        }
+        shuffle(bands, 0, boxSize, random);
+        for (int band = 0; band < boxSize; band++) {
+            for (int line = 0; line < boxSize; line++) {
+                lines[band * boxSize + line] = bands[band] * boxSize + line;
+            }
+            shuffle(lines, band * boxSize, band * boxSize + boxSize, random);
+        }
+        return lines;
+    }
+
+    /**
+     * Shuffles a range of an array in place (Fisher-Yates).
+     *
+     * @param array  The array to shuffle.
+     * @param from   The first index of the range, inclusive.
+     * @param to     The last index of the range, exclusive.
+     * @param random The source of randomness.
+     */
+    private static void shuffle(int[] array, int from, int to, Random random) {
+        for (int index = to - 1; index > from; index--) {
+            int swap = from + random.nextInt(index - from + 1);
+            int temp = array[index];
+            array[index] = array[swap];
+            array[swap] = temp;
+        }
+    }
+
+    /**
+     * This method takes a solved Sudoku game and unsolves it by setting tiles to 0
+     * in a random order.
+     * The unsolving process is done in a way that the resulting game has exactly
+     * one solution.
      *
      * The process is as follows:
      * 1. Copy values from the solved game to a new array.
-     * 2. Randomly remove values from the new array.
-     * 3. Test the new array for solvability.
-     * 4. If the new array is solvable, return it. If not, go back to step 1.
+     * 2. Visit every tile once, in a random order.
+     * 3. Remove the tile's value and count the solutions of the new array, stopping
+     * at 2.
+     * 4. If the solution is no longer unique, put the value back.
+     * 5. Stop once the number of tiles required by the difficulty level has been
+     * removed.
+     *
+     * Not every solved game admits as many removals as the Expert level asks for,
+     * in which case the returned game has as many empty tiles as uniqueness allows.
      *
      * @param solvedGame A 2D array representing a solved Sudoku game.
-     * @return A 2D array representing an unsolved but solvable Sudoku game.
+     * @param solver     The solver backend used to count solutions.
+     * @param removals   The number of tiles to remove, set by the difficulty
+     *                   level.
+     * @param nodeLimit  The number of search nodes after which a uniqueness check
+     *                   gives up and keeps the tile.
+     * @param random     The source of randomness.
+     * @return A 2D array representing an unsolved Sudoku game with a unique
+     *         solution.
      */
-    private static int[][] unsolveGame(int[][] solvedGame) {
-        Random random = new Random(System.currentTimeMillis());
+    private static int[][] unsolveGame(int[][] solvedGame, ISolver solver, int removals, long nodeLimit,
+            Random random) {
+        int size = solvedGame.length;
+        int[][] uniqueArray = SudokuUtilities.copyToNewArray(solvedGame);
 
-        boolean solvable = false;
+        int[] cells = shuffledCells(size * size, random);
+        int removed = 0;
+        for (int index = 0; index < cells.length && removed < removals; index++) {
+            int xCoordinate = cells[index] % size;
+            int yCoordinate = cells[index] / size;
+            int value = uniqueArray[xCoordinate][yCoordinate];
 
-        // note: not actually solvable until the algorithm below finishes!
-        int[][] solvableArray = new int[GRID_BOUNDARY][GRID_BOUNDARY];
+            uniqueArray[xCoordinate][yCoordinate] = 0;
+            if (solver.countSolutions(uniqueArray, 2, nodeLimit) == 1) {
+                removed++;
+            } else {
+                uniqueArray[xCoordinate][yCoordinate] = value;
+            }
+        }
+        return uniqueArray;
+    }
 
-        while (solvable == false) {
+    /**
+     * Generates a 9x9 game in the grade band of a difficulty level, unsolving new
+     * solved games until one reaches the minimum grade.
+     *
+     * @param solver     The solver backend used to check uniqueness when the band
+     *                   allows trial and error.
+     * @param difficulty The difficulty level.
+     * @param random     The source of randomness.
+     * @return The first game in the band, or the hardest game found if none
+     *         reached the minimum grade.
+     */
+    private static int[][] getGradedGame(ISolver solver, Difficulty difficulty, Random random) {
+        DifficultyGrader grader = new DifficultyGrader();
+        int[][] hardestGame = null;
+        SolvingTechnique hardestGrade = null;
+        for (int attempt = 0; attempt < MAX_GRADE_ATTEMPTS; attempt++) {
+            GRADE_ATTEMPTS.increment();
+            int[][] game = getSolvedGame(BoardGeometry.STANDARD, random);
+            SolvingTechnique grade = unsolveGraded(game, solver, grader, difficulty, random);
+            if (grade.compareTo(difficulty.getMinimumGrade()) >= 0)
+                return game;
+            GRADE_REJECTIONS.increment();
+            if (hardestGrade == null || grade.compareTo(hardestGrade) > 0) {
+                hardestGame = game;
+                hardestGrade = grade;
+            }
+        }
+        return hardestGame;
+    }
 
-            // Take values from solvedGame and write to new unsolved; i.e. reset to initial
-            // state
-            SudokuUtilities.copySudokuArrayValues(solvedGame, solvableArray);
+    /**
+     * Unsolves a solved game in place, within the grade band of a difficulty
+     * level.
+     *
+     * Every tile is visited once, in a random order. A tile is removed only if the
+     * puzzle still has a unique solution and needs no technique above the maximum
+     * grade; the grader stops as soon as it would, which rejects the removal
+     * early. When the maximum grade excludes trial and error, a puzzle the grader
+     * can finish is unique, so the solver is not needed. Removal stops once the
+     * number of empty tiles of the level is reached and the puzzle needs at least
+     * the minimum grade, or once every tile has been visited.
+     *
+     * @param game       The solved game, unsolved in place.
+     * @param solver     The solver backend used to check uniqueness when the band
+     *                   allows trial and error.
+     * @param grader     The grader.
+     * @param difficulty The difficulty level.
+     * @param random     The source of randomness.
+     * @return The grade of the unsolved game.
+     */
+    private static SolvingTechnique unsolveGraded(int[][] game, ISolver solver, DifficultyGrader grader,
+            Difficulty difficulty, Random random) {
+        SolvingTechnique ceiling = difficulty.getMaximumGrade();
+        boolean logicOnly = ceiling != SolvingTechnique.TRIAL_AND_ERROR;
+        int size = game.length;
+        int[] cells = shuffledCells(size * size, random);
+        int removed = 0;
+        SolvingTechnique grade = SolvingTechnique.NAKED_SINGLE;
+        for (int index = 0; index < cells.length; index++) {
+            if (removed >= difficulty.getValue() && grade.compareTo(difficulty.getMinimumGrade()) >= 0)
+                break;
+            int xCoordinate = cells[index] % size;
+            int yCoordinate = cells[index] / size;
+            int value = game[xCoordinate][yCoordinate];
 
-            // remove random numbers depending on difficulty level
-            int index = 0;
-            while (index < SudokuGame.getDifficultyValue()) {
-                int xCoordinate = random.nextInt(GRID_BOUNDARY);
-                int yCoordinate = random.nextInt(GRID_BOUNDARY);
+            game[xCoordinate][yCoordinate] = 0;
+            SolvingTechnique newGrade;
+            if (logicOnly)
+                newGrade = grader.grade(game, ceiling);
+            else if (solver.countSolutions(game, 2) == 1)
+                // the grade only decides when to stop, so it is not needed before
+                // the number of empty tiles is reached
+                newGrade = removed + 1 >= difficulty.getValue() ? grader.grade(game) : grade;
+            else
+                newGrade = null;
 
-                if (solvableArray[xCoordinate][yCoordinate] != 0) {
-                    solvableArray[xCoordinate][yCoordinate] = 0;
-                    index++;
-                }
+            if (newGrade != null) {
+                removed++;
+                grade = newGrade;
+            } else {
+                game[xCoordinate][yCoordinate] = value;
             }
+        }
+        // a game which ran out of tiles before the number of empty tiles was
+        // reached has not been graded yet
+        return removed < difficulty.getValue() && !logicOnly ? grader.grade(game) : grade;
+    }
 
-            int[][] toBeSolved = new int[GRID_BOUNDARY][GRID_BOUNDARY];
-            SudokuUtilities.copySudokuArrayValues(solvableArray, toBeSolved);
-
-            solvable = SudokuSolver.puzzleIsSolvable(toBeSolved);
+    /**
+     * Returns the indexes of every cell (y * size + x) in a random order.
+     *
+     * @param cellCount The number of cells on the board.
+     * @param random    The source of randomness.
+     * @return An array holding each cell index exactly once.
+     */
+    private static int[] shuffledCells(int cellCount, Random random) {
+        int[] cells = new int[cellCount];
+        for (int index = 0; index < cells.length; index++) {
+            cells[index] = index;
         }
-        return solvableArray;
+        shuffle(cells, 0, cells.length, random);
+        return cells;
     }
 
     /**
@@ -168,9 +412,9 @@ class GameGenerator {
      *         false indicates it is enabled.
      */
     public static boolean[][] getDisabledTiles(int[][] grid) {
-        boolean[][] disabledTiles = new boolean[GRID_BOUNDARY][GRID_BOUNDARY];
-        for (int xIndex = 0; xIndex < GRID_BOUNDARY; xIndex++) {
-            for (int yIndex = 0; yIndex < GRID_BOUNDARY; yIndex++) {
+        boolean[][] disabledTiles = new boolean[grid.length][grid.length];
+        for (int xIndex = 0; xIndex < grid.length; xIndex++) {
+            for (int yIndex = 0; yIndex < grid.length; yIndex++) {
                 if (grid[xIndex][yIndex] != 0) {
                     disabledTiles[xIndex][yIndex] = true;
                 }
@@ -179,19 +423,4 @@ class GameGenerator {
         return disabledTiles;
     }
 
-    /**
-     * This method sets all the values in the provided 2D array to 0.
-     * It iterates over each element in the array and sets its value to 0.
-     *
-     * @param newGrid A 2D array that needs to be cleared (i.e., all its elements
-     *                set to 0).
-     */
-    private static void clearArray(int[][] newGrid) {
-        for (int xIndex = 0; xIndex < GRID_BOUNDARY; xIndex++) {
-            for (int yIndex = 0; yIndex < GRID_BOUNDARY; yIndex++) {
-                newGrid[xIndex][yIndex] = 0;
-            }
-        }
-    }
-
-}
\ No newline at end of file
+}
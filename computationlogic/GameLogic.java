@@ -2,19 +2,32 @@ package computationlogic;
 
 //Collection of static functions which may be used to determine events and new Game states.
 
+import constants.Difficulty;
 import constants.GameState;
-import constants.Rows;
+import constants.SolverType;
+import metrics.Counter;
+import metrics.Metrics;
+import problemdomain.Board;
+import problemdomain.BoardGeometry;
 import problemdomain.SudokuGame;
 
-import java.util.*;
-
-import static problemdomain.SudokuGame.GRID_BOUNDARY;
+import java.util.Random;
 
 /**
  * The GameLogic class provides a static method to generate a new Sudoku game.
  */
 public class GameLogic {
 
+    /**
+     * The number of completion checks, of either a grid or a board.
+     */
+    private static final Counter COMPLETION_CHECKS = Metrics.counter("validation.completionChecks");
+
+    /**
+     * The number of full-grid validity checks.
+     */
+    private static final Counter GRID_CHECKS = Metrics.counter("validation.gridChecks");
+
     /**
      * Generates a new Sudoku game with a new game grid.
      *
@@ -28,7 +41,81 @@ public class GameLogic {
      * @return A new SudokuGame instance representing the new game.
      */
     public static SudokuGame getNewGame() {
-        int[][] newGameGrid = GameGenerator.getNewGameGrid();
+        return getNewGame(SolverType.CONSTRAINT_PROPAGATION);
+    }
+
+    /**
+     * Generates a new Sudoku game, using the given solver backend to check the
+     * generated puzzle.
+     *
+     * @param solverType The solver backend used by the generator.
+     * @return A new SudokuGame instance representing the new game.
+     */
+    public static SudokuGame getNewGame(SolverType solverType) {
+        return createGame(GameGenerator.getNewGameGrid(SudokuSolver.getSolver(solverType)));
+    }
+
+    /**
+     * Generates a new Sudoku game from an explicit seed, so that the same seed
+     * always reproduces the same game for a given solver backend and difficulty.
+     *
+     * @param solverType The solver backend used by the generator.
+     * @param seed       The seed of the random number generator.
+     * @return A new SudokuGame instance representing the new game.
+     */
+    public static SudokuGame getNewGame(SolverType solverType, long seed) {
+        return createGame(GameGenerator.getNewGameGrid(SudokuSolver.getSolver(solverType), seed));
+    }
+
+    /**
+     * Generates a new Sudoku game for an explicit difficulty level, independently
+     * of the difficulty currently selected in SudokuGame. This is safe to call
+     * from background threads.
+     *
+     * @param difficulty The difficulty level of the new game.
+     * @return A new SudokuGame instance representing the new game.
+     */
+    public static SudokuGame getNewGame(Difficulty difficulty) {
+        return getNewGame(difficulty, SolverType.CONSTRAINT_PROPAGATION, new Random().nextLong());
+    }
+
+    /**
+     * Generates a new Sudoku game for an explicit difficulty level, solver backend
+     * and seed.
+     *
+     * @param difficulty The difficulty level of the new game.
+     * @param solverType The solver backend used by the generator.
+     * @param seed       The seed of the random number generator.
+     * @return A new SudokuGame instance representing the new game.
+     */
+    public static SudokuGame getNewGame(Difficulty difficulty, SolverType solverType, long seed) {
+        return createGame(GameGenerator.getNewGameGrid(SudokuSolver.getSolver(solverType), difficulty, seed));
+    }
+
+    /**
+     * Generates a new Sudoku game on a board of the given geometry, for an
+     * explicit difficulty level, solver backend and seed.
+     *
+     * @param geometry   The geometry of the board, such as 4x4 or 16x16.
+     * @param difficulty The difficulty level of the new game.
+     * @param solverType The solver backend used by the generator.
+     * @param seed       The seed of the random number generator.
+     * @return A new SudokuGame instance representing the new game.
+     */
+    public static SudokuGame getNewGame(BoardGeometry geometry, Difficulty difficulty, SolverType solverType,
+            long seed) {
+        return createGame(GameGenerator.getNewGameGrid(SudokuSolver.getSolver(solverType), geometry, difficulty,
+                seed));
+    }
+
+    /**
+     * Wraps a newly generated grid in a SudokuGame whose filled tiles are
+     * disabled.
+     *
+     * @param newGameGrid The generated grid.
+     * @return A new SudokuGame instance with a GameState of NEW.
+     */
+    private static SudokuGame createGame(int[][] newGameGrid) {
         boolean[][] disabledTiles = GameGenerator.getDisabledTiles(newGameGrid);
         return new SudokuGame(
                 GameState.NEW,
@@ -48,9 +135,28 @@ public class GameLogic {
      * @return The current GameState of the Sudoku game.
      */
     public static GameState checkForCompletion(int[][] grid) {
+        COMPLETION_CHECKS.increment();
+        if (tilesAreNotFilled(grid))
+            return GameState.ACTIVE;
         if (sudokuIsInvalid(grid))
             return GameState.ACTIVE;
-        if (tilesAreNotFilled(grid))
+        return GameState.COMPLETE;
+    }
+
+    /**
+     * Checks the state of a board, like checkForCompletion(int[][]). The grid is
+     * only copied for the validity check once every cell is filled.
+     *
+     * @param board The current state of the Sudoku board.
+     * @return The current GameState of the Sudoku game.
+     */
+    public static GameState checkForCompletion(Board board) {
+        COMPLETION_CHECKS.increment();
+        for (int cell = 0; cell < board.getGeometry().getCellCount(); cell++) {
+            if (board.getValue(cell) == 0)
+                return GameState.ACTIVE;
+        }
+        if (sudokuIsInvalid(board.toGrid()))
             return GameState.ACTIVE;
         return GameState.COMPLETE;
     }
@@ -67,8 +173,8 @@ public class GameLogic {
      * @return True if any tiles are not filled, false otherwise.
      */
     public static boolean tilesAreNotFilled(int[][] grid) {
-        for (int xIndex = 0; xIndex < GRID_BOUNDARY; xIndex++) {
-            for (int yIndex = 0; yIndex < GRID_BOUNDARY; yIndex++) {
+        for (int xIndex = 0; xIndex < grid.length; xIndex++) {
+            for (int yIndex = 0; yIndex < grid.length; yIndex++) {
                 if (grid[xIndex][yIndex] == 0)
                     return true;
             }
@@ -81,96 +187,38 @@ public class GameLogic {
      * The state is considered invalid if any of the rows, columns, or squares are
      * invalid.
      *
+     * The check is delegated to the bitmask engine in SudokuConstraints and does
+     * not allocate.
+     *
      * @param grid The current state of the Sudoku game.
      * @return true if the Sudoku game state is invalid, false otherwise.
      */
     public static boolean sudokuIsInvalid(int[][] grid) {
-        if (rowsAreInvalid(grid))
-            return true;
-        if (columnsAreInvalid(grid))
-            return true;
-        if (squaresAreInvalid(grid))
-            return true;
-        else
-            return false;
+        GRID_CHECKS.increment();
+        return SudokuConstraints.isInvalid(grid);
     }
 
     /**
      * Checks if any of the squares in the Sudoku game are invalid.
-     * The game is divided into 9 squares (3x3 sections), and this method checks
-     * each one.
+     * The game is divided into boxes (9 squares of 3x3 on a standard board), and
+     * this method checks each one.
      *
      * @param grid The current state of the Sudoku game.
      * @return true if any of the squares are invalid, false otherwise.
      */
     public static boolean squaresAreInvalid(int[][] grid) {
-        // top three squares
-        if (rowOfSquaresIsInvalid(Rows.TOP, grid))
-            return true;
-
-        // middle three
-        if (rowOfSquaresIsInvalid(Rows.MIDDLE, grid))
-            return true;
-
-        // bottom three
-        if (rowOfSquaresIsInvalid(Rows.BOTTOM, grid))
-            return true;
-
-        return false;
-    }
-
-    /**
-     * Checks if a row of squares in the Sudoku grid is invalid.
-     * The Sudoku grid is divided into 9 squares (3x3 sections), and this method
-     * checks
-     * each square in a specific row (TOP, MIDDLE, BOTTOM).
-     *
-     * @param value The row of squares to check. This should be one of the values
-     *              from the Rows enum (TOP, MIDDLE, BOTTOM).
-     * @param grid  The current state of the Sudoku game.
-     * @return true if any square in the specified row is invalid, false otherwise.
-     */
-    private static boolean rowOfSquaresIsInvalid(Rows value, int[][] grid) {
-        switch (value) {
-            case TOP:
-                // x FIRST = 0
-                if (squareIsInvalid(0, 0, grid))
-                    return true;
-                // x SECOND = 3
-                if (squareIsInvalid(0, 3, grid))
+        int boxSize = BoardGeometry.of(grid).getBoxSize();
+        for (int yIndex = 0; yIndex < grid.length; yIndex += boxSize) {
+            for (int xIndex = 0; xIndex < grid.length; xIndex += boxSize) {
+                if (squareIsInvalid(yIndex, xIndex, grid))
                     return true;
-                // x THIRD = 6
-                if (squareIsInvalid(0, 6, grid))
-                    return true;
-
-                // Otherwise squares appear to be valid
-                return false;
-
-            case MIDDLE:
-                if (squareIsInvalid(3, 0, grid))
-                    return true;
-                if (squareIsInvalid(3, 3, grid))
-                    return true;
-                if (squareIsInvalid(3, 6, grid))
-                    return true;
-                return false;
-
-            case BOTTOM:
-                if (squareIsInvalid(6, 0, grid))
-                    return true;
-                if (squareIsInvalid(6, 3, grid))
-                    return true;
-                if (squareIsInvalid(6, 6, grid))
-                    return true;
-                return false;
-
-            default:
-                return false;
+            }
         }
+        return false;
     }
 
     /**
-     * Checks if a 3x3 square in the Sudoku grid is invalid.
+     * Checks if a square (box) in the Sudoku grid is invalid.
      * A square is considered invalid if it contains repeated values.
      *
      * @param yIndex The starting y-index of the square.
@@ -180,29 +228,7 @@ public class GameLogic {
      *         otherwise.
      */
     public static boolean squareIsInvalid(int yIndex, int xIndex, int[][] grid) {
-        int yIndexEnd = yIndex + 3;
-        int xIndexEnd = xIndex + 3;
-
-        List<Integer> square = new ArrayList<>();
-
-        while (yIndex < yIndexEnd) {
-
-            while (xIndex < xIndexEnd) {
-                square.add(
-                        grid[xIndex][yIndex]);
-                xIndex++;
-            }
-
-            // reset x to original value by subtracting by 2
-            xIndex -= 3;
-
-            yIndex++;
-        }
-
-        // if square has repeats, return true
-        if (collectionHasRepeats(square))
-            return true;
-        return false;
+        return SudokuConstraints.boxIsInvalid(grid, xIndex, yIndex);
     }
 
     /**
@@ -214,16 +240,10 @@ public class GameLogic {
      *         otherwise.
      */
     public static boolean columnsAreInvalid(int[][] grid) {
-        for (int xIndex = 0; xIndex < GRID_BOUNDARY; xIndex++) {
-            List<Integer> row = new ArrayList<>();
-            for (int yIndex = 0; yIndex < GRID_BOUNDARY; yIndex++) {
-                row.add(grid[xIndex][yIndex]);
-            }
-
-            if (collectionHasRepeats(row))
+        for (int xIndex = 0; xIndex < grid.length; xIndex++) {
+            if (SudokuConstraints.columnIsInvalid(grid, xIndex))
                 return true;
         }
-
         return false;
     }
 
@@ -236,37 +256,10 @@ public class GameLogic {
      *         otherwise.
      */
     public static boolean rowsAreInvalid(int[][] grid) {
-        for (int yIndex = 0; yIndex < GRID_BOUNDARY; yIndex++) {
-            List<Integer> row = new ArrayList<>();
-            for (int xIndex = 0; xIndex < GRID_BOUNDARY; xIndex++) {
-                row.add(grid[xIndex][yIndex]);
-            }
-
-            if (collectionHasRepeats(row))
-                return true;
-        }
-
-        return false;
-    }
-
-    /**
-     * Checks if a collection of integers contains any repeated values.
-     * This is used to check if a row, column, or square in the Sudoku game is
-     * invalid.
-     *
-     * @param collection The collection of integers to check.
-     * @return true if the collection contains repeated values, false otherwise.
-     */
-    public static boolean collectionHasRepeats(List<Integer> collection) {
-        // count occurrences of integers from 1-GRID_BOUNDARY. If Collections.frequency
-        // returns a value greater than 1,
-        // then the square is invalid (i.e. a non-zero number has been repeated in a
-        // square)
-        for (int index = 1; index <= GRID_BOUNDARY; index++) {
-            if (Collections.frequency(collection, index) > 1)
+        for (int yIndex = 0; yIndex < grid.length; yIndex++) {
+            if (SudokuConstraints.rowIsInvalid(grid, yIndex))
                 return true;
         }
-
         return false;
     }
 }
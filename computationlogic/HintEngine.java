@@ -0,0 +1,252 @@
+package computationlogic;
+
+import constants.SolvingTechnique;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import problemdomain.Board;
+import problemdomain.BoardGeometry;
+import problemdomain.Hint;
+
+import java.util.Arrays;
+
+/**
+ * The HintEngine class suggests the next step of a game in progress and keeps
+ * the candidates of every cell for pencil marks.
+ *
+ * Like MoveValidator, it counts the occurrences of every value in every unit and
+ * is updated one move at a time: a move only recomputes the candidates of the
+ * edited cell and its peers, so the candidates are always current without
+ * rescanning the board. A hint starts from those candidates and runs the steps
+ * of the DifficultyGrader until a value can be placed, which takes microseconds
+ * instead of a full solve.
+ *
+ * The solution of the puzzle is computed once, when the engine is reset, to
+ * point out wrong values entered by the player (logic applied to a wrong board
+ * would suggest wrong values) and to give a value when no logical technique
+ * finds one.
+ *
+ * An engine must be reset with a game before it is used. An instance is not
+ * thread safe; ControlLogic only uses it from its worker thread.
+ */
+public class HintEngine {
+
+    /**
+     * The time taken to find a hint.
+     */
+    private static final LatencyHistogram HINT_TIME = Metrics.histogram("hint.nanos");
+
+    /**
+     * The grader running the logical steps.
+     */
+    private final DifficultyGrader grader = new DifficultyGrader();
+
+    /**
+     * The cell index and value of the placement found by the grader.
+     */
+    private final int[] placement = new int[2];
+
+    /**
+     * The geometry of the board.
+     */
+    private BoardGeometry geometry;
+
+    /**
+     * The value of every cell, 0 if empty, in typewriter order.
+     */
+    private int[] values;
+
+    /**
+     * The candidate mask of every empty cell (bit `value` set if the value is not
+     * yet used in any unit of the cell), 0 for filled cells.
+     */
+    private int[] candidates;
+
+    /**
+     * The occurrences of each value in each unit, indexed by unit and value.
+     */
+    private int[][] occurrences;
+
+    /**
+     * The unit indexes (row, column, box) of every cell.
+     */
+    private int[][] cellUnits;
+
+    /**
+     * The solution of the puzzle in typewriter order, or null if the given values
+     * have no solution.
+     */
+    private int[] solution;
+
+    /**
+     * Loads a game: its values, candidates, and the solution of its given
+     * (disabled) values.
+     *
+     * @param board The board of the game.
+     */
+    public void reset(Board board) {
+        BoardGeometry boardGeometry = board.getGeometry();
+        int size = boardGeometry.getSize();
+        if (geometry != boardGeometry) {
+            geometry = boardGeometry;
+            values = new int[geometry.getCellCount()];
+            candidates = new int[geometry.getCellCount()];
+            occurrences = new int[size * 3][size + 1];
+            cellUnits = new int[geometry.getCellCount()][];
+            for (int cell = 0; cell < cellUnits.length; cell++) {
+                int x = cell % size;
+                int y = cell / size;
+                cellUnits[cell] = new int[] { y, size + x, size * 2 + geometry.boxIndex(x, y) };
+            }
+        } else {
+            Arrays.fill(values, 0);
+            for (int[] unit : occurrences) {
+                Arrays.fill(unit, 0);
+            }
+        }
+
+        int[][] givens = new int[size][size];
+        for (int cell = 0; cell < values.length; cell++) {
+            int value = board.getValue(cell);
+            values[cell] = value;
+            if (value != 0)
+                count(cell, value, 1);
+            if (board.isDisabled(cell))
+                givens[cell % size][cell / size] = value;
+        }
+        for (int cell = 0; cell < values.length; cell++) {
+            updateCandidates(cell);
+        }
+
+        solution = null;
+        if (new ConstraintSolver().solve(givens)) {
+            solution = new int[values.length];
+            for (int cell = 0; cell < solution.length; cell++) {
+                solution[cell] = givens[cell % size][cell / size];
+            }
+        }
+    }
+
+    /**
+     * Applies a single cell edit, updating the candidates of the cell and its
+     * peers.
+     *
+     * @param x     The x-coordinate of the cell.
+     * @param y     The y-coordinate of the cell.
+     * @param value The new value of the cell, 0 to clear it.
+     */
+    public void applyMove(int x, int y, int value) {
+        int cell = y * geometry.getSize() + x;
+        int previous = values[cell];
+        if (previous == value)
+            return;
+        if (previous != 0)
+            count(cell, previous, -1);
+        if (value != 0)
+            count(cell, value, 1);
+        values[cell] = value;
+
+        updateCandidates(cell);
+        for (int peer : geometry.getPeers()[cell]) {
+            updateCandidates(peer);
+        }
+    }
+
+    /**
+     * Returns the candidate mask of a cell.
+     *
+     * @param x The x-coordinate of the cell.
+     * @param y The y-coordinate of the cell.
+     * @return The candidates, with bit `value` set for every value which may go in
+     *         the cell; 0 if the cell is filled.
+     */
+    public int getCandidates(int x, int y) {
+        return candidates[y * geometry.getSize() + x];
+    }
+
+    /**
+     * Returns a copy of the candidate masks of every cell, for pencil marks.
+     *
+     * @return The candidates in typewriter order (y * size + x), 0 for filled
+     *         cells.
+     */
+    public int[] getCandidateMasks() {
+        return candidates.clone();
+    }
+
+    /**
+     * Finds the next step for the player: a wrong value to correct if there is
+     * one, otherwise the next value which can be placed by logic, otherwise the
+     * solution of the empty cell with the fewest candidates.
+     *
+     * @return The hint, or null if the board is full and correct or the given
+     *         values have no solution.
+     */
+    public Hint nextHint() {
+        long start = System.nanoTime();
+        Hint hint = findHint();
+        HINT_TIME.recordSince(start);
+        return hint;
+    }
+
+    /**
+     * Finds the next step for the player, as described by nextHint.
+     *
+     * @return The hint, or null if there is none.
+     */
+    private Hint findHint() {
+        if (solution == null)
+            return null;
+        int size = geometry.getSize();
+        for (int cell = 0; cell < values.length; cell++) {
+            if (values[cell] != 0 && values[cell] != solution[cell])
+                return new Hint(cell % size, cell / size, solution[cell], SolvingTechnique.TRIAL_AND_ERROR, true);
+        }
+
+        SolvingTechnique technique = grader.nextPlacement(geometry, values, candidates, placement);
+        if (technique != null)
+            return new Hint(placement[0] % size, placement[0] / size, placement[1], technique, false);
+
+        int best = -1;
+        for (int cell = 0; cell < values.length; cell++) {
+            if (values[cell] == 0
+                    && (best < 0 || Integer.bitCount(candidates[cell]) < Integer.bitCount(candidates[best])))
+                best = cell;
+        }
+        if (best < 0)
+            return null;
+        return new Hint(best % size, best / size, solution[best], SolvingTechnique.TRIAL_AND_ERROR, false);
+    }
+
+    /**
+     * Adds to or removes from the occurrences of a value in the units of a cell.
+     *
+     * @param cell  The index of the cell.
+     * @param value The value.
+     * @param delta 1 to add an occurrence, -1 to remove one.
+     */
+    private void count(int cell, int value, int delta) {
+        for (int unit : cellUnits[cell]) {
+            occurrences[unit][value] += delta;
+        }
+    }
+
+    /**
+     * Recomputes the candidates of a cell from the occurrences in its units.
+     *
+     * @param cell The index of the cell.
+     */
+    private void updateCandidates(int cell) {
+        if (values[cell] != 0) {
+            candidates[cell] = 0;
+            return;
+        }
+        int mask = 0;
+        for (int value = 1; value <= geometry.getSize(); value++) {
+            int[] units = cellUnits[cell];
+            if (occurrences[units[0]][value] == 0 && occurrences[units[1]][value] == 0
+                    && occurrences[units[2]][value] == 0)
+                mask |= 1 << value;
+        }
+        candidates[cell] = mask;
+    }
+}
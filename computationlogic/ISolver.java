@@ -0,0 +1,52 @@
+package computationlogic;
+
+/**
+ * The ISolver interface provides a contract for Sudoku solver backends.
+ * It allows callers such as the GameGenerator to pick the algorithm used to
+ * solve a puzzle.
+ *
+ * @see SudokuSolver#getSolver(constants.SolverType)
+ */
+public interface ISolver {
+
+    /**
+     * Solves the provided puzzle in place.
+     *
+     * If the puzzle can be solved, every empty cell of the grid is filled with the
+     * solution. Otherwise the grid is left untouched.
+     *
+     * @param puzzle The 2D array representing the Sudoku puzzle to be solved.
+     * @return true if the puzzle can be solved, false otherwise.
+     */
+    boolean solve(int[][] puzzle);
+
+    /**
+     * Counts the solutions of the provided puzzle, stopping as soon as the given
+     * limit is reached. The puzzle is not modified.
+     *
+     * A limit of 2 is enough to tell whether a puzzle has a unique solution.
+     *
+     * @param puzzle The 2D array representing the Sudoku puzzle.
+     * @param limit  The number of solutions after which counting stops.
+     * @return The number of solutions, capped at limit.
+     */
+    int countSolutions(int[][] puzzle, int limit);
+
+    /**
+     * Counts the solutions of the provided puzzle like countSolutions, but gives up
+     * after visiting the given number of search nodes. A search which gives up
+     * returns limit, so a puzzle whose uniqueness could not be decided is never
+     * taken for a unique one.
+     *
+     * Backends which cannot bound their search ignore the node limit.
+     *
+     * @param puzzle    The 2D array representing the Sudoku puzzle.
+     * @param limit     The number of solutions after which counting stops.
+     * @param nodeLimit The number of search nodes after which counting gives up.
+     * @return The number of solutions, capped at limit, or limit if counting gave
+     *         up.
+     */
+    default int countSolutions(int[][] puzzle, int limit, long nodeLimit) {
+        return countSolutions(puzzle, limit);
+    }
+}
@@ -0,0 +1,183 @@
+package computationlogic;
+
+import constants.GameState;
+import metrics.Counter;
+import metrics.Metrics;
+import problemdomain.Board;
+import problemdomain.BoardGeometry;
+
+/**
+ * The MoveValidator class is a stateful model of a Sudoku board which keeps the
+ * validity and completion of the board up to date as single cells are edited.
+ *
+ * For every row, column and box it counts how many times each value occurs. A
+ * conflict exists while any of those counts is greater than one. Together with
+ * the number of filled cells this means a single edit updates the state of the
+ * game in constant time, without rescanning the grid. The size of the board is
+ * taken from the grid it is constructed with.
+ */
+public class MoveValidator {
+
+    /**
+     * The number of moves validated by every MoveValidator.
+     */
+    private static final Counter MOVES = Metrics.counter("validation.moves");
+
+    /**
+     * The geometry of the board.
+     */
+    private final BoardGeometry geometry;
+
+    /**
+     * The current value of every cell, indexed the same way as the game grid.
+     */
+    private final int[][] grid;
+
+    /**
+     * The occurrences of each value in each unit (rows, then columns, then boxes),
+     * indexed by unit and value.
+     */
+    private final int[][] occurrences;
+
+    /**
+     * The number of (unit, value) pairs whose value occurs more than once.
+     */
+    private int conflicts;
+
+    /**
+     * The number of cells holding a value.
+     */
+    private int filledCells;
+
+    /**
+     * Constructs a new MoveValidator from the given grid. This is the only time
+     * the whole grid is scanned.
+     *
+     * @param grid The current state of the Sudoku grid.
+     */
+    public MoveValidator(int[][] grid) {
+        geometry = BoardGeometry.of(grid);
+        int size = geometry.getSize();
+        this.grid = new int[size][size];
+        occurrences = new int[size * 3][size + 1];
+        for (int xIndex = 0; xIndex < size; xIndex++) {
+            for (int yIndex = 0; yIndex < size; yIndex++) {
+                setValue(xIndex, yIndex, grid[xIndex][yIndex]);
+            }
+        }
+    }
+
+    /**
+     * Constructs a new MoveValidator from the given board, reading its cells
+     * without copying them.
+     *
+     * @param board The current state of the Sudoku board.
+     */
+    public MoveValidator(Board board) {
+        geometry = board.getGeometry();
+        int size = geometry.getSize();
+        this.grid = new int[size][size];
+        occurrences = new int[size * 3][size + 1];
+        for (int xIndex = 0; xIndex < size; xIndex++) {
+            for (int yIndex = 0; yIndex < size; yIndex++) {
+                setValue(xIndex, yIndex, board.getValue(xIndex, yIndex));
+            }
+        }
+    }
+
+    /**
+     * Applies a single cell edit and returns the resulting state of the game.
+     *
+     * @param x     The x-coordinate of the cell.
+     * @param y     The y-coordinate of the cell.
+     * @param value The new value of the cell, from 0 (empty) to the board size.
+     * @return GameState.COMPLETE if the board is full and valid, otherwise
+     *         GameState.ACTIVE.
+     */
+    public GameState applyMove(int x, int y, int value) {
+        MOVES.increment();
+        setValue(x, y, value);
+        return getGameState();
+    }
+
+    /**
+     * Returns the value currently held by the given cell.
+     *
+     * @param x The x-coordinate of the cell.
+     * @param y The y-coordinate of the cell.
+     * @return The value of the cell, from 0 (empty) to the board size.
+     */
+    public int getValue(int x, int y) {
+        return grid[x][y];
+    }
+
+    /**
+     * Checks if the board currently contains no repeated value in any unit.
+     *
+     * @return true if the board is valid, false otherwise.
+     */
+    public boolean isValid() {
+        return conflicts == 0;
+    }
+
+    /**
+     * Returns the current state of the game.
+     *
+     * @return GameState.COMPLETE if the board is full and valid, otherwise
+     *         GameState.ACTIVE.
+     */
+    public GameState getGameState() {
+        if (filledCells == geometry.getCellCount() && conflicts == 0)
+            return GameState.COMPLETE;
+        return GameState.ACTIVE;
+    }
+
+    /**
+     * Updates the value of a cell and the occurrence counts of its units.
+     *
+     * @param x     The x-coordinate of the cell.
+     * @param y     The y-coordinate of the cell.
+     * @param value The new value of the cell, from 0 (empty) to the board size.
+     */
+    private void setValue(int x, int y, int value) {
+        int previous = grid[x][y];
+        if (previous != value) {
+            int size = geometry.getSize();
+            if (previous != 0) {
+                filledCells--;
+                decrement(y, previous);
+                decrement(size + x, previous);
+                decrement(size * 2 + geometry.boxIndex(x, y), previous);
+            }
+            if (value != 0) {
+                filledCells++;
+                increment(y, value);
+                increment(size + x, value);
+                increment(size * 2 + geometry.boxIndex(x, y), value);
+            }
+            grid[x][y] = value;
+        }
+    }
+
+    /**
+     * Records one more occurrence of a value in a unit.
+     *
+     * @param unit  The index of the unit.
+     * @param value The value that was added.
+     */
+    private void increment(int unit, int value) {
+        if (++occurrences[unit][value] == 2)
+            conflicts++;
+    }
+
+    /**
+     * Records one less occurrence of a value in a unit.
+     *
+     * @param unit  The index of the unit.
+     * @param value The value that was removed.
+     */
+    private void decrement(int unit, int value) {
+        if (occurrences[unit][value]-- == 2)
+            conflicts--;
+    }
+}
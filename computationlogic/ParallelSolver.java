@@ -0,0 +1,290 @@
+package computationlogic;
+
+import problemdomain.BoardGeometry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The ParallelSolver class solves Sudoku puzzles with the search of
+ * ConstraintSolver, spread over the threads of a ForkJoinPool.
+ *
+ * The top levels of the search tree are split into one task per candidate of
+ * the branch cell, down to a fixed depth; below it every task searches its
+ * subtree sequentially with a ConstraintSolver owned by the worker thread. Idle
+ * workers steal pending subtrees, which balances the uneven tree.
+ *
+ * All tasks of a search share its solution count and a stop flag. As soon as
+ * the solution limit is reached (the first solution when solving, the
+ * uniqueness cutoff when counting), the flag is set: pending tasks return
+ * immediately and running searches stop within a few dozen nodes.
+ *
+ * Splitting costs a copy of the search state per task, so this only pays off on
+ * puzzles which need a large search, such as minimal-clue puzzles; easy puzzles
+ * are solved faster by ConstraintSolver. An instance holds no search state and
+ * is thread safe.
+ */
+public class ParallelSolver implements ISolver {
+
+    /**
+     * The default number of search levels split into parallel tasks.
+     */
+    public static final int DEFAULT_SPLIT_DEPTH = 3;
+
+    /**
+     * The solver used by each worker thread for the sequential part of the search.
+     */
+    private static final ThreadLocal<ConstraintSolver> WORKER_SOLVERS = ThreadLocal
+            .withInitial(ConstraintSolver::new);
+
+    /**
+     * The pool running the search tasks.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The number of search levels split into parallel tasks.
+     */
+    private final int splitDepth;
+
+    /**
+     * Constructs a new ParallelSolver using the common ForkJoinPool.
+     */
+    public ParallelSolver() {
+        this(ForkJoinPool.commonPool(), DEFAULT_SPLIT_DEPTH);
+    }
+
+    /**
+     * Constructs a new ParallelSolver.
+     *
+     * @param pool       The pool running the search tasks.
+     * @param splitDepth The number of search levels split into parallel tasks.
+     */
+    public ParallelSolver(ForkJoinPool pool, int splitDepth) {
+        this.pool = pool;
+        this.splitDepth = splitDepth;
+    }
+
+    /**
+     * Solves the provided puzzle in place.
+     *
+     * If the puzzle can be solved, every empty cell of the grid is filled with the
+     * solution. Otherwise the grid is left untouched.
+     *
+     * @param puzzle The 2D array representing the Sudoku puzzle to be solved.
+     * @return true if the puzzle can be solved, false otherwise.
+     */
+    @Override
+    public boolean solve(int[][] puzzle) {
+        Search search = run(puzzle, 1);
+        int[] solution = search == null ? null : search.solution.get();
+        if (solution == null)
+            return false;
+
+        int size = search.geometry.getSize();
+        for (int cell = 0; cell < solution.length; cell++) {
+            puzzle[cell % size][cell / size] = solution[cell];
+        }
+        return true;
+    }
+
+    /**
+     * Counts the solutions of the provided puzzle, stopping as soon as the given
+     * limit is reached. The puzzle is not modified.
+     *
+     * @param puzzle The 2D array representing the Sudoku puzzle.
+     * @param limit  The number of solutions after which counting stops.
+     * @return The number of solutions, capped at limit.
+     */
+    @Override
+    public int countSolutions(int[][] puzzle, int limit) {
+        if (limit <= 0)
+            return 0;
+        Search search = run(puzzle, limit);
+        return search == null ? 0 : Math.min(limit, search.solutionCount.get());
+    }
+
+    /**
+     * Counts the solutions of the provided puzzle, giving up after visiting the
+     * given number of search nodes. A bounded count is a small search, so it runs
+     * sequentially on the calling thread instead of being split.
+     *
+     * @param puzzle    The 2D array representing the Sudoku puzzle.
+     * @param limit     The number of solutions after which counting stops.
+     * @param nodeLimit The number of search nodes after which counting gives up.
+     * @return The number of solutions, capped at limit, or limit if counting gave
+     *         up.
+     */
+    @Override
+    public int countSolutions(int[][] puzzle, int limit, long nodeLimit) {
+        if (nodeLimit == Long.MAX_VALUE)
+            return countSolutions(puzzle, limit);
+        return WORKER_SOLVERS.get().countSolutions(puzzle, limit, nodeLimit);
+    }
+
+    /**
+     * Loads the puzzle and runs the parallel search until it has explored the
+     * whole tree or reached the solution limit.
+     *
+     * @param puzzle The puzzle.
+     * @param limit  The number of solutions after which the search stops.
+     * @return The finished search, or null if the givens conflict.
+     */
+    private Search run(int[][] puzzle, int limit) {
+        BoardGeometry geometry = BoardGeometry.of(puzzle);
+        int[] values = new int[geometry.getCellCount()];
+        int[] candidates = new int[geometry.getCellCount()];
+        if (!ConstraintSolver.load(geometry, puzzle, values, candidates))
+            return null;
+
+        Search search = new Search(geometry, limit);
+        pool.invoke(new SearchTask(search, values, candidates, 0));
+        return search;
+    }
+
+    /**
+     * The state shared by all tasks of one search.
+     */
+    private static class Search {
+
+        /**
+         * The geometry of the board being searched.
+         */
+        private final BoardGeometry geometry;
+
+        /**
+         * The number of solutions after which the search stops.
+         */
+        private final int limit;
+
+        /**
+         * The number of solutions found so far.
+         */
+        private final AtomicInteger solutionCount = new AtomicInteger();
+
+        /**
+         * The first solution found, or null.
+         */
+        private final AtomicReference<int[]> solution = new AtomicReference<>();
+
+        /**
+         * Set once the solution limit has been reached, to stop every other task.
+         */
+        private final AtomicBoolean stop = new AtomicBoolean();
+
+        /**
+         * Constructs a new Search.
+         *
+         * @param geometry The geometry of the board being searched.
+         * @param limit    The number of solutions after which the search stops.
+         */
+        private Search(BoardGeometry geometry, int limit) {
+            this.geometry = geometry;
+            this.limit = limit;
+        }
+
+        /**
+         * Records solutions found by a task and stops the search once the limit
+         * has been reached.
+         *
+         * @param count    The number of solutions found by the task.
+         * @param solution A solution found by the task, or null.
+         */
+        private void addSolutions(int count, int[] solution) {
+            if (solution != null)
+                this.solution.compareAndSet(null, solution);
+            if (solutionCount.addAndGet(count) >= limit)
+                stop.set(true);
+        }
+    }
+
+    /**
+     * A task searching the subtree below one search state.
+     */
+    private class SearchTask extends RecursiveAction {
+
+        /**
+         * The version of the serialized form, required of every ForkJoinTask.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The search the task belongs to.
+         */
+        private final Search search;
+
+        /**
+         * The value of every cell at the root of the subtree. Owned by the task.
+         */
+        private final int[] values;
+
+        /**
+         * The candidate mask of every cell at the root of the subtree. Owned by the
+         * task.
+         */
+        private final int[] candidates;
+
+        /**
+         * The depth of the root of the subtree.
+         */
+        private final int depth;
+
+        /**
+         * Constructs a new SearchTask.
+         *
+         * @param search     The search the task belongs to.
+         * @param values     The value of every cell at the root of the subtree.
+         * @param candidates The candidate mask of every cell at the root of the
+         *                   subtree.
+         * @param depth      The depth of the root of the subtree.
+         */
+        private SearchTask(Search search, int[] values, int[] candidates, int depth) {
+            this.search = search;
+            this.values = values;
+            this.candidates = candidates;
+            this.depth = depth;
+        }
+
+        /**
+         * Splits the subtree into one task per candidate of the branch cell, or
+         * searches it sequentially below the split depth.
+         */
+        @Override
+        protected void compute() {
+            if (search.stop.get())
+                return;
+
+            if (depth >= splitDepth) {
+                int[] solution = new int[values.length];
+                int found = WORKER_SOLVERS.get().searchSubtree(search.geometry, values, candidates, search.limit,
+                        search.stop, solution);
+                if (found > 0)
+                    search.addSolutions(found, search.limit == 1 ? solution : null);
+                return;
+            }
+
+            if (!ConstraintSolver.propagate(search.geometry, values, candidates))
+                return;
+            int cell = ConstraintSolver.selectBranchCell(values, candidates);
+            if (cell < 0) {
+                search.addSolutions(1, values);
+                return;
+            }
+
+            List<SearchTask> subtasks = new ArrayList<>(Integer.bitCount(candidates[cell]));
+            for (int options = candidates[cell]; options != 0; options &= options - 1) {
+                int[] nextValues = values.clone();
+                int[] nextCandidates = candidates.clone();
+                if (ConstraintSolver.assign(search.geometry, nextValues, nextCandidates, cell,
+                        Integer.numberOfTrailingZeros(options)))
+                    subtasks.add(new SearchTask(search, nextValues, nextCandidates, depth + 1));
+            }
+            invokeAll(subtasks);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package computationlogic;
+
+import problemdomain.Board;
+import problemdomain.BoardGeometry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The PuzzleCanonicalizer class maps a 9x9 puzzle to its canonical form: the
+ * lexicographically smallest grid, read row by row with 0 for an empty cell,
+ * among all grids equivalent to it. Two grids are equivalent if one can be
+ * turned into the other by relabeling the digits, permuting the bands, the rows
+ * within a band, the stacks and the columns within a stack, and transposing, so
+ * two puzzles are the same up to symmetry exactly if their canonical forms are
+ * equal.
+ *
+ * For a given arrangement of rows and columns, the smallest relabeling gives
+ * the digits the labels 1, 2, 3... in the order in which they first appear, so
+ * only the 2 x 1296 x 1296 arrangements have to be searched. They are searched
+ * one row at a time: every arrangement whose first rows are not the smallest
+ * seen so far is dropped, so a puzzle with its givens spread over the board is
+ * canonicalized after trying a few thousand partial arrangements.
+ */
+public class PuzzleCanonicalizer {
+
+    /**
+     * The number of rows and columns of the board.
+     */
+    private static final int SIZE = 9;
+
+    /**
+     * The number of rows in a band and columns in a stack.
+     */
+    private static final int BOX_SIZE = 3;
+
+    /**
+     * The six orders of three items.
+     */
+    private static final int[][] PERMUTATIONS = { { 0, 1, 2 }, { 0, 2, 1 }, { 1, 0, 2 }, { 1, 2, 0 },
+            { 2, 0, 1 }, { 2, 1, 0 } };
+
+    /**
+     * Every order of the columns which keeps the stacks together (6 stack orders
+     * times 6 column orders in each of the 3 stacks).
+     */
+    private static final int[][] COLUMN_ORDERS = columnOrders();
+
+    /**
+     * Returns the canonical form of a board, as described in the class comment.
+     *
+     * @param board The board, which must be 9x9.
+     * @return The canonical form: 81 values in typewriter order (y * 9 + x), 0 for
+     *         an empty cell.
+     */
+    public static byte[] canonicalize(Board board) {
+        if (board.getGeometry() != BoardGeometry.STANDARD)
+            throw new IllegalArgumentException("Only 9x9 puzzles have a canonical form");
+        return canonicalize(board.toGrid());
+    }
+
+    /**
+     * Returns the canonical form of a grid, as described in the class comment.
+     *
+     * @param grid The grid, indexed by x then y, which must be 9x9.
+     * @return The canonical form: 81 values in typewriter order (y * 9 + x), 0 for
+     *         an empty cell.
+     */
+    public static byte[] canonicalize(int[][] grid) {
+        if (grid.length != SIZE)
+            throw new IllegalArgumentException("Only 9x9 puzzles have a canonical form");
+
+        List<Arrangement> arrangements = new ArrayList<>();
+        for (int transpose = 0; transpose < 2; transpose++) {
+            for (int columns = 0; columns < COLUMN_ORDERS.length; columns++) {
+                arrangements.add(new Arrangement(transpose == 1, COLUMN_ORDERS[columns], 0, -1, new int[SIZE + 1], 1));
+            }
+        }
+
+        byte[] form = new byte[SIZE * SIZE];
+        List<Arrangement> smallest = new ArrayList<>();
+        int[] best = new int[SIZE];
+        int[] row = new int[SIZE];
+        int[] labels = new int[SIZE + 1];
+        for (int position = 0; position < SIZE; position++) {
+            smallest.clear();
+            for (Arrangement arrangement : arrangements) {
+                for (int next = 0; next < SIZE; next++) {
+                    if (!arrangement.canPlace(next, position))
+                        continue;
+
+                    System.arraycopy(arrangement.labels, 0, labels, 0, labels.length);
+                    int nextLabel = arrangement.nextLabel;
+                    int comparison = smallest.isEmpty() ? -1 : 0;
+                    for (int column = 0; column < SIZE && comparison <= 0; column++) {
+                        int original = arrangement.columns[column];
+                        int value = arrangement.transpose ? grid[next][original] : grid[original][next];
+                        if (value != 0) {
+                            if (labels[value] == 0)
+                                labels[value] = nextLabel++;
+                            value = labels[value];
+                        }
+                        if (comparison == 0 && value != best[column])
+                            comparison = value < best[column] ? -1 : 1;
+                        row[column] = value;
+                    }
+                    if (comparison > 0)
+                        continue;
+
+                    if (comparison < 0) {
+                        smallest.clear();
+                        System.arraycopy(row, 0, best, 0, SIZE);
+                    }
+                    smallest.add(new Arrangement(arrangement.transpose, arrangement.columns,
+                            arrangement.usedRows | 1 << next, next, labels.clone(), nextLabel));
+                }
+            }
+
+            for (int column = 0; column < SIZE; column++) {
+                form[position * SIZE + column] = (byte) best[column];
+            }
+            List<Arrangement> swap = arrangements;
+            arrangements = smallest;
+            smallest = swap;
+        }
+        return form;
+    }
+
+    /**
+     * Builds every order of the columns which keeps the stacks together.
+     *
+     * @return The orders, each giving the original column of every position.
+     */
+    private static int[][] columnOrders() {
+        int count = PERMUTATIONS.length;
+        int[][] orders = new int[count * count * count * count][];
+        int index = 0;
+        for (int[] stacks : PERMUTATIONS) {
+            for (int[] first : PERMUTATIONS) {
+                for (int[] second : PERMUTATIONS) {
+                    for (int[] third : PERMUTATIONS) {
+                        int[][] within = { first, second, third };
+                        int[] order = new int[SIZE];
+                        for (int stack = 0; stack < BOX_SIZE; stack++) {
+                            for (int column = 0; column < BOX_SIZE; column++) {
+                                order[stack * BOX_SIZE + column] = stacks[stack] * BOX_SIZE + within[stack][column];
+                            }
+                        }
+                        orders[index++] = order;
+                    }
+                }
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * The Arrangement class represents a partial arrangement of the grid: whether
+     * it is transposed, the order of the columns, the rows placed so far and the
+     * labels given to the digits met in them.
+     */
+    private static final class Arrangement {
+
+        /**
+         * Whether the grid is transposed before the rows and columns are arranged.
+         */
+        private final boolean transpose;
+
+        /**
+         * The original column of every position.
+         */
+        private final int[] columns;
+
+        /**
+         * The original rows placed so far, bit `row` set for each.
+         */
+        private final int usedRows;
+
+        /**
+         * The original row placed last, -1 if none.
+         */
+        private final int lastRow;
+
+        /**
+         * The label of every digit met so far, 0 for the others.
+         */
+        private final int[] labels;
+
+        /**
+         * The label of the next new digit.
+         */
+        private final int nextLabel;
+
+        /**
+         * Constructs a new Arrangement.
+         *
+         * @param transpose Whether the grid is transposed.
+         * @param columns   The original column of every position.
+         * @param usedRows  The original rows placed so far.
+         * @param lastRow   The original row placed last, -1 if none.
+         * @param labels    The label of every digit met so far.
+         * @param nextLabel The label of the next new digit.
+         */
+        private Arrangement(boolean transpose, int[] columns, int usedRows, int lastRow, int[] labels,
+                int nextLabel) {
+            this.transpose = transpose;
+            this.columns = columns;
+            this.usedRows = usedRows;
+            this.lastRow = lastRow;
+            this.labels = labels;
+            this.nextLabel = nextLabel;
+        }
+
+        /**
+         * Checks if an original row may be placed next while keeping the bands
+         * together: the first row of a band must come from a band not used yet,
+         * the others from the band of the previous row.
+         *
+         * @param row      The original row.
+         * @param position The position of the row being placed.
+         * @return true if the row may be placed, false otherwise.
+         */
+        private boolean canPlace(int row, int position) {
+            int band = row / BOX_SIZE;
+            if (position % BOX_SIZE == 0)
+                return (usedRows >> (band * BOX_SIZE) & 0b111) == 0;
+            return band == lastRow / BOX_SIZE && (usedRows & 1 << row) == 0;
+        }
+    }
+}
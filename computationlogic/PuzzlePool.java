@@ -0,0 +1,193 @@
+package computationlogic;
+
+import constants.Difficulty;
+import problemdomain.SudokuGame;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The PuzzlePool class keeps a bounded queue of ready-to-play games for every
+ * difficulty level, refilled by background worker threads.
+ *
+ * Taking a game is a constant time dequeue. Whenever a queue drops to its low
+ * watermark, a worker regenerates games until the queue is full again. If a
+ * queue is empty when a game is requested, the game is generated synchronously
+ * on the calling thread instead.
+ *
+ * The worker threads are daemon threads with minimum priority, so they never
+ * keep the application alive and yield to the JavaFX application thread.
+ */
+public class PuzzlePool {
+
+    /**
+     * The default number of games kept per difficulty level.
+     */
+    public static final int DEFAULT_DEPTH = 8;
+
+    /**
+     * The default queue size at or below which a refill is started.
+     */
+    public static final int DEFAULT_LOW_WATERMARK = 3;
+
+    /**
+     * The default number of worker threads.
+     */
+    public static final int DEFAULT_WORKERS = 1;
+
+    /**
+     * The queue of ready games of each difficulty level.
+     */
+    private final Map<Difficulty, BlockingQueue<SudokuGame>> pools = new EnumMap<>(Difficulty.class);
+
+    /**
+     * Whether a refill is currently scheduled or running for each difficulty
+     * level.
+     */
+    private final Map<Difficulty, AtomicBoolean> refilling = new EnumMap<>(Difficulty.class);
+
+    /**
+     * The number of games kept per difficulty level.
+     */
+    private final int depth;
+
+    /**
+     * The queue size at or below which a refill is started.
+     */
+    private final int lowWatermark;
+
+    /**
+     * The worker threads generating games in the background.
+     */
+    private final ExecutorService workers;
+
+    /**
+     * Constructs a new PuzzlePool with the default depth, watermark and number of
+     * workers.
+     */
+    public PuzzlePool() {
+        this(DEFAULT_DEPTH, DEFAULT_LOW_WATERMARK, DEFAULT_WORKERS);
+    }
+
+    /**
+     * Constructs a new PuzzlePool.
+     *
+     * @param depth        The number of games kept per difficulty level.
+     * @param lowWatermark The queue size at or below which a refill is started.
+     *                     Must be lower than depth.
+     * @param workerCount  The number of worker threads.
+     */
+    public PuzzlePool(int depth, int lowWatermark, int workerCount) {
+        if (depth < 1 || lowWatermark < 0 || lowWatermark >= depth || workerCount < 1)
+            throw new IllegalArgumentException("Invalid puzzle pool configuration");
+
+        this.depth = depth;
+        this.lowWatermark = lowWatermark;
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "puzzle-pool");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        for (Difficulty difficulty : Difficulty.values()) {
+            pools.put(difficulty, new ArrayBlockingQueue<>(depth));
+            refilling.put(difficulty, new AtomicBoolean());
+        }
+    }
+
+    /**
+     * Starts filling the queues of every difficulty level in the background.
+     */
+    public void prefill() {
+        for (Difficulty difficulty : Difficulty.values()) {
+            requestRefill(difficulty);
+        }
+    }
+
+    /**
+     * Takes a game of the given difficulty level from the pool.
+     * If the pool is empty, the game is generated on the calling thread.
+     *
+     * @param difficulty The difficulty level of the game.
+     * @return A new SudokuGame instance representing the new game.
+     */
+    public SudokuGame take(Difficulty difficulty) {
+        SudokuGame game = pools.get(difficulty).poll();
+        requestRefillIfLow(difficulty);
+        if (game == null)
+            game = GameLogic.getNewGame(difficulty);
+        return game;
+    }
+
+    /**
+     * Returns the number of ready games of the given difficulty level.
+     *
+     * @param difficulty The difficulty level.
+     * @return The number of games that can be taken without generating.
+     */
+    public int size(Difficulty difficulty) {
+        return pools.get(difficulty).size();
+    }
+
+    /**
+     * Stops the worker threads. Games already in the pool can still be taken.
+     */
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Starts a refill if the queue of the given difficulty level is at or below the
+     * low watermark.
+     *
+     * @param difficulty The difficulty level.
+     */
+    private void requestRefillIfLow(Difficulty difficulty) {
+        if (pools.get(difficulty).size() <= lowWatermark)
+            requestRefill(difficulty);
+    }
+
+    /**
+     * Schedules a worker to fill the queue of the given difficulty level, unless a
+     * refill is already scheduled or running.
+     *
+     * @param difficulty The difficulty level.
+     */
+    private void requestRefill(Difficulty difficulty) {
+        if (workers.isShutdown() || !refilling.get(difficulty).compareAndSet(false, true))
+            return;
+
+        try {
+            workers.execute(() -> refill(difficulty));
+        } catch (RejectedExecutionException e) {
+            // the pool was shut down concurrently
+            refilling.get(difficulty).set(false);
+        }
+    }
+
+    /**
+     * Generates games of the given difficulty level until its queue is full.
+     * Runs on a worker thread.
+     *
+     * @param difficulty The difficulty level.
+     */
+    private void refill(Difficulty difficulty) {
+        BlockingQueue<SudokuGame> pool = pools.get(difficulty);
+        try {
+            while (pool.size() < depth && !Thread.currentThread().isInterrupted()) {
+                pool.offer(GameLogic.getNewGame(difficulty));
+            }
+        } finally {
+            refilling.get(difficulty).set(false);
+        }
+        // a game may have been taken after the loop ended but before the flag was
+        // cleared, in which case nobody else started a refill
+        requestRefillIfLow(difficulty);
+    }
+}
@@ -0,0 +1,249 @@
+package computationlogic;
+
+import problemdomain.BoardGeometry;
+
+/**
+ * The SudokuConstraints class is a bitmask based constraint engine for Sudoku
+ * grids.
+ *
+ * Every row, column and box is represented by a single int in which bit
+ * `value` is set when that value is already present in the unit. Checking,
+ * placing and removing a value is therefore a handful of bitwise operations and
+ * never allocates.
+ *
+ * The class can be used statically, to validate a complete grid in one pass, or
+ * as an instance that tracks the masks while a solver or generator fills a grid
+ * incrementally. The size of the board is taken from the grid (statically) or
+ * from the BoardGeometry given to the constructor; since the largest supported
+ * board holds the values 1 to 25, every mask fits in an int.
+ */
+public class SudokuConstraints {
+
+    /**
+     * The geometry of the board the masks describe.
+     */
+    private final BoardGeometry geometry;
+
+    /**
+     * Masks of the values used in each row, indexed by y.
+     */
+    private final int[] rowMasks;
+
+    /**
+     * Masks of the values used in each column, indexed by x.
+     */
+    private final int[] columnMasks;
+
+    /**
+     * Masks of the values used in each box, indexed by boxIndex(x, y).
+     */
+    private final int[] boxMasks;
+
+    /**
+     * Constructs a new SudokuConstraints for the standard 9x9 board.
+     */
+    public SudokuConstraints() {
+        this(BoardGeometry.STANDARD);
+    }
+
+    /**
+     * Constructs a new SudokuConstraints for a board of the given geometry.
+     *
+     * @param geometry The geometry of the board.
+     */
+    public SudokuConstraints(BoardGeometry geometry) {
+        this.geometry = geometry;
+        rowMasks = new int[geometry.getSize()];
+        columnMasks = new int[geometry.getSize()];
+        boxMasks = new int[geometry.getSize()];
+    }
+
+    /**
+     * Checks if the provided grid contains a repeated value in any row, column or
+     * box. Empty cells (0) are ignored.
+     *
+     * This performs a single pass over the grid and does not allocate.
+     *
+     * @param grid The current state of the Sudoku game.
+     * @return true if the grid is invalid, false otherwise.
+     */
+    public static boolean isInvalid(int[][] grid) {
+        int boxSize = BoardGeometry.of(grid).getBoxSize();
+        for (int index = 0; index < grid.length; index++) {
+            if (rowIsInvalid(grid, index)
+                    || columnIsInvalid(grid, index)
+                    || boxIsInvalid(grid, (index % boxSize) * boxSize, (index / boxSize) * boxSize))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the row at the given y-index contains a repeated value.
+     *
+     * @param grid   The current state of the Sudoku game.
+     * @param yIndex The y-index of the row.
+     * @return true if the row contains a repeated value, false otherwise.
+     */
+    public static boolean rowIsInvalid(int[][] grid, int yIndex) {
+        int mask = 0;
+        for (int xIndex = 0; xIndex < grid.length; xIndex++) {
+            int value = grid[xIndex][yIndex];
+            if (value != 0) {
+                int bit = 1 << value;
+                if ((mask & bit) != 0)
+                    return true;
+                mask |= bit;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the column at the given x-index contains a repeated value.
+     *
+     * @param grid   The current state of the Sudoku game.
+     * @param xIndex The x-index of the column.
+     * @return true if the column contains a repeated value, false otherwise.
+     */
+    public static boolean columnIsInvalid(int[][] grid, int xIndex) {
+        int mask = 0;
+        int[] column = grid[xIndex];
+        for (int yIndex = 0; yIndex < column.length; yIndex++) {
+            int value = column[yIndex];
+            if (value != 0) {
+                int bit = 1 << value;
+                if ((mask & bit) != 0)
+                    return true;
+                mask |= bit;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the box starting at the given indexes contains a repeated
+     * value.
+     *
+     * @param grid   The current state of the Sudoku game.
+     * @param xStart The x-index of the top left cell of the box.
+     * @param yStart The y-index of the top left cell of the box.
+     * @return true if the box contains a repeated value, false otherwise.
+     */
+    public static boolean boxIsInvalid(int[][] grid, int xStart, int yStart) {
+        int boxSize = BoardGeometry.of(grid).getBoxSize();
+        int mask = 0;
+        for (int xIndex = xStart; xIndex < xStart + boxSize; xIndex++) {
+            for (int yIndex = yStart; yIndex < yStart + boxSize; yIndex++) {
+                int value = grid[xIndex][yIndex];
+                if (value != 0) {
+                    int bit = 1 << value;
+                    if ((mask & bit) != 0)
+                        return true;
+                    mask |= bit;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the index of the box containing the given cell of a standard 9x9
+     * board. Boxes are numbered left to right, top to bottom.
+     *
+     * @param x The x-coordinate of the cell.
+     * @param y The y-coordinate of the cell.
+     * @return The index of the box, from 0 to 8.
+     * @see BoardGeometry#boxIndex(int, int)
+     */
+    public static int boxIndex(int x, int y) {
+        return BoardGeometry.STANDARD.boxIndex(x, y);
+    }
+
+    /**
+     * Resets the engine and records every value of the provided grid.
+     *
+     * @param grid The grid to load.
+     * @return true if the grid was loaded without conflicts, false if it contains a
+     *         repeated value.
+     */
+    public boolean load(int[][] grid) {
+        clear();
+        boolean valid = true;
+        for (int xIndex = 0; xIndex < geometry.getSize(); xIndex++) {
+            for (int yIndex = 0; yIndex < geometry.getSize(); yIndex++) {
+                int value = grid[xIndex][yIndex];
+                if (value != 0) {
+                    if (!canPlace(xIndex, yIndex, value))
+                        valid = false;
+                    place(xIndex, yIndex, value);
+                }
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Removes every recorded value.
+     */
+    public void clear() {
+        for (int index = 0; index < geometry.getSize(); index++) {
+            rowMasks[index] = 0;
+            columnMasks[index] = 0;
+            boxMasks[index] = 0;
+        }
+    }
+
+    /**
+     * Checks if a value can be placed at the given cell without repeating it in the
+     * cell's row, column or box.
+     *
+     * @param x     The x-coordinate of the cell.
+     * @param y     The y-coordinate of the cell.
+     * @param value The value to place, from 1 to the board size.
+     * @return true if the value can be placed, false otherwise.
+     */
+    public boolean canPlace(int x, int y, int value) {
+        return (usedMask(x, y) & (1 << value)) == 0;
+    }
+
+    /**
+     * Returns the mask of values already used in the row, column and box of the
+     * given cell.
+     *
+     * @param x The x-coordinate of the cell.
+     * @param y The y-coordinate of the cell.
+     * @return A mask where bit `value` is set if that value is unavailable.
+     */
+    public int usedMask(int x, int y) {
+        return rowMasks[y] | columnMasks[x] | boxMasks[geometry.boxIndex(x, y)];
+    }
+
+    /**
+     * Records a value at the given cell.
+     *
+     * @param x     The x-coordinate of the cell.
+     * @param y     The y-coordinate of the cell.
+     * @param value The value to record, from 1 to the board size.
+     */
+    public void place(int x, int y, int value) {
+        int bit = 1 << value;
+        rowMasks[y] |= bit;
+        columnMasks[x] |= bit;
+        boxMasks[geometry.boxIndex(x, y)] |= bit;
+    }
+
+    /**
+     * Removes a previously recorded value from the given cell.
+     *
+     * @param x     The x-coordinate of the cell.
+     * @param y     The y-coordinate of the cell.
+     * @param value The value to remove, from 1 to the board size.
+     */
+    public void remove(int x, int y, int value) {
+        int bit = ~(1 << value);
+        rowMasks[y] &= bit;
+        columnMasks[x] &= bit;
+        boxMasks[geometry.boxIndex(x, y)] &= bit;
+    }
+}
@@ -1,6 +1,7 @@
 package computationlogic;
 
-import problemdomain.SudokuGame;
+import problemdomain.Board;
+import problemdomain.BoardGeometry;
 
 /**
  * The SudokuUtilities class provides utility methods for working with Sudoku
@@ -16,8 +17,8 @@ public class SudokuUtilities {
      * @param newArray The new Sudoku grid to copy values into.
      */
     public static void copySudokuArrayValues(int[][] oldArray, int[][] newArray) {
-        for (int xIndex = 0; xIndex < SudokuGame.GRID_BOUNDARY; xIndex++) {
-            for (int yIndex = 0; yIndex < SudokuGame.GRID_BOUNDARY; yIndex++) {
+        for (int xIndex = 0; xIndex < oldArray.length; xIndex++) {
+            for (int yIndex = 0; yIndex < oldArray[xIndex].length; yIndex++) {
                 newArray[xIndex][yIndex] = oldArray[xIndex][yIndex];
             }
         }
@@ -54,4 +55,95 @@ public class SudokuUtilities {
         }
         return newArray;
     }
+
+    /**
+     * Writes a grid as a line of one character per cell in typewriter order (row
+     * by row), with '0' for an empty cell, '1' to '9' for the values 1 to 9 and
+     * 'A' onwards for the values 10 to 25 of larger boards. This is the line
+     * format read and written by the command line tools; a 9x9 grid is a line of
+     * 81 characters.
+     *
+     * @param grid The grid, indexed [x][y].
+     * @return The grid as a line of text.
+     */
+    public static String toPuzzleString(int[][] grid) {
+        StringBuilder line = new StringBuilder(grid.length * grid.length);
+        for (int yIndex = 0; yIndex < grid.length; yIndex++) {
+            for (int xIndex = 0; xIndex < grid.length; xIndex++) {
+                line.append(toPuzzleChar(grid[xIndex][yIndex]));
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * Writes a board as a line in the format of toPuzzleString(int[][]), reading
+     * its cells without copying them.
+     *
+     * @param board The board.
+     * @return The board as a line of text.
+     */
+    public static String toPuzzleString(Board board) {
+        int cellCount = board.getGeometry().getCellCount();
+        StringBuilder line = new StringBuilder(cellCount);
+        for (int cell = 0; cell < cellCount; cell++) {
+            line.append(toPuzzleChar(board.getValue(cell)));
+        }
+        return line.toString();
+    }
+
+    /**
+     * Reads a grid written as a line of one character per cell in typewriter
+     * order, with '0' or '.' for an empty cell. The size of the board is taken
+     * from the length of the line: 16, 81, 256 or 625 characters.
+     *
+     * @param line The line of text.
+     * @return The grid, indexed [x][y].
+     * @throws IllegalArgumentException If the line is not a valid grid.
+     */
+    public static int[][] fromPuzzleString(CharSequence line) {
+        BoardGeometry geometry = BoardGeometry.forCellCount(line.length());
+        if (geometry == null)
+            throw new IllegalArgumentException("A puzzle must have 16, 81, 256 or 625 characters");
+
+        int size = geometry.getSize();
+        int[][] grid = new int[size][size];
+        for (int cell = 0; cell < line.length(); cell++) {
+            char character = line.charAt(cell);
+            int value = fromPuzzleChar(character);
+            if (value < 0 || value > size)
+                throw new IllegalArgumentException("Invalid character '" + character + "' in puzzle");
+            grid[cell % size][cell / size] = value;
+        }
+        return grid;
+    }
+
+    /**
+     * Returns the character of a value in the line format.
+     *
+     * @param value The value, from 0 (empty) to 25.
+     * @return '0' to '9', or 'A' onwards for 10 and above.
+     */
+    public static char toPuzzleChar(int value) {
+        return (char) (value < 10 ? '0' + value : 'A' + value - 10);
+    }
+
+    /**
+     * Returns the value of a character in the line format. Letters are accepted
+     * in either case.
+     *
+     * @param character The character.
+     * @return The value, 0 for an empty cell, or -1 if the character is not valid.
+     */
+    public static int fromPuzzleChar(char character) {
+        if (character == '.')
+            return 0;
+        if (character >= '0' && character <= '9')
+            return character - '0';
+        if (character >= 'A' && character <= 'Z')
+            return character - 'A' + 10;
+        if (character >= 'a' && character <= 'z')
+            return character - 'a' + 10;
+        return -1;
+    }
 }
@@ -1,17 +1,37 @@
 package constants;
 
+/**
+ * The Difficulty enum represents the difficulty levels of a new game.
+ *
+ * Every level has a target number of empty cells on a 9x9 board (its value)
+ * and a grade band: the hardest SolvingTechnique a puzzle of the level needs
+ * must lie between its minimum and maximum grade. The generator empties more
+ * cells than the target when the minimum grade needs it, and fewer when
+ * uniqueness does not allow the target.
+ *
+ * - `EASY`: 30 empty cells, naked singles only.
+ * - `MEDIUM`: 40 empty cells, needs hidden singles.
+ * - `HARD`: 50 empty cells, needs locked candidates or naked and hidden subsets.
+ * - `EXPERT`: 60 empty cells, needs an X-Wing or harder.
+ *
+ * The bands do not overlap, so the grade of a puzzle determines its level.
+ */
 public enum Difficulty {
-    EASY("Easy",30),
-    MEDIUM("Medium",40),
-    HARD("Hard",50),
-    EXPERT("Expert",60);
+    EASY("Easy",30, SolvingTechnique.NAKED_SINGLE, SolvingTechnique.NAKED_SINGLE),
+    MEDIUM("Medium",40, SolvingTechnique.HIDDEN_SINGLE, SolvingTechnique.HIDDEN_SINGLE),
+    HARD("Hard",50, SolvingTechnique.LOCKED_CANDIDATES, SolvingTechnique.HIDDEN_TRIPLE),
+    EXPERT("Expert",60, SolvingTechnique.X_WING, SolvingTechnique.TRIAL_AND_ERROR);
 
     private final int value;
     private final String name;
+    private final SolvingTechnique minimumGrade;
+    private final SolvingTechnique maximumGrade;
 
-    Difficulty(String name, int value) {
+    Difficulty(String name, int value, SolvingTechnique minimumGrade, SolvingTechnique maximumGrade) {
         this.value = value;
         this.name = name;
+        this.minimumGrade = minimumGrade;
+        this.maximumGrade = maximumGrade;
     }
 
     public int getValue() {
@@ -21,4 +41,12 @@ public enum Difficulty {
     public String getName() {
         return name;
     }
+
+    public SolvingTechnique getMinimumGrade() {
+        return minimumGrade;
+    }
+
+    public SolvingTechnique getMaximumGrade() {
+        return maximumGrade;
+    }
 }
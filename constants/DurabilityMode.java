@@ -0,0 +1,30 @@
+package constants;
+
+/**
+ * The DurabilityMode enum represents how hard the storage tries to get saved
+ * game data onto the disk before a save returns.
+ *
+ * - `NONE`: Data is handed to the operating system and written whenever it
+ * decides to. Fastest, but the last saves can be lost in a power failure.
+ * Replaced files are still forced before the rename, so they are never left
+ * half written.
+ * - `PER_WRITE_FSYNC`: Every save is forced to disk before it returns. Nothing
+ * is lost, at the cost of a disk flush per save.
+ * - `GROUP_COMMIT`: Saves return immediately and a timer forces all saves made
+ * since its last run to disk together. At most one interval of saves is lost.
+ */
+public enum DurabilityMode {
+    NONE("None"),
+    PER_WRITE_FSYNC("Per-Write Fsync"),
+    GROUP_COMMIT("Group Commit");
+
+    private final String name;
+
+    DurabilityMode(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -16,4 +16,28 @@ public class Messages {
      * Message displayed when an error occurs.
      */
     public static final String ERROR = "An error has occurred.";
-}
\ No newline at end of file
+
+    /**
+     * Message displayed when the saved game cannot be read and a new game is
+     * started instead.
+     */
+    public static final String SAVE_UNREADABLE = "Your saved game could not be read, so a new game was started. "
+            + "A copy of the saved game was kept in the SudokuData folder.";
+
+    /**
+     * Message displayed for a hint: the value, the row, the column and the name
+     * of the technique.
+     */
+    public static final String HINT = "Try %d in row %d, column %d (%s).";
+
+    /**
+     * Message displayed for a hint correcting a wrong value: the row, the column
+     * and the correct value.
+     */
+    public static final String HINT_CORRECTION = "The value in row %d, column %d is wrong, it should be %d.";
+
+    /**
+     * Message displayed when no hint is available.
+     */
+    public static final String NO_HINT = "There is no hint for this board.";
+}
@@ -1,14 +0,0 @@
-package constants;
-
-/**
- * The Rows enum represents the rows in a 3x3 square of a Sudoku game.
- *
- * - `TOP`: The top row in a square.
- * - `MIDDLE`: The middle row in a square.
- * - `BOTTOM`: The bottom row in a square.
- */
-public enum Rows {
-    TOP,
-    MIDDLE,
-    BOTTOM
-}
\ No newline at end of file
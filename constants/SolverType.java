@@ -0,0 +1,28 @@
+package constants;
+
+/**
+ * The SolverType enum represents the solver backends available for solving
+ * and generating Sudoku puzzles.
+ *
+ * - `CONSTRAINT_PROPAGATION`: Candidate bitsets with naked/hidden singles and
+ * fewest-candidates branching. Fastest on typical puzzles.
+ * - `DANCING_LINKS`: Knuth's Algorithm X on an exact cover matrix. Predictable
+ * on pathological puzzles.
+ * - `PARALLEL`: The constraint propagation search split across a ForkJoinPool.
+ * Lowest wall-clock time on very hard puzzles on multi-core machines.
+ */
+public enum SolverType {
+    CONSTRAINT_PROPAGATION("Constraint Propagation"),
+    DANCING_LINKS("Dancing Links"),
+    PARALLEL("Parallel");
+
+    private final String name;
+
+    SolverType(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
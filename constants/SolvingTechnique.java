@@ -0,0 +1,44 @@
+package constants;
+
+/**
+ * The SolvingTechnique enum represents the logical steps a human solver uses,
+ * from the easiest to the hardest. The grade of a puzzle is the hardest
+ * technique it needs, so the declaration order matters.
+ *
+ * - `NAKED_SINGLE`: A cell has a single candidate left.
+ * - `HIDDEN_SINGLE`: A value fits in a single cell of a row, column or box.
+ * - `LOCKED_CANDIDATES`: The candidates of a value in a box lie on one line (or
+ * those of a line lie in one box), removing it from the rest of that line (or
+ * box). Also known as pointing and claiming.
+ * - `NAKED_PAIR`, `NAKED_TRIPLE`: Two (three) cells of a unit share two (three)
+ * candidates, removing them from the rest of the unit.
+ * - `HIDDEN_PAIR`, `HIDDEN_TRIPLE`: Two (three) values fit only in the same two
+ * (three) cells of a unit, removing every other candidate from those cells.
+ * - `X_WING`, `SWORDFISH`: The candidates of a value in two (three) rows lie in
+ * the same two (three) columns, removing it from the rest of those columns, and
+ * the same with rows and columns swapped.
+ * - `TRIAL_AND_ERROR`: None of the above makes progress, and the solver has to
+ * guess and backtrack.
+ */
+public enum SolvingTechnique {
+    NAKED_SINGLE("Naked Single"),
+    HIDDEN_SINGLE("Hidden Single"),
+    LOCKED_CANDIDATES("Locked Candidates"),
+    NAKED_PAIR("Naked Pair"),
+    HIDDEN_PAIR("Hidden Pair"),
+    NAKED_TRIPLE("Naked Triple"),
+    HIDDEN_TRIPLE("Hidden Triple"),
+    X_WING("X-Wing"),
+    SWORDFISH("Swordfish"),
+    TRIAL_AND_ERROR("Trial and Error");
+
+    private final String name;
+
+    SolvingTechnique(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,93 @@
+package benchmarks;
+
+import computationlogic.ConstraintSolver;
+import computationlogic.GameLogic;
+import computationlogic.SudokuUtilities;
+import constants.Difficulty;
+import constants.SolverType;
+import problemdomain.SudokuGame;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The BenchmarkCorpus class holds the fixed puzzles and seeds used by the
+ * benchmarks, so that results stay comparable across changes.
+ *
+ * Puzzles are written as 81 characters in typewriter order (row by row), with
+ * '0' for an empty cell. Every puzzle has exactly one solution.
+ */
+public class BenchmarkCorpus {
+
+    /**
+     * The fixed puzzles, by name, from easiest to hardest for a backtracking
+     * solver.
+     */
+    public static final Map<String, String> PUZZLES = new LinkedHashMap<>();
+
+    static {
+        PUZZLES.put("EASY", "003020600900305001001806400008102900700000008006708200002609500800203009005010300");
+        PUZZLES.put("INKALA", "800000000003600000070090200050007000000045700000100030001000068008500010090000400");
+        PUZZLES.put("SEVENTEEN_CLUE", "000000010400000000020000000000050407008000300001090000300400200050100000000806000");
+        PUZZLES.put("GOLDEN_NUGGET", "000000039000001005003050800008090006070002000100400000009080050020000600400700000");
+        PUZZLES.put("PLATINUM_BLONDE", "000000012000000003002300400001800005060070800000009000008500000900040500470006000");
+    }
+
+    /**
+     * The seed of the first generated game. Generated game i uses FIRST_SEED + i.
+     */
+    public static final long FIRST_SEED = 20240101L;
+
+    /**
+     * The number of distinct seeds cycled through by benchmarks generating games.
+     */
+    public static final int SEED_COUNT = 64;
+
+    /**
+     * Parses a puzzle written as 81 characters in typewriter order.
+     *
+     * @param puzzle The puzzle, with '0' or '.' for an empty cell.
+     * @return The grid, indexed [x][y].
+     */
+    public static int[][] parse(String puzzle) {
+        return SudokuUtilities.fromPuzzleString(puzzle);
+    }
+
+    /**
+     * Returns a deep copy of a grid.
+     *
+     * @param grid The grid to copy.
+     * @return The copy.
+     */
+    public static int[][] copyOf(int[][] grid) {
+        int[][] copy = new int[grid.length][];
+        for (int xIndex = 0; xIndex < grid.length; xIndex++) {
+            copy[xIndex] = grid[xIndex].clone();
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the solution of a fixed puzzle.
+     *
+     * @param name The name of the puzzle in PUZZLES.
+     * @return The solved grid.
+     */
+    public static int[][] solved(String name) {
+        int[][] grid = parse(PUZZLES.get(name));
+        new ConstraintSolver().solve(grid);
+        return grid;
+    }
+
+    /**
+     * Generates a game with the seed of the given index, so that every run sees
+     * the same games.
+     *
+     * @param difficulty The difficulty level of the game.
+     * @param index      The index of the seed, from 0 to SEED_COUNT - 1.
+     * @return The generated game.
+     */
+    public static SudokuGame generated(Difficulty difficulty, int index) {
+        return GameLogic.getNewGame(difficulty, SolverType.CONSTRAINT_PROPAGATION, FIRST_SEED + index);
+    }
+}
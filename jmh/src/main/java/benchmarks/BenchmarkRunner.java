@@ -0,0 +1,35 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The BenchmarkRunner class runs the benchmarks of this package with the gc
+ * profiler, so that every score is reported in ops/s together with its
+ * allocation rate, and writes the results to "jmh-result.json" for comparison
+ * with earlier runs.
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Runs the benchmarks whose names match the first argument (all of this
+     * package if there is none).
+     *
+     * @param args An optional regular expression selecting benchmarks.
+     * @throws RunnerException If a benchmark fails.
+     */
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackageName() + ".*Benchmark";
+        Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("jmh-result.json")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,93 @@
+package benchmarks;
+
+import computationlogic.GameLogic;
+import constants.GameState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The GameLogicBenchmark class measures the validation run after every input:
+ * GameLogic.sudokuIsInvalid and GameLogic.checkForCompletion, on a solved grid
+ * (the full scan), a grid with a conflict in its last box (found late) and a
+ * partially filled grid (rejected early by checkForCompletion).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class GameLogicBenchmark {
+
+    /**
+     * A valid, completely filled grid.
+     */
+    private int[][] solvedGrid;
+
+    /**
+     * A completely filled grid with the two bottom cells of its last column
+     * swapped, which stay within the last box but make the last two rows
+     * invalid.
+     */
+    private int[][] invalidGrid;
+
+    /**
+     * A fixed puzzle with its empty cells left empty.
+     */
+    private int[][] partialGrid;
+
+    /**
+     * Builds the grids from the fixed corpus.
+     */
+    @Setup
+    public void setUp() {
+        solvedGrid = BenchmarkCorpus.solved("INKALA");
+        invalidGrid = BenchmarkCorpus.copyOf(solvedGrid);
+        int swapped = invalidGrid[8][8];
+        invalidGrid[8][8] = invalidGrid[8][7];
+        invalidGrid[8][7] = swapped;
+        partialGrid = BenchmarkCorpus.parse(BenchmarkCorpus.PUZZLES.get("INKALA"));
+    }
+
+    /**
+     * Validates the solved grid, which scans every row, column and box.
+     */
+    @Benchmark
+    public boolean sudokuIsInvalidSolved() {
+        return GameLogic.sudokuIsInvalid(solvedGrid);
+    }
+
+    /**
+     * Validates the grid with a conflict.
+     */
+    @Benchmark
+    public boolean sudokuIsInvalidConflict() {
+        return GameLogic.sudokuIsInvalid(invalidGrid);
+    }
+
+    /**
+     * Checks the solved grid for completion.
+     */
+    @Benchmark
+    public GameState checkForCompletionSolved() {
+        return GameLogic.checkForCompletion(solvedGrid);
+    }
+
+    /**
+     * Checks the partially filled grid for completion.
+     */
+    @Benchmark
+    public GameState checkForCompletionPartial() {
+        return GameLogic.checkForCompletion(partialGrid);
+    }
+}
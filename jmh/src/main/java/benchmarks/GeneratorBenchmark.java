@@ -0,0 +1,65 @@
+package benchmarks;
+
+import constants.Difficulty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import problemdomain.SudokuGame;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The GeneratorBenchmark class measures generating a game of each difficulty
+ * level.
+ *
+ * GameGenerator is internal to computationlogic, so games are generated through
+ * GameLogic.getNewGame(Difficulty, SolverType, long), which only adds building
+ * the SudokuGame. Invocations cycle through the same BenchmarkCorpus.SEED_COUNT
+ * seeds in every iteration, so every run generates the same games.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Thread)
+public class GeneratorBenchmark {
+
+    /**
+     * The difficulty level of the generated games.
+     */
+    @Param({ "EASY", "MEDIUM", "HARD", "EXPERT" })
+    public Difficulty difficulty;
+
+    /**
+     * The index of the next seed.
+     */
+    private int seedIndex;
+
+    /**
+     * Restarts the seed cycle at the start of every iteration.
+     */
+    @Setup(Level.Iteration)
+    public void resetSeeds() {
+        seedIndex = 0;
+    }
+
+    /**
+     * Generates the game of the next seed.
+     */
+    @Benchmark
+    public SudokuGame getNewGameGrid() {
+        SudokuGame game = BenchmarkCorpus.generated(difficulty, seedIndex);
+        seedIndex = (seedIndex + 1) % BenchmarkCorpus.SEED_COUNT;
+        return game;
+    }
+}
@@ -0,0 +1,92 @@
+package benchmarks;
+
+import computationlogic.ISolver;
+import computationlogic.SudokuSolver;
+import constants.SolverType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SolverBenchmark class measures solving the fixed puzzles of the corpus,
+ * through SudokuSolver.puzzleIsSolvable and through a reused instance of each
+ * solver backend.
+ *
+ * Solving fills the puzzle in place, so every invocation solves a fresh copy;
+ * the copy is included in the score (and in the allocation rate reported by
+ * the gc profiler).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class SolverBenchmark {
+
+    /**
+     * The name of the puzzle in BenchmarkCorpus.PUZZLES.
+     */
+    @Param({ "EASY", "INKALA", "SEVENTEEN_CLUE", "GOLDEN_NUGGET", "PLATINUM_BLONDE" })
+    public String puzzle;
+
+    /**
+     * The solver backend measured by solveWithBackend.
+     */
+    @Param({ "CONSTRAINT_PROPAGATION", "DANCING_LINKS", "PARALLEL" })
+    public SolverType solverType;
+
+    /**
+     * The parsed puzzle, never modified.
+     */
+    private int[][] grid;
+
+    /**
+     * The solver reused by solveWithBackend.
+     */
+    private ISolver solver;
+
+    /**
+     * Parses the puzzle and creates the solver.
+     */
+    @Setup
+    public void setUp() {
+        grid = BenchmarkCorpus.parse(BenchmarkCorpus.PUZZLES.get(puzzle));
+        solver = SudokuSolver.getSolver(solverType);
+    }
+
+    /**
+     * Solves a copy of the puzzle through SudokuSolver.puzzleIsSolvable.
+     */
+    @Benchmark
+    public boolean puzzleIsSolvable() {
+        return SudokuSolver.puzzleIsSolvable(BenchmarkCorpus.copyOf(grid));
+    }
+
+    /**
+     * Solves a copy of the puzzle with the reused solver of the selected backend.
+     */
+    @Benchmark
+    public boolean solveWithBackend() {
+        return solver.solve(BenchmarkCorpus.copyOf(grid));
+    }
+
+    /**
+     * Proves the puzzle unique with the reused solver of the selected backend, as
+     * the generator does after removing a cell.
+     */
+    @Benchmark
+    public int countSolutionsWithBackend() {
+        return solver.countSolutions(grid, 2);
+    }
+}
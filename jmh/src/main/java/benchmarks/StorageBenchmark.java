@@ -0,0 +1,75 @@
+package benchmarks;
+
+import constants.Difficulty;
+import constants.DurabilityMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import persistence.LocalStorageImpl;
+import problemdomain.SudokuGame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The StorageBenchmark class measures saving a game with LocalStorageImpl and
+ * loading it back.
+ *
+ * LocalStorageImpl writes to the "SudokuData" directory of the user's home
+ * directory, so the benchmark points user.home at a temporary directory before
+ * the class is first used, leaving the real save untouched.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class StorageBenchmark {
+
+    /**
+     * How hard every save tries to reach the disk.
+     */
+    @Param({ "NONE", "PER_WRITE_FSYNC" })
+    public DurabilityMode durabilityMode;
+
+    /**
+     * The storage under test.
+     */
+    private LocalStorageImpl storage;
+
+    /**
+     * The game saved by every invocation.
+     */
+    private SudokuGame game;
+
+    /**
+     * Redirects the storage to a temporary directory and generates the game.
+     *
+     * @throws IOException If the temporary directory cannot be created.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        System.setProperty("user.home", Files.createTempDirectory("sudoku-benchmark").toString());
+        storage = new LocalStorageImpl(durabilityMode);
+        game = BenchmarkCorpus.generated(Difficulty.MEDIUM, 0);
+    }
+
+    /**
+     * Saves the game and loads it back.
+     */
+    @Benchmark
+    public SudokuGame roundTrip() throws IOException {
+        storage.updateGameData(game);
+        return storage.getGameData();
+    }
+}
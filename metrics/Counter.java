@@ -0,0 +1,75 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Counter class is a lock-free, monotonically increasing count, such as the
+ * number of validation calls or of bytes written.
+ *
+ * It is backed by a LongAdder, so concurrent increments from many threads do
+ * not contend on a single memory location; reading the sum is the slower
+ * operation and is only done when metrics are reported.
+ */
+public final class Counter {
+
+    /**
+     * The name of the counter.
+     */
+    private final String name;
+
+    /**
+     * The count.
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Constructs a new Counter. Counters are created through Metrics.counter.
+     *
+     * @param name The name of the counter.
+     */
+    Counter(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the counter.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Adds one to the count.
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Adds a value to the count.
+     *
+     * @param value The value to add.
+     */
+    public void add(long value) {
+        count.add(value);
+    }
+
+    /**
+     * Returns the current count. Increments made concurrently with this call may
+     * or may not be included.
+     *
+     * @return The count.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Resets the count to zero.
+     */
+    void reset() {
+        count.reset();
+    }
+}
@@ -0,0 +1,39 @@
+package metrics;
+
+import java.util.Map;
+
+/**
+ * The IMetricsMXBean interface is the JMX management interface of the metrics
+ * registry, registered as "sudoku:type=Metrics". It can be browsed with
+ * JConsole or VisualVM while the game or a command line tool is running.
+ *
+ * @see Metrics#registerMBean()
+ */
+public interface IMetricsMXBean {
+
+    /**
+     * Returns the current value of every counter.
+     *
+     * @return The counts, by counter name.
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * Returns a summary (count, mean, p50, p99 and max) of every histogram.
+     *
+     * @return The summaries, by histogram name.
+     */
+    Map<String, String> getHistograms();
+
+    /**
+     * Returns the 99th percentile of every histogram.
+     *
+     * @return The percentiles in nanoseconds, by histogram name.
+     */
+    Map<String, Long> getP99Nanos();
+
+    /**
+     * Resets every counter and histogram.
+     */
+    void reset();
+}
@@ -0,0 +1,213 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The LatencyHistogram class records a distribution of durations (or any other
+ * non-negative values) with a bounded relative error, in the style of an HDR
+ * histogram.
+ *
+ * Values are counted in log-linear buckets: every power of two is split into
+ * SUB_BUCKET_COUNT equal buckets, so a recorded value is reported with an error
+ * of at most about 3% whatever its magnitude, from nanoseconds to hours, in a
+ * fixed array of under two thousand counters. Recording is a few bit operations
+ * and an atomic increment, without locks or allocation, so it is cheap enough
+ * for hot paths.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * The number of bits of a value kept below its highest set bit.
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /**
+     * The number of buckets each power of two is split into.
+     */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The number of buckets, enough for every non-negative long.
+     */
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    /**
+     * The name of the histogram.
+     */
+    private final String name;
+
+    /**
+     * The number of values recorded in every bucket.
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * The number of values recorded.
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * The sum of the values recorded.
+     */
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * The largest value recorded.
+     */
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Constructs a new LatencyHistogram. Histograms are created through
+     * Metrics.histogram.
+     *
+     * @param name The name of the histogram.
+     */
+    LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the histogram.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value The value, typically a duration in nanoseconds.
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Records the time elapsed since a start time taken with System.nanoTime.
+     *
+     * @param startNanos The start time.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return The count.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the largest value recorded.
+     *
+     * @return The maximum, 0 if nothing was recorded.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the mean of the values recorded.
+     *
+     * @return The mean, 0 if nothing was recorded.
+     */
+    public double getMean() {
+        long total = count.sum();
+        return total == 0 ? 0 : (double) sum.sum() / total;
+    }
+
+    /**
+     * Returns the value below which the given share of the recorded values lie,
+     * within the precision of the buckets.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return The highest value of the bucket holding the percentile, capped at the
+     *         maximum; 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        long[] counts = new long[BUCKET_COUNT];
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            counts[bucket] = buckets.get(bucket);
+            total += counts[bucket];
+        }
+        if (total == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank)
+                return Math.min(highestValueOf(bucket), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * Returns a one line summary of the histogram, treating values as
+     * nanoseconds: count, mean, p50, p99 and max in microseconds.
+     *
+     * @return The summary.
+     */
+    public String summary() {
+        return String.format("count=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus", getCount(),
+                getMean() / 1e3, getValueAtPercentile(50) / 1e3, getValueAtPercentile(99) / 1e3,
+                getMax() / 1e3);
+    }
+
+    /**
+     * Removes every recorded value. Values recorded concurrently with this call
+     * may be partly kept.
+     */
+    void reset() {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            buckets.set(bucket, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * Returns the bucket of a value.
+     *
+     * @param value A non-negative value.
+     * @return The index of the bucket.
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKET_COUNT)
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        // the top SUB_BUCKET_BITS + 1 bits of the value, from SUB_BUCKET_COUNT to
+        // 2 * SUB_BUCKET_COUNT - 1
+        int top = (int) (value >>> shift);
+        return (shift + 1) * SUB_BUCKET_COUNT + top - SUB_BUCKET_COUNT;
+    }
+
+    /**
+     * Returns the highest value counted in a bucket.
+     *
+     * @param bucket The index of the bucket.
+     * @return The highest value of the bucket.
+     */
+    private static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT)
+            return bucket;
+        int shift = bucket / SUB_BUCKET_COUNT - 1;
+        long top = bucket % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((top + 1) << shift) - 1;
+    }
+}
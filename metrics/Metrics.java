@@ -0,0 +1,213 @@
+package metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Metrics class is the process-wide registry of counters and latency
+ * histograms.
+ *
+ * Instrumented classes look their instruments up once, into static final
+ * fields, and then only touch lock-free counters on their hot paths:
+ *
+ * - generator: generation time per difficulty level
+ * - solver: searches, nodes visited and backtracks
+ * - validation: full-grid checks and incremental moves
+ * - storage: read and write latency and bytes
+ * - ui: input-to-save and New Game click-to-render latency
+ *
+ * The registry is exposed through JMX (registerMBean) and can be dumped to
+ * standard error periodically (startLogDump), so that a slow New Game can be
+ * traced to generation or to the disk.
+ */
+public final class Metrics {
+
+    /**
+     * The name under which the registry is registered with JMX.
+     */
+    public static final String OBJECT_NAME = "sudoku:type=Metrics";
+
+    /**
+     * The system property holding the period of the log dump in seconds; the
+     * dump is disabled when it is not set.
+     */
+    public static final String LOG_DUMP_PROPERTY = "sudoku.metrics.dumpSeconds";
+
+    /**
+     * Every counter, by name.
+     */
+    private static final ConcurrentMap<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+
+    /**
+     * Every histogram, by name.
+     */
+    private static final ConcurrentMap<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    /**
+     * The thread writing the periodic log dump, or null if it is not running.
+     */
+    private static ScheduledExecutorService logDumper;
+
+    /**
+     * Metrics is a static registry and cannot be instantiated.
+     */
+    private Metrics() {
+    }
+
+    /**
+     * Returns the counter with the given name, creating it on first use.
+     *
+     * @param name The name of the counter, such as "storage.write.bytes".
+     * @return The counter.
+     */
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, Counter::new);
+    }
+
+    /**
+     * Returns the histogram with the given name, creating it on first use.
+     *
+     * @param name The name of the histogram, such as "storage.write.nanos".
+     * @return The histogram.
+     */
+    public static LatencyHistogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    /**
+     * Returns the current value of every counter, sorted by name.
+     *
+     * @return The counts, by counter name.
+     */
+    public static Map<String, Long> counterValues() {
+        Map<String, Long> values = new TreeMap<>();
+        COUNTERS.forEach((name, counter) -> values.put(name, counter.getCount()));
+        return values;
+    }
+
+    /**
+     * Returns every histogram, sorted by name.
+     *
+     * @return The histograms, by name.
+     */
+    public static Map<String, LatencyHistogram> histograms() {
+        return new TreeMap<>(HISTOGRAMS);
+    }
+
+    /**
+     * Resets every counter and histogram.
+     */
+    public static void reset() {
+        COUNTERS.values().forEach(Counter::reset);
+        HISTOGRAMS.values().forEach(LatencyHistogram::reset);
+    }
+
+    /**
+     * Returns a multi-line report of every counter and every histogram which
+     * has recorded a value.
+     *
+     * @return The report.
+     */
+    public static String dump() {
+        StringBuilder report = new StringBuilder("Metrics:\n");
+        counterValues().forEach((name, value) -> report.append("  ").append(name).append(' ').append(value)
+                .append('\n'));
+        histograms().forEach((name, histogram) -> {
+            if (histogram.getCount() > 0)
+                report.append("  ").append(name).append(' ').append(histogram.summary()).append('\n');
+        });
+        return report.toString();
+    }
+
+    /**
+     * Registers the registry with the platform MBean server under OBJECT_NAME,
+     * unless it is already registered.
+     */
+    public static synchronized void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name))
+                server.registerMBean(new MetricsBean(), name);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Starts writing dump to standard error at the period set by the system
+     * property LOG_DUMP_PROPERTY, if it is set to a positive number of seconds.
+     */
+    public static void startLogDumpIfConfigured() {
+        long seconds = Long.getLong(LOG_DUMP_PROPERTY, 0L);
+        if (seconds > 0)
+            startLogDump(seconds);
+    }
+
+    /**
+     * Starts writing dump to standard error at a fixed period, on a daemon
+     * thread. Does nothing if the dump is already running.
+     *
+     * @param periodSeconds The period in seconds.
+     */
+    public static synchronized void startLogDump(long periodSeconds) {
+        if (logDumper != null)
+            return;
+        logDumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sudoku-metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logDumper.scheduleAtFixedRate(() -> System.err.print(dump()), periodSeconds, periodSeconds,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the periodic log dump, if it is running.
+     */
+    public static synchronized void stopLogDump() {
+        if (logDumper != null) {
+            logDumper.shutdownNow();
+            logDumper = null;
+        }
+    }
+
+    /**
+     * The MXBean exposing the registry through JMX.
+     */
+    private static class MetricsBean implements IMetricsMXBean {
+
+        @Override
+        public Map<String, Long> getCounters() {
+            return counterValues();
+        }
+
+        @Override
+        public Map<String, String> getHistograms() {
+            Map<String, String> summaries = new TreeMap<>();
+            HISTOGRAMS.forEach((name, histogram) -> summaries.put(name, histogram.summary()));
+            return summaries;
+        }
+
+        @Override
+        public Map<String, Long> getP99Nanos() {
+            Map<String, Long> percentiles = new TreeMap<>();
+            HISTOGRAMS.forEach((name, histogram) -> percentiles.put(name, histogram.getValueAtPercentile(99)));
+            return percentiles;
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package persistence;
+
+import constants.DurabilityMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The AtomicFileWriter class replaces files atomically and gets them onto the
+ * disk according to a DurabilityMode.
+ *
+ * A file is replaced by writing a temporary file next to it, forcing it to disk
+ * and renaming it over the original, so a crash leaves either the old or the new
+ * content, never a mix, whatever the mode. The mode only decides when the rename
+ * itself (the directory entry) and the files kept open for appending, reported
+ * through written, are forced to disk.
+ *
+ * In GROUP_COMMIT mode a daemon timer forces every directory and appended file
+ * written since its last run. A failed group commit is thrown from the next
+ * write or sync.
+ */
+final class AtomicFileWriter {
+
+    /**
+     * The default interval between group commits.
+     */
+    static final long DEFAULT_GROUP_COMMIT_MILLIS = 1000;
+
+    /**
+     * How hard writes try to reach the disk.
+     */
+    private final DurabilityMode mode;
+
+    /**
+     * The files replaced since the last group commit, whose directories have not
+     * been forced yet.
+     */
+    private final Set<Path> dirtyFiles = new HashSet<>();
+
+    /**
+     * The open files appended to since the last group commit.
+     */
+    private final Set<FileChannel> dirtyChannels = new HashSet<>();
+
+    /**
+     * The timer running group commits, or null in the other modes.
+     */
+    private final ScheduledExecutorService committer;
+
+    /**
+     * The error of the last failed group commit, or null.
+     */
+    private IOException failure;
+
+    /**
+     * Constructs a new AtomicFileWriter.
+     *
+     * @param mode              How hard writes try to reach the disk.
+     * @param groupCommitMillis The interval between group commits, used in
+     *                          GROUP_COMMIT mode.
+     */
+    AtomicFileWriter(DurabilityMode mode, long groupCommitMillis) {
+        this.mode = mode;
+        if (mode == DurabilityMode.GROUP_COMMIT) {
+            committer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "sudoku-group-commit");
+                thread.setDaemon(true);
+                return thread;
+            });
+            committer.scheduleWithFixedDelay(this::commitInBackground, groupCommitMillis, groupCommitMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            committer = null;
+        }
+    }
+
+    /**
+     * Replaces the content of a file with the remaining bytes of a buffer.
+     *
+     * @param target The file to replace.
+     * @param data   The new content, from its position to its limit.
+     * @throws IOException If the file cannot be written, or the last group commit
+     *                     failed.
+     */
+    synchronized void write(Path target, ByteBuffer data) throws IOException {
+        throwFailure();
+        long start = System.nanoTime();
+        int bytes = data.remaining();
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            // the content must be on disk before the rename, or a power failure could
+            // leave the new name pointing to an empty or partial file
+            channel.force(true);
+        }
+
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        if (mode == DurabilityMode.PER_WRITE_FSYNC)
+            forceDirectory(target);
+        else if (mode == DurabilityMode.GROUP_COMMIT)
+            dirtyFiles.add(target);
+        StorageMetrics.recordWrite(start, bytes);
+    }
+
+    /**
+     * Reports that data was appended to an open file, forcing it to disk now or
+     * at the next group commit, depending on the mode.
+     *
+     * @param channel The file appended to. It must stay open until the next sync.
+     * @throws IOException If the file cannot be forced, or the last group commit
+     *                     failed.
+     */
+    synchronized void written(FileChannel channel) throws IOException {
+        throwFailure();
+        if (mode == DurabilityMode.PER_WRITE_FSYNC)
+            channel.force(false);
+        else if (mode == DurabilityMode.GROUP_COMMIT)
+            dirtyChannels.add(channel);
+    }
+
+    /**
+     * Forces every file written since the last group commit to disk immediately.
+     *
+     * @throws IOException If a file cannot be forced, or the last group commit
+     *                     failed.
+     */
+    synchronized void sync() throws IOException {
+        throwFailure();
+        commit();
+    }
+
+    /**
+     * Stops the group commit timer and forces every file written since the last
+     * group commit to disk. The writer must not be used afterwards.
+     *
+     * @throws IOException If a file cannot be forced, or the last group commit
+     *                     failed.
+     */
+    synchronized void close() throws IOException {
+        if (committer != null)
+            committer.shutdown();
+        throwFailure();
+        commit();
+    }
+
+    /**
+     * Moves a file which could not be read out of the way, so that it is neither
+     * loaded again nor overwritten by the next save.
+     *
+     * @param file The unreadable file.
+     * @return The new location of the file.
+     * @throws IOException If the file cannot be moved.
+     */
+    static File quarantine(File file) throws IOException {
+        File copy = new File(file.getParentFile(), file.getName() + ".corrupt-" + System.currentTimeMillis());
+        Files.move(file.toPath(), copy.toPath());
+        return copy;
+    }
+
+    /**
+     * Forces the directories of the replaced files and the appended files to
+     * disk. The content of replaced files was forced before they were renamed.
+     *
+     * @throws IOException If a file cannot be forced.
+     */
+    private void commit() throws IOException {
+        Set<Path> directories = new HashSet<>();
+        for (Path file : dirtyFiles) {
+            if (directories.add(file.toAbsolutePath().getParent()))
+                forceDirectory(file);
+        }
+        dirtyFiles.clear();
+
+        for (FileChannel channel : dirtyChannels) {
+            if (channel.isOpen())
+                channel.force(false);
+        }
+        dirtyChannels.clear();
+    }
+
+    /**
+     * Runs a group commit, keeping the error for the next caller if it fails.
+     */
+    private synchronized void commitInBackground() {
+        try {
+            commit();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Forces the directory entry of a file to disk, so that a rename survives a
+     * power failure. Platforms which cannot open directories are skipped.
+     *
+     * @param file The file whose directory is forced.
+     */
+    private static void forceDirectory(Path file) {
+        Path directory = file.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // directories cannot be opened on this platform
+        }
+    }
+
+    /**
+     * Throws and clears the error of the last failed group commit.
+     *
+     * @throws IOException The error of the last failed group commit.
+     */
+    private void throwFailure() throws IOException {
+        if (failure != null) {
+            IOException e = failure;
+            failure = null;
+            throw e;
+        }
+    }
+}
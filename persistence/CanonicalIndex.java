@@ -0,0 +1,299 @@
+package persistence;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The CanonicalIndex class keeps the set of puzzles already stored, for
+ * rejecting duplicates, in a memory-mapped file.
+ *
+ * A puzzle is identified by a 64 bit hash of its canonical form (see
+ * PuzzleCanonicalizer), so puzzles which are the same up to symmetry have the
+ * same hash. The file is an open addressing hash table of those hashes with
+ * linear probing, so checking or adding a puzzle reads one or two slots of the
+ * mapped memory whatever the number of puzzles. With millions of puzzles the
+ * chance that two different puzzles share a hash is below one in a million.
+ *
+ * The file starts with a 16 byte header (magic number, version and slot
+ * capacity, a power of two), followed by one 8 byte slot per hash, 0 for an
+ * empty slot. When three quarters of the slots are in use, the table is copied
+ * into a file twice the size, which is renamed over the original, so a crash
+ * while growing leaves the old table intact.
+ */
+public class CanonicalIndex implements Closeable {
+
+    /**
+     * The number of slots of a new file.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * The magic number at the start of the file: "SDKC" in ASCII.
+     */
+    private static final int MAGIC = 0x53444B43;
+
+    /**
+     * The version of the file layout.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the file header in bytes.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * The size of a slot in bytes.
+     */
+    private static final int SLOT_SIZE = Long.BYTES;
+
+    /**
+     * The largest number of slots which fits in a single mapping.
+     */
+    private static final int MAX_CAPACITY = 1 << 27;
+
+    /**
+     * The index file.
+     */
+    private final Path path;
+
+    /**
+     * The open index file.
+     */
+    private FileChannel channel;
+
+    /**
+     * The mapping of the whole index file.
+     */
+    private MappedByteBuffer mapped;
+
+    /**
+     * The number of slots, a power of two.
+     */
+    private int capacity;
+
+    /**
+     * The number of slots in use.
+     */
+    private int size;
+
+    /**
+     * Opens an index, creating the file if it does not exist.
+     *
+     * @param file The index file.
+     * @throws IOException If the file cannot be opened or is not an index file.
+     */
+    public CanonicalIndex(File file) throws IOException {
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Opens an index, creating the file if it does not exist.
+     *
+     * @param file            The index file.
+     * @param initialCapacity The number of slots of a new file, rounded up to a
+     *                        power of two.
+     * @throws IOException If the file cannot be opened or is not an index file.
+     */
+    public CanonicalIndex(File file, int initialCapacity) throws IOException {
+        if (initialCapacity < 1 || initialCapacity > MAX_CAPACITY)
+            throw new IllegalArgumentException("Invalid index capacity");
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        path = file.toPath();
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        if (channel.size() == 0) {
+            capacity = Integer.highestOneBit(initialCapacity);
+            if (capacity < initialCapacity)
+                capacity <<= 1;
+            mapped = map(channel, capacity);
+        } else {
+            if (channel.size() < HEADER_SIZE)
+                throw new IOException("Index file is truncated");
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+                throw new IOException("Index file has an unknown format");
+            int storedCapacity = header.getInt(8);
+            if (Integer.bitCount(storedCapacity) != 1 || storedCapacity > MAX_CAPACITY
+                    || channel.size() < HEADER_SIZE + (long) storedCapacity * SLOT_SIZE)
+                throw new IOException("Index file is truncated");
+            capacity = storedCapacity;
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * SLOT_SIZE);
+            for (int slot = 0; slot < capacity; slot++) {
+                if (mapped.getLong(slotOffset(slot)) != 0)
+                    size++;
+            }
+        }
+    }
+
+    /**
+     * Checks if a puzzle is in the index.
+     *
+     * @param canonicalForm The canonical form of the puzzle.
+     * @return true if a puzzle with the same canonical form was added, false
+     *         otherwise.
+     */
+    public synchronized boolean contains(byte[] canonicalForm) {
+        long hash = hash(canonicalForm);
+        return mapped.getLong(slotOffset(findSlot(mapped, capacity, hash))) == hash;
+    }
+
+    /**
+     * Adds a puzzle to the index, unless a puzzle with the same canonical form is
+     * already in it.
+     *
+     * @param canonicalForm The canonical form of the puzzle.
+     * @return true if the puzzle was added, false if it is a duplicate.
+     * @throws IOException If the index has to grow and the file cannot be
+     *                     replaced.
+     */
+    public synchronized boolean add(byte[] canonicalForm) throws IOException {
+        long hash = hash(canonicalForm);
+        int slot = findSlot(mapped, capacity, hash);
+        if (mapped.getLong(slotOffset(slot)) == hash)
+            return false;
+
+        if ((size + 1) * 4L > capacity * 3L) {
+            grow();
+            slot = findSlot(mapped, capacity, hash);
+        }
+        mapped.putLong(slotOffset(slot), hash);
+        size++;
+        return true;
+    }
+
+    /**
+     * Returns the number of puzzles in the index.
+     *
+     * @return The number of puzzles.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Writes the changed parts of the mapped file to disk.
+     */
+    public synchronized void flush() {
+        mapped.force();
+    }
+
+    /**
+     * Writes the index to disk and closes the file.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        mapped.force();
+        channel.close();
+    }
+
+    /**
+     * Hashes a canonical form with 64 bit FNV-1a followed by the finalizer of
+     * SplitMix64, which spreads the low bits used to pick a slot. 0 marks an empty
+     * slot, so it is never returned.
+     *
+     * @param canonicalForm The canonical form of a puzzle.
+     * @return The hash, never 0.
+     */
+    static long hash(byte[] canonicalForm) {
+        long z = 0xCBF29CE484222325L;
+        for (byte value : canonicalForm) {
+            z = (z ^ value) * 0x100000001B3L;
+        }
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return z == 0 ? 1 : z;
+    }
+
+    /**
+     * Copies every hash into a new file with twice the slots and renames it over
+     * the index file.
+     *
+     * @throws IOException If the new file cannot be written or renamed.
+     */
+    private void grow() throws IOException {
+        if (capacity >= MAX_CAPACITY)
+            throw new IOException("Index file is full");
+        int newCapacity = capacity * 2;
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel newChannel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer newMapped = map(newChannel, newCapacity);
+            for (int slot = 0; slot < capacity; slot++) {
+                long hash = mapped.getLong(slotOffset(slot));
+                if (hash != 0)
+                    newMapped.putLong(slotOffset(findSlot(newMapped, newCapacity, hash)), hash);
+            }
+            newMapped.force();
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        channel.close();
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        capacity = newCapacity;
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * SLOT_SIZE);
+    }
+
+    /**
+     * Maps an empty file with room for the given number of slots and writes its
+     * header.
+     *
+     * @param file        The open file.
+     * @param newCapacity The number of slots.
+     * @return The mapping of the whole file.
+     * @throws IOException If the file cannot be mapped.
+     */
+    private static MappedByteBuffer map(FileChannel file, int newCapacity) throws IOException {
+        MappedByteBuffer buffer = file.map(FileChannel.MapMode.READ_WRITE, 0,
+                HEADER_SIZE + (long) newCapacity * SLOT_SIZE);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, newCapacity);
+        return buffer;
+    }
+
+    /**
+     * Finds the slot holding a hash, or the empty slot where it belongs.
+     *
+     * @param buffer     The mapping of the table.
+     * @param tableSlots The number of slots of the table.
+     * @param hash       The hash.
+     * @return The slot number.
+     */
+    private static int findSlot(ByteBuffer buffer, int tableSlots, long hash) {
+        int mask = tableSlots - 1;
+        int slot = (int) hash & mask;
+        while (true) {
+            long stored = buffer.getLong(slotOffset(slot));
+            if (stored == 0 || stored == hash)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Returns the position of a slot within the file.
+     *
+     * @param slot The slot number.
+     * @return The offset of the slot in bytes.
+     */
+    private static int slotOffset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+}
@@ -0,0 +1,244 @@
+package persistence;
+
+import constants.GameState;
+import problemdomain.Board;
+import problemdomain.BoardGeometry;
+import problemdomain.SudokuGame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * The GameDataCodec class converts a SudokuGame to and from a compact,
+ * versioned binary record.
+ *
+ * A game on the standard 9x9 board is written as a version 1 record, which is
+ * 62 bytes long and laid out as follows, with cells in typewriter order (index
+ * y * 9 + x):
+ *
+ * - 4 bytes: the magic number "SDKU"
+ * - 1 byte: the format version
+ * - 1 byte: the GameState ordinal
+ * - 41 bytes: the value of every cell, one nibble each, high nibble first
+ * - 11 bytes: the disabled (given) tiles, one bit each, lowest bit first
+ * - 4 bytes: the CRC32 checksum of all preceding bytes
+ *
+ * A game on any other board is written as a version 2 record, which has one
+ * more byte holding the box size after the version, and one byte per cell
+ * value since values above 15 do not fit in a nibble. Its length depends on the
+ * board and is given by recordSize.
+ *
+ * Records are read and written through a ByteBuffer at its current position,
+ * so callers can reuse buffers and place records anywhere in a file.
+ */
+final class GameDataCodec {
+
+    /**
+     * The magic number at the start of every record: "SDKU" in ASCII.
+     */
+    static final int MAGIC = 0x53444B55;
+
+    /**
+     * The version of the record layout of the standard 9x9 board.
+     */
+    static final byte VERSION = 1;
+
+    /**
+     * The version of the record layout of the other boards.
+     */
+    static final byte SIZED_VERSION = 2;
+
+    /**
+     * The size of a record of the standard 9x9 board in bytes.
+     */
+    static final int RECORD_SIZE = recordSize(BoardGeometry.STANDARD);
+
+    /**
+     * The size of the largest record of any board in bytes.
+     */
+    static final int MAX_RECORD_SIZE = recordSize(BoardGeometry.of(BoardGeometry.MAX_BOX_SIZE));
+
+    /**
+     * Returns the size of the record of a game on a board of the given geometry.
+     *
+     * @param geometry The geometry of the board.
+     * @return The size of the record in bytes.
+     */
+    static int recordSize(BoardGeometry geometry) {
+        return headerBytes(geometry) + valueBytes(geometry) + maskBytes(geometry) + 4;
+    }
+
+    /**
+     * Writes a game as a record at the current position of the buffer, advancing
+     * the position by the size of the record.
+     *
+     * @param game   The game to write.
+     * @param buffer The buffer to write to, with at least recordSize bytes
+     *               remaining.
+     */
+    static void encode(SudokuGame game, ByteBuffer buffer) {
+        int start = buffer.position();
+        Board board = game.getBoard();
+        BoardGeometry geometry = board.getGeometry();
+        int cellCount = geometry.getCellCount();
+
+        buffer.putInt(MAGIC);
+        if (geometry == BoardGeometry.STANDARD) {
+            buffer.put(VERSION);
+        } else {
+            buffer.put(SIZED_VERSION);
+            buffer.put((byte) geometry.getBoxSize());
+        }
+        buffer.put((byte) game.getGameState().ordinal());
+
+        if (geometry == BoardGeometry.STANDARD) {
+            for (int cell = 0; cell < cellCount; cell += 2) {
+                int high = board.getValue(cell);
+                int low = cell + 1 < cellCount ? board.getValue(cell + 1) : 0;
+                buffer.put((byte) (high << 4 | low));
+            }
+        } else {
+            for (int cell = 0; cell < cellCount; cell++) {
+                buffer.put((byte) board.getValue(cell));
+            }
+        }
+
+        for (int index = 0; index < maskBytes(geometry); index++) {
+            int bits = 0;
+            for (int bit = 0; bit < 8; bit++) {
+                int cell = index * 8 + bit;
+                if (cell < cellCount && board.isDisabled(cell))
+                    bits |= 1 << bit;
+            }
+            buffer.put((byte) bits);
+        }
+
+        buffer.putInt(checksum(buffer, start, buffer.position() - start));
+    }
+
+    /**
+     * Reads a record at the current position of the buffer, advancing the position
+     * by the size of the record.
+     *
+     * @param buffer The buffer to read from.
+     * @return The decoded game.
+     * @throws IOException If the buffer does not hold a valid record.
+     */
+    static SudokuGame decode(ByteBuffer buffer) throws IOException {
+        // magic number, version and box size
+        if (buffer.remaining() < 4 + 1 + 1)
+            throw new IOException("Game Data is truncated");
+
+        int start = buffer.position();
+        if (buffer.getInt() != MAGIC)
+            throw new IOException("Game Data has an unknown format");
+        BoardGeometry geometry;
+        byte version = buffer.get();
+        if (version == VERSION) {
+            geometry = BoardGeometry.STANDARD;
+        } else if (version == SIZED_VERSION) {
+            int boxSize = buffer.get();
+            if (boxSize < BoardGeometry.MIN_BOX_SIZE || boxSize > BoardGeometry.MAX_BOX_SIZE)
+                throw new IOException("Game Data has an invalid board size");
+            geometry = BoardGeometry.of(boxSize);
+        } else {
+            throw new IOException("Game Data has an unsupported version");
+        }
+        if (buffer.limit() - start < recordSize(geometry))
+            throw new IOException("Game Data is truncated");
+
+        int stateOrdinal = buffer.get();
+        if (stateOrdinal < 0 || stateOrdinal >= GameState.values().length)
+            throw new IOException("Game Data has an invalid state");
+
+        int size = geometry.getSize();
+        int cellCount = geometry.getCellCount();
+        int[][] gridState = new int[size][size];
+        if (geometry == BoardGeometry.STANDARD) {
+            for (int cell = 0; cell < cellCount; cell += 2) {
+                int packed = buffer.get() & 0xFF;
+                gridState[cell % size][cell / size] = packed >>> 4;
+                if (cell + 1 < cellCount)
+                    gridState[(cell + 1) % size][(cell + 1) / size] = packed & 0x0F;
+            }
+        } else {
+            for (int cell = 0; cell < cellCount; cell++) {
+                gridState[cell % size][cell / size] = buffer.get() & 0xFF;
+            }
+        }
+
+        boolean[][] disabledTiles = new boolean[size][size];
+        for (int index = 0; index < maskBytes(geometry); index++) {
+            int bits = buffer.get();
+            for (int bit = 0; bit < 8; bit++) {
+                int cell = index * 8 + bit;
+                if (cell < cellCount && (bits & (1 << bit)) != 0)
+                    disabledTiles[cell % size][cell / size] = true;
+            }
+        }
+
+        int expected = checksum(buffer, start, buffer.position() - start);
+        if (buffer.getInt() != expected)
+            throw new IOException("Game Data is corrupted");
+
+        for (int[] column : gridState) {
+            for (int value : column) {
+                if (value > size)
+                    throw new IOException("Game Data has an invalid value");
+            }
+        }
+
+        return new SudokuGame(GameState.values()[stateOrdinal], gridState, disabledTiles);
+    }
+
+    /**
+     * Returns the number of bytes before the cell values: magic number, version,
+     * box size (version 2 only) and state.
+     *
+     * @param geometry The geometry of the board.
+     * @return The size of the record header in bytes.
+     */
+    private static int headerBytes(BoardGeometry geometry) {
+        return geometry == BoardGeometry.STANDARD ? 4 + 1 + 1 : 4 + 1 + 1 + 1;
+    }
+
+    /**
+     * Returns the number of bytes holding the cell values.
+     *
+     * @param geometry The geometry of the board.
+     * @return One nibble per cell on the standard board, otherwise one byte per
+     *         cell.
+     */
+    private static int valueBytes(BoardGeometry geometry) {
+        int cellCount = geometry.getCellCount();
+        return geometry == BoardGeometry.STANDARD ? (cellCount + 1) / 2 : cellCount;
+    }
+
+    /**
+     * Returns the number of bytes holding the disabled tiles.
+     *
+     * @param geometry The geometry of the board.
+     * @return One bit per cell, rounded up to whole bytes.
+     */
+    private static int maskBytes(BoardGeometry geometry) {
+        return (geometry.getCellCount() + 7) / 8;
+    }
+
+    /**
+     * Computes the checksum of the given number of bytes starting at the given
+     * position, without moving the buffer's position.
+     *
+     * @param buffer The buffer holding the record.
+     * @param start  The position of the record.
+     * @param length The number of bytes covered by the checksum.
+     * @return The CRC32 checksum.
+     */
+    private static int checksum(ByteBuffer buffer, int start, int length) {
+        ByteBuffer checked = buffer.duplicate();
+        checked.limit(start + length).position(start);
+        CRC32 crc = new CRC32();
+        crc.update(checked);
+        return (int) crc.getValue();
+    }
+}
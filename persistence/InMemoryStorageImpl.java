@@ -0,0 +1,56 @@
+package persistence;
+
+import problemdomain.IStorage;
+import problemdomain.SudokuGame;
+
+import java.io.FileNotFoundException;
+
+/**
+ * The InMemoryStorageImpl class implements the IStorage interface by keeping
+ * the latest game in memory, for headless game sessions which are not resumed
+ * after the process exits.
+ *
+ * SudokuGame is immutable, so the game is kept without copying and saving is a
+ * single volatile write.
+ */
+public class InMemoryStorageImpl implements IStorage {
+
+    /**
+     * The latest game, or null if no game has been saved.
+     */
+    private volatile SudokuGame game;
+
+    /**
+     * Returns true: saving a game is a single write to memory.
+     *
+     * @return Always true.
+     */
+    @Override
+    public boolean savesIncrementally() {
+        return true;
+    }
+
+    /**
+     * Keeps the provided SudokuGame as the latest game.
+     *
+     * @param game The SudokuGame object to store.
+     */
+    @Override
+    public void updateGameData(SudokuGame game) {
+        this.game = game;
+    }
+
+    /**
+     * Returns the latest game.
+     *
+     * @return The SudokuGame object stored last.
+     * @throws FileNotFoundException If no game has been saved.
+     */
+    @Override
+    public SudokuGame getGameData() throws FileNotFoundException {
+        SudokuGame current = game;
+        if (current == null)
+            throw new FileNotFoundException("No game data in memory");
+        return current;
+    }
+}
@@ -0,0 +1,529 @@
+package persistence;
+
+import computationlogic.GameLogic;
+import constants.DurabilityMode;
+import problemdomain.Board;
+import problemdomain.IStorage;
+import problemdomain.SudokuGame;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * The JournalStorageImpl class implements the IStorage interface with a
+ * snapshot file and an append-only journal of moves.
+ *
+ * When a new game is saved, it is written as a snapshot (in the format of
+ * GameDataCodec) and the journal is emptied. Every later save is compared with
+ * the previous one and only the changed cells are appended to the journal, as
+ * fixed-size 16 byte records:
+ *
+ * - 1 byte each: x, y, old value, new value
+ * - 1 byte: the GameState ordinal after the move
+ * - 1 byte: the record kind (move, undo or redo)
+ * - 2 bytes: reserved
+ * - 8 bytes: the time of the move, in milliseconds since the epoch
+ *
+ * The journal starts with a header record of kind snapshot, whose last 8 bytes
+ * hold the checksum of the snapshot it belongs to.
+ *
+ * After a configurable number of records the journal is compacted into a new
+ * snapshot. On startup the snapshot is loaded and the journal replayed; a
+ * partially written record at the end of the journal (after a crash) is
+ * ignored, as is a journal left over from an older snapshot or a record which
+ * does not match the cell it changes.
+ *
+ * Snapshots are replaced atomically, and snapshots and journal appends reach
+ * the disk according to the DurabilityMode. A snapshot which cannot be decoded
+ * is moved aside, together with its journal, instead of being overwritten.
+ *
+ * The journal also records the undo history since the last snapshot, which is
+ * exposed through undo and redo, and so to the player through ControlLogic.
+ */
+public class JournalStorageImpl implements IStorage {
+
+    /**
+     * The default number of journal records after which a snapshot is taken.
+     */
+    public static final int DEFAULT_COMPACT_EVERY = 256;
+
+    /**
+     * The size of a journal record in bytes.
+     */
+    static final int RECORD_SIZE = 16;
+
+    /**
+     * Record kind of a move made by the player.
+     */
+    private static final byte KIND_MOVE = 0;
+
+    /**
+     * Record kind of a move reverted by undo.
+     */
+    private static final byte KIND_UNDO = 1;
+
+    /**
+     * Record kind of a move reapplied by redo.
+     */
+    private static final byte KIND_REDO = 2;
+
+    /**
+     * Record kind of the journal header.
+     */
+    private static final byte KIND_SNAPSHOT = 3;
+
+    /**
+     * The file holding the last snapshot.
+     */
+    private final File snapshotFile;
+
+    /**
+     * The file holding the moves made since the last snapshot.
+     */
+    private final File journalFile;
+
+    /**
+     * The number of journal records after which a snapshot is taken.
+     */
+    private final int compactEvery;
+
+    /**
+     * The storage from which a game is migrated if no snapshot exists, or null.
+     */
+    private final IStorage legacyStorage;
+
+    /**
+     * Writes snapshots atomically and forces snapshots and the journal to disk.
+     */
+    private final AtomicFileWriter writer;
+
+    /**
+     * The buffer used to write journal records, reused by every call.
+     */
+    private final ByteBuffer recordBuffer = ByteBuffer.allocateDirect(RECORD_SIZE);
+
+    /**
+     * The buffer used to read and write snapshots, reused by every call.
+     */
+    private final ByteBuffer snapshotBuffer = ByteBuffer.allocateDirect(GameDataCodec.MAX_RECORD_SIZE);
+
+    /**
+     * The moves which can be undone, most recent first. Each move is {x, y, old,
+     * new}.
+     */
+    private final Deque<int[]> undoMoves = new ArrayDeque<>();
+
+    /**
+     * The moves which can be redone, most recently undone first.
+     */
+    private final Deque<int[]> redoMoves = new ArrayDeque<>();
+
+    /**
+     * The open journal, or null before the first load.
+     */
+    private FileChannel journal;
+
+    /**
+     * The game as of the last save, or null before the first load.
+     */
+    private SudokuGame currentGame;
+
+    /**
+     * The number of records in the journal, not counting the header.
+     */
+    private int journalRecords;
+
+    /**
+     * The checksum of the current snapshot.
+     */
+    private int snapshotChecksum;
+
+    /**
+     * Constructs a new JournalStorageImpl in the "SudokuData" directory within the
+     * user's home directory, forcing saves to disk with group commits. A game saved
+     * there by LocalStorageImpl is migrated on the first load.
+     */
+    public JournalStorageImpl() {
+        this(new File(System.getProperty("user.home"), "SudokuData"), DEFAULT_COMPACT_EVERY,
+                DurabilityMode.GROUP_COMMIT, new LocalStorageImpl(DurabilityMode.NONE));
+    }
+
+    /**
+     * Constructs a new JournalStorageImpl.
+     *
+     * @param directory     The directory holding the snapshot and journal files.
+     *                      It is created if it does not exist.
+     * @param compactEvery   The number of journal records after which a snapshot
+     *                       is taken.
+     * @param durabilityMode How hard saves try to reach the disk.
+     * @param legacyStorage  The storage from which a game is migrated if no
+     *                       snapshot exists, or null.
+     */
+    public JournalStorageImpl(File directory, int compactEvery, DurabilityMode durabilityMode,
+            IStorage legacyStorage) {
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        this.snapshotFile = new File(directory, "snapshot.bin");
+        this.journalFile = new File(directory, "journal.bin");
+        this.compactEvery = compactEvery;
+        this.legacyStorage = legacyStorage;
+        this.writer = new AtomicFileWriter(durabilityMode, AtomicFileWriter.DEFAULT_GROUP_COMMIT_MILLIS);
+    }
+
+    /**
+     * Returns true: a move appends one record to the journal.
+     *
+     * @return Always true.
+     */
+    @Override
+    public boolean savesIncrementally() {
+        return true;
+    }
+
+    /**
+     * Saves a game. A game with different given tiles than the previous one is
+     * written as a new snapshot; otherwise only the changed cells are appended to
+     * the journal.
+     *
+     * @param game The current state of the Sudoku game to be saved.
+     * @throws IOException If an I/O error occurs while saving the game data.
+     */
+    @Override
+    public synchronized void updateGameData(SudokuGame game) throws IOException {
+        loadIfNeeded();
+        try {
+            if (currentGame == null || !currentGame.getBoard().hasSameDisabledTiles(game.getBoard())) {
+                writeSnapshot(game);
+                return;
+            }
+
+            Board previous = currentGame.getBoard();
+            Board next = game.getBoard();
+            for (int xIndex = 0; xIndex < next.getSize(); xIndex++) {
+                for (int yIndex = 0; yIndex < next.getSize(); yIndex++) {
+                    int oldValue = previous.getValue(xIndex, yIndex);
+                    int newValue = next.getValue(xIndex, yIndex);
+                    if (oldValue != newValue) {
+                        int[] move = { xIndex, yIndex, oldValue, newValue };
+                        appendRecord(move, game, KIND_MOVE);
+                        undoMoves.push(move);
+                        redoMoves.clear();
+                    }
+                }
+            }
+            currentGame = game;
+            compactIfNeeded();
+        } catch (IOException e) {
+            throw new IOException("Unable to access Game Data", e);
+        }
+    }
+
+    /**
+     * Retrieves the game, loading the snapshot and replaying the journal on the
+     * first call.
+     *
+     * @return The saved state of the Sudoku game.
+     * @throws FileNotFoundException If no game has been saved.
+     * @throws IOException           If the snapshot cannot be read, in which case
+     *                               it is moved aside.
+     */
+    @Override
+    public synchronized SudokuGame getGameData() throws IOException {
+        loadIfNeeded();
+        if (currentGame == null)
+            throw new FileNotFoundException("File Not Found");
+        return currentGame;
+    }
+
+    /**
+     * Forces the snapshot and journal writes made since the last group commit to
+     * disk.
+     *
+     * @throws IOException If an I/O error occurs while writing the journal.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        writer.sync();
+    }
+
+    /**
+     * Forces every pending write to disk, stops the group commit timer and closes
+     * the journal.
+     *
+     * @throws IOException If an I/O error occurs while writing the journal.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+        if (journal != null)
+            journal.close();
+        if (legacyStorage != null)
+            legacyStorage.close();
+    }
+
+    /**
+     * Reverts the most recent move which has not been undone, and records the
+     * reversal in the journal.
+     *
+     * @return The game after the reversal, or null if there is nothing to undo.
+     * @throws IOException If an I/O error occurs while writing the journal.
+     */
+    @Override
+    public synchronized SudokuGame undo() throws IOException {
+        loadIfNeeded();
+        if (undoMoves.isEmpty())
+            return null;
+        int[] move = undoMoves.pop();
+        currentGame = applyMove(currentGame, move[0], move[1], move[2]);
+        appendRecord(new int[] { move[0], move[1], move[3], move[2] }, currentGame, KIND_UNDO);
+        redoMoves.push(move);
+        compactIfNeeded();
+        return currentGame;
+    }
+
+    /**
+     * Reapplies the most recently undone move, and records it in the journal.
+     *
+     * @return The game after the move, or null if there is nothing to redo.
+     * @throws IOException If an I/O error occurs while writing the journal.
+     */
+    @Override
+    public synchronized SudokuGame redo() throws IOException {
+        loadIfNeeded();
+        if (redoMoves.isEmpty())
+            return null;
+        int[] move = redoMoves.pop();
+        currentGame = applyMove(currentGame, move[0], move[1], move[3]);
+        appendRecord(move, currentGame, KIND_REDO);
+        undoMoves.push(move);
+        compactIfNeeded();
+        return currentGame;
+    }
+
+    /**
+     * Loads the snapshot and replays the journal, unless this was already done.
+     *
+     * @throws IOException If the snapshot cannot be read, after moving it and its
+     *                     journal aside.
+     */
+    private void loadIfNeeded() throws IOException {
+        if (journal != null)
+            return;
+
+        if (snapshotFile.exists()) {
+            long start = System.nanoTime();
+            snapshotBuffer.clear();
+            try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+                while (snapshotBuffer.hasRemaining() && channel.read(snapshotBuffer) >= 0) {
+                    // keep reading until the record is complete or the file ends
+                }
+            }
+            snapshotBuffer.flip();
+            StorageMetrics.recordRead(start, snapshotBuffer.remaining());
+            try {
+                currentGame = GameDataCodec.decode(snapshotBuffer);
+            } catch (IOException e) {
+                File copy = AtomicFileWriter.quarantine(snapshotFile);
+                if (journalFile.exists())
+                    AtomicFileWriter.quarantine(journalFile);
+                throw new IOException("Game Data is corrupted, it was kept as " + copy, e);
+            }
+            // the checksum is the last field of the record
+            snapshotChecksum = snapshotBuffer.getInt(snapshotBuffer.position() - 4);
+        }
+
+        journal = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        if (currentGame == null) {
+            journal.truncate(0);
+            journal.position(0);
+            if (legacyStorage != null) {
+                try {
+                    writeSnapshot(legacyStorage.getGameData());
+                } catch (IOException e) {
+                    // nothing to migrate
+                }
+            }
+            return;
+        }
+        replayJournal();
+    }
+
+    /**
+     * Applies every complete record of the journal to the snapshot, rebuilding the
+     * undo history, and drops any partially written record at the end. A journal
+     * whose header does not match the snapshot (because a crash happened between
+     * replacing the snapshot and emptying the journal) is dropped entirely.
+     *
+     * @throws IOException If the journal cannot be read.
+     */
+    private void replayJournal() throws IOException {
+        long start = System.nanoTime();
+        long completeRecords = journal.size() / RECORD_SIZE;
+        ByteBuffer records = ByteBuffer.allocate((int) (completeRecords * RECORD_SIZE));
+        journal.position(0);
+        while (records.hasRemaining() && journal.read(records) >= 0) {
+            // keep reading until every complete record has been read
+        }
+        records.flip();
+        StorageMetrics.recordRead(start, records.remaining());
+
+        journalRecords = 0;
+        if (records.remaining() < RECORD_SIZE || records.get(5) != KIND_SNAPSHOT
+                || records.getLong(8) != snapshotChecksum) {
+            journal.truncate(0);
+            journal.position(0);
+            writeHeader();
+            return;
+        }
+        records.position(RECORD_SIZE);
+
+        int[][] gridState = currentGame.getCopyOfGridState();
+        boolean[][] disabledTiles = currentGame.getCopyOfDisabledTiles();
+        int size = gridState.length;
+        while (records.remaining() >= RECORD_SIZE) {
+            int x = records.get();
+            int y = records.get();
+            int oldValue = records.get();
+            int newValue = records.get();
+            records.get(); // state, recomputed when applying the move
+            byte kind = records.get();
+            records.getShort();
+            records.getLong();
+
+            if (x < 0 || x >= size || y < 0 || y >= size || newValue < 0
+                    || newValue > size || disabledTiles[x][y] || gridState[x][y] != oldValue)
+                break;
+
+            gridState[x][y] = newValue;
+            int[] move = { x, y, oldValue, newValue };
+            if (kind == KIND_UNDO) {
+                // the record holds the reversal, the history holds the original move
+                redoMoves.push(undoMoves.isEmpty() ? new int[] { x, y, newValue, oldValue } : undoMoves.pop());
+            } else if (kind == KIND_REDO) {
+                undoMoves.push(redoMoves.isEmpty() ? move : redoMoves.pop());
+            } else {
+                undoMoves.push(move);
+                redoMoves.clear();
+            }
+            journalRecords++;
+        }
+
+        currentGame = new SudokuGame(GameLogic.checkForCompletion(gridState), gridState, disabledTiles);
+
+        // drop a record torn by a crash, or anything after an invalid record
+        journal.truncate((long) (journalRecords + 1) * RECORD_SIZE);
+        journal.position(journal.size());
+    }
+
+    /**
+     * Appends a record to the journal.
+     *
+     * @param move The move {x, y, old, new}.
+     * @param game The game after the move.
+     * @param kind The record kind.
+     * @throws IOException If an I/O error occurs while writing the journal.
+     */
+    private void appendRecord(int[] move, SudokuGame game, byte kind) throws IOException {
+        long start = System.nanoTime();
+        recordBuffer.clear();
+        recordBuffer.put((byte) move[0]);
+        recordBuffer.put((byte) move[1]);
+        recordBuffer.put((byte) move[2]);
+        recordBuffer.put((byte) move[3]);
+        recordBuffer.put((byte) game.getGameState().ordinal());
+        recordBuffer.put(kind);
+        recordBuffer.putShort((short) 0);
+        recordBuffer.putLong(System.currentTimeMillis());
+        recordBuffer.flip();
+        while (recordBuffer.hasRemaining()) {
+            journal.write(recordBuffer);
+        }
+        writer.written(journal);
+        journalRecords++;
+        StorageMetrics.recordWrite(start, RECORD_SIZE);
+    }
+
+    /**
+     * Writes the header record, linking the journal to the current snapshot, at
+     * the start of the empty journal.
+     *
+     * @throws IOException If an I/O error occurs while writing the journal.
+     */
+    private void writeHeader() throws IOException {
+        long start = System.nanoTime();
+        recordBuffer.clear();
+        recordBuffer.putInt(0);
+        recordBuffer.put((byte) 0);
+        recordBuffer.put(KIND_SNAPSHOT);
+        recordBuffer.putShort((short) 0);
+        recordBuffer.putLong(snapshotChecksum);
+        recordBuffer.flip();
+        while (recordBuffer.hasRemaining()) {
+            journal.write(recordBuffer);
+        }
+        writer.written(journal);
+        StorageMetrics.recordWrite(start, RECORD_SIZE);
+    }
+
+    /**
+     * Takes a new snapshot once the journal holds compactEvery records. The undo
+     * history is kept in memory, but does not survive a restart after compaction.
+     *
+     * @throws IOException If an I/O error occurs while writing the snapshot.
+     */
+    private void compactIfNeeded() throws IOException {
+        if (journalRecords >= compactEvery) {
+            Deque<int[]> undo = new ArrayDeque<>(undoMoves);
+            Deque<int[]> redo = new ArrayDeque<>(redoMoves);
+            writeSnapshot(currentGame);
+            undoMoves.addAll(undo);
+            redoMoves.addAll(redo);
+        }
+    }
+
+    /**
+     * Replaces the snapshot with a game and empties the journal and the undo
+     * history.
+     *
+     * @param game The game to write.
+     * @throws IOException If an I/O error occurs while writing the snapshot.
+     */
+    private void writeSnapshot(SudokuGame game) throws IOException {
+        snapshotBuffer.clear();
+        GameDataCodec.encode(game, snapshotBuffer);
+        snapshotChecksum = snapshotBuffer.getInt(snapshotBuffer.position() - 4);
+        snapshotBuffer.flip();
+        writer.write(snapshotFile.toPath(), snapshotBuffer);
+
+        journal.truncate(0);
+        journal.position(0);
+        writeHeader();
+        journalRecords = 0;
+        undoMoves.clear();
+        redoMoves.clear();
+        currentGame = game;
+    }
+
+    /**
+     * Returns a copy of a game with one cell changed and its state recomputed.
+     *
+     * @param game  The game to change.
+     * @param x     The x-coordinate of the cell.
+     * @param y     The y-coordinate of the cell.
+     * @param value The new value of the cell.
+     * @return The changed game.
+     */
+    private static SudokuGame applyMove(SudokuGame game, int x, int y, int value) {
+        Board board = game.getBoard().withValue(x, y, value);
+        return new SudokuGame(GameLogic.checkForCompletion(board), board);
+    }
+}
@@ -1,27 +1,73 @@
 package persistence;
 
+import constants.DurabilityMode;
 import problemdomain.SudokuGame;
 import problemdomain.IStorage;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 /**
  * The LocalStorageImpl class implements the IStorage interface and provides
  * methods for updating and retrieving Sudoku game data from a local file.
  *
- * The game data is stored in a file named "gamedata.txt" located in a directory
+ * The game data is stored in a file named "gamedata.bin" located in a directory
  * named "SudokuData" within the user's home directory.
  * If the "SudokuData" directory does not exist, it is created.
+ *
+ * The file holds a single 62 byte record in the format described by
+ * GameDataCodec, read and written through a reusable ByteBuffer. Games saved
+ * by earlier versions with Java serialization in "gamedata.txt" are still
+ * loaded, and are converted to the binary format on the next save.
+ *
+ * Saves replace the file atomically (see AtomicFileWriter), so a crash never
+ * leaves a half-written record, and reach the disk according to the
+ * DurabilityMode. A file which cannot be decoded is moved aside as
+ * "gamedata.bin.corrupt-<time>" instead of being overwritten by the next save.
  */
 public class LocalStorageImpl implements IStorage {
     private static final File GAME_DATA;
 
+    /**
+     * The file written by earlier versions using Java serialization.
+     */
+    private static final File LEGACY_GAME_DATA;
+
     static {
         File sudokuDataDir = new File(System.getProperty("user.home"), "SudokuData");
         if (!sudokuDataDir.exists()) {
             sudokuDataDir.mkdirs();
         }
-        GAME_DATA = new File(sudokuDataDir, "gamedata.txt");
+        GAME_DATA = new File(sudokuDataDir, "gamedata.bin");
+        LEGACY_GAME_DATA = new File(sudokuDataDir, "gamedata.txt");
+    }
+
+    /**
+     * The buffer used to encode and decode the record, reused by every call.
+     */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(GameDataCodec.MAX_RECORD_SIZE);
+
+    /**
+     * Writes the file atomically and forces it to disk.
+     */
+    private final AtomicFileWriter writer;
+
+    /**
+     * Constructs a new LocalStorageImpl which forces every save to disk.
+     */
+    public LocalStorageImpl() {
+        this(DurabilityMode.PER_WRITE_FSYNC);
+    }
+
+    /**
+     * Constructs a new LocalStorageImpl.
+     *
+     * @param durabilityMode How hard saves try to reach the disk.
+     */
+    public LocalStorageImpl(DurabilityMode durabilityMode) {
+        this.writer = new AtomicFileWriter(durabilityMode, AtomicFileWriter.DEFAULT_GROUP_COMMIT_MILLIS);
     }
 
     /**
@@ -32,9 +78,13 @@ public class LocalStorageImpl implements IStorage {
      * @throws IOException If an I/O error occurs while saving the game data.
      */
     @Override
-    public void updateGameData(SudokuGame game) throws IOException {
-        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(new FileOutputStream(GAME_DATA))) {
-            objectOutputStream.writeObject(game);
+    public synchronized void updateGameData(SudokuGame game) throws IOException {
+        buffer.clear();
+        GameDataCodec.encode(game, buffer);
+        buffer.flip();
+
+        try {
+            writer.write(GAME_DATA.toPath(), buffer);
         } catch (IOException e) {
             throw new IOException("Unable to access Game Data", e);
         }
@@ -45,14 +95,68 @@ public class LocalStorageImpl implements IStorage {
      * file.
      *
      * @return The saved state of the Sudoku game.
-     * @throws IOException If an I/O error occurs while loading the game data.
+     * @throws FileNotFoundException If no game has been saved.
+     * @throws IOException           If an I/O error occurs while loading the game
+     *                               data, or the data is not a valid record, in
+     *                               which case the file is moved aside.
+     */
+    @Override
+    public synchronized SudokuGame getGameData() throws IOException {
+        if (!GAME_DATA.exists()) {
+            if (LEGACY_GAME_DATA.exists())
+                return getLegacyGameData();
+            throw new FileNotFoundException("File Not Found");
+        }
+
+        long start = System.nanoTime();
+        buffer.clear();
+        try (FileChannel channel = FileChannel.open(GAME_DATA.toPath(), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading until the record is complete or the file ends
+            }
+        }
+        buffer.flip();
+        StorageMetrics.recordRead(start, buffer.remaining());
+        try {
+            return GameDataCodec.decode(buffer);
+        } catch (IOException e) {
+            File copy = AtomicFileWriter.quarantine(GAME_DATA);
+            throw new IOException("Game Data is corrupted, it was kept as " + copy, e);
+        }
+    }
+
+    /**
+     * Forces the saves made since the last group commit to disk.
+     *
+     * @throws IOException If an I/O error occurs while writing the game data.
      */
     @Override
-    public SudokuGame getGameData() throws IOException {
-        try (ObjectInputStream objectInputStream = new ObjectInputStream(new FileInputStream(GAME_DATA))) {
+    public synchronized void flush() throws IOException {
+        writer.sync();
+    }
+
+    /**
+     * Forces the saves made since the last group commit to disk and stops the
+     * group commit timer.
+     *
+     * @throws IOException If an I/O error occurs while writing the game data.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * Loads a game saved by an earlier version using Java serialization.
+     *
+     * @return The saved state of the Sudoku game.
+     * @throws IOException If an I/O error occurs while loading the game data.
+     */
+    private SudokuGame getLegacyGameData() throws IOException {
+        try (ObjectInputStream objectInputStream = new ObjectInputStream(new FileInputStream(LEGACY_GAME_DATA))) {
             return (SudokuGame) objectInputStream.readObject();
         } catch (ClassNotFoundException e) {
             throw new IOException("File Not Found", e);
         }
     }
-}
\ No newline at end of file
+}
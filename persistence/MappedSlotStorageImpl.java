@@ -0,0 +1,403 @@
+package persistence;
+
+import problemdomain.BoardGeometry;
+import problemdomain.ISlotStorage;
+import problemdomain.SudokuGame;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+
+/**
+ * The MappedSlotStorageImpl class implements the ISlotStorage interface with a
+ * single memory-mapped file of fixed-size slot records.
+ *
+ * The file starts with a 16 byte header (magic number, version and record
+ * capacity), followed by records of 160 bytes:
+ *
+ * - 1 byte: 1 if the record is in use, otherwise 0
+ * - 1 byte: the length of the slot id in bytes
+ * - 1 byte: the active copy of the game, 0 or 1
+ * - 1 byte: reserved
+ * - 32 bytes: the slot id in UTF-8, zero padded
+ * - 2 x 62 bytes: two copies of the game, in the format described by
+ *   GameDataCodec
+ *
+ * An in-memory index from slot id to record number is built once, when the
+ * file is opened, so loading or saving a slot is a lookup and a 62 byte decode
+ * or encode in the mapped memory, without opening a file. When every record is
+ * in use, the file is doubled in size and mapped again.
+ *
+ * A save writes the inactive copy, forces the record to disk, and only then
+ * flips the active copy byte (and, for a new slot, the in use byte), which is
+ * forced in turn. A record may span two pages of the file, so a crash can tear
+ * the copy being written, but never the active one: after a crash a slot holds
+ * either the game it held before the save or the saved one.
+ *
+ * Records have a fixed size, so only games on the standard 9x9 board can be
+ * stored in a slot.
+ */
+public class MappedSlotStorageImpl implements ISlotStorage {
+
+    /**
+     * The id of the slot selected by default.
+     */
+    public static final String DEFAULT_SLOT = "default";
+
+    /**
+     * The longest slot id in UTF-8 bytes.
+     */
+    public static final int MAX_ID_BYTES = 32;
+
+    /**
+     * The number of records of a new file.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * The magic number at the start of the file: "SDKS" in ASCII.
+     */
+    private static final int MAGIC = 0x53444B53;
+
+    /**
+     * The version of the file layout.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * The size of the file header in bytes.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * The offset of the active copy byte within a record.
+     */
+    private static final int ACTIVE_OFFSET = 2;
+
+    /**
+     * The offset of the slot id within a record.
+     */
+    private static final int ID_OFFSET = 4;
+
+    /**
+     * The offset of the first copy of the game within a record.
+     */
+    private static final int GAME_OFFSET = ID_OFFSET + MAX_ID_BYTES;
+
+    /**
+     * The size of a record in bytes.
+     */
+    static final int RECORD_SIZE = GAME_OFFSET + 2 * GameDataCodec.RECORD_SIZE;
+
+    /**
+     * The open slot file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The mapping of the whole slot file.
+     */
+    private MappedByteBuffer mapped;
+
+    /**
+     * The number of records the file can hold.
+     */
+    private int capacity;
+
+    /**
+     * The record number of every slot in use, by slot id.
+     */
+    private final Map<String, Integer> index = new HashMap<>();
+
+    /**
+     * The record numbers which are not in use, lowest first.
+     */
+    private final Queue<Integer> freeRecords = new PriorityQueue<>();
+
+    /**
+     * The slot used by updateGameData and getGameData.
+     */
+    private volatile String selectedSlot = DEFAULT_SLOT;
+
+    /**
+     * Constructs a new MappedSlotStorageImpl using the file "slots.bin" in the
+     * "SudokuData" directory within the user's home directory.
+     *
+     * @throws IOException If the file cannot be opened or is not a slot file.
+     */
+    public MappedSlotStorageImpl() throws IOException {
+        this(new File(new File(System.getProperty("user.home"), "SudokuData"), "slots.bin"), DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new MappedSlotStorageImpl, creating the file if it does not
+     * exist.
+     *
+     * @param file            The slot file.
+     * @param initialCapacity The number of records of a new file.
+     * @throws IOException If the file cannot be opened or is not a slot file.
+     */
+    public MappedSlotStorageImpl(File file, int initialCapacity) throws IOException {
+        if (initialCapacity < 1)
+            throw new IllegalArgumentException("Invalid slot capacity");
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        if (channel.size() == 0) {
+            map(initialCapacity);
+            mapped.putInt(0, MAGIC);
+            mapped.putInt(4, VERSION);
+        } else {
+            if (channel.size() < HEADER_SIZE)
+                throw new IOException("Slot file is truncated");
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+                throw new IOException("Slot file has an unknown format");
+            int storedCapacity = header.getInt(8);
+            if (storedCapacity < 1 || channel.size() < HEADER_SIZE + (long) storedCapacity * RECORD_SIZE)
+                throw new IOException("Slot file is truncated");
+            map(storedCapacity);
+        }
+        buildIndex();
+    }
+
+    /**
+     * Returns the ids of all slots holding a game.
+     *
+     * @return The slot ids, in no particular order.
+     */
+    @Override
+    public synchronized List<String> listSlots() {
+        return new ArrayList<>(index.keySet());
+    }
+
+    /**
+     * Retrieves the game stored in a slot.
+     *
+     * @param slotId The id of the slot.
+     * @return The stored game.
+     * @throws FileNotFoundException If the slot is empty.
+     * @throws IOException           If the record of the slot is not valid.
+     */
+    @Override
+    public synchronized SudokuGame loadSlot(String slotId) throws IOException {
+        Integer record = index.get(slotId);
+        if (record == null)
+            throw new FileNotFoundException("File Not Found");
+
+        long start = System.nanoTime();
+        int offset = recordOffset(record);
+        ByteBuffer game = mapped.duplicate();
+        game.position(copyOffset(offset, mapped.get(offset + ACTIVE_OFFSET)));
+        SudokuGame loaded = GameDataCodec.decode(game);
+        StorageMetrics.recordRead(start, GameDataCodec.RECORD_SIZE);
+        return loaded;
+    }
+
+    /**
+     * Stores a game in a slot, taking a free record (and growing the file if there
+     * is none) if the slot is new. The game is written to the inactive copy of the
+     * record, which becomes active once it is on disk, as described in the class
+     * comment.
+     *
+     * @param slotId The id of the slot.
+     * @param game   The game to be stored.
+     * @throws IOException If the game is not on a 9x9 board or the file cannot be
+     *                     grown.
+     */
+    @Override
+    public synchronized void saveSlot(String slotId, SudokuGame game) throws IOException {
+        byte[] id = encodeId(slotId);
+        if (game.getBoard().getGeometry() != BoardGeometry.STANDARD)
+            throw new IOException("Only 9x9 games can be stored in a slot");
+        Integer existing = index.get(slotId);
+        int record;
+        if (existing != null) {
+            record = existing;
+        } else {
+            if (freeRecords.isEmpty())
+                map(capacity * 2);
+            record = freeRecords.poll();
+        }
+
+        long start = System.nanoTime();
+        int offset = recordOffset(record);
+        // a new record starts with copy 1 active, so its first game goes to copy 0
+        int target = existing != null ? 1 - mapped.get(offset + ACTIVE_OFFSET) : 0;
+        ByteBuffer buffer = mapped.duplicate();
+        buffer.position(copyOffset(offset, target));
+        GameDataCodec.encode(game, buffer);
+
+        if (existing == null) {
+            mapped.put(offset + 1, (byte) id.length);
+            buffer.position(offset + ID_OFFSET);
+            buffer.put(id);
+            for (int pad = id.length; pad < MAX_ID_BYTES; pad++) {
+                buffer.put((byte) 0);
+            }
+        }
+        mapped.force(offset, RECORD_SIZE);
+
+        mapped.put(offset + ACTIVE_OFFSET, (byte) target);
+        if (existing == null) {
+            mapped.put(offset, (byte) 1);
+            index.put(slotId, record);
+        }
+        mapped.force(offset, RECORD_SIZE);
+        StorageMetrics.recordWrite(start, GameDataCodec.RECORD_SIZE);
+    }
+
+    /**
+     * Deletes the game stored in a slot, freeing its record.
+     *
+     * @param slotId The id of the slot.
+     * @return True if the slot held a game.
+     */
+    @Override
+    public synchronized boolean deleteSlot(String slotId) {
+        Integer record = index.remove(slotId);
+        if (record == null)
+            return false;
+        mapped.put(recordOffset(record), (byte) 0);
+        freeRecords.add(record);
+        return true;
+    }
+
+    /**
+     * Selects the slot used by updateGameData and getGameData.
+     *
+     * @param slotId The id of the slot.
+     */
+    @Override
+    public void selectSlot(String slotId) {
+        encodeId(slotId);
+        selectedSlot = slotId;
+    }
+
+    /**
+     * Returns the id of the selected slot.
+     *
+     * @return The id of the slot used by updateGameData and getGameData.
+     */
+    @Override
+    public String getSelectedSlot() {
+        return selectedSlot;
+    }
+
+    /**
+     * Writes the changed parts of the mapped file to disk.
+     */
+    @Override
+    public synchronized void flush() {
+        mapped.force();
+    }
+
+    /**
+     * Writes the mapped file to disk and closes it.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        mapped.force();
+        channel.close();
+    }
+
+    /**
+     * Maps the file with room for the given number of records, growing it if
+     * needed, and records the new capacity in the header. Records added by growing
+     * are zero, which marks them as not in use.
+     *
+     * @param newCapacity The number of records.
+     * @throws IOException If the file cannot be mapped.
+     */
+    private void map(int newCapacity) throws IOException {
+        if (mapped != null)
+            mapped.force();
+        long size = HEADER_SIZE + (long) newCapacity * RECORD_SIZE;
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("Slot file is full");
+
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        for (int record = capacity; record < newCapacity; record++) {
+            freeRecords.add(record);
+        }
+        capacity = newCapacity;
+        mapped.putInt(8, capacity);
+    }
+
+    /**
+     * Scans every record of the file and indexes those in use.
+     *
+     * @throws IOException If a record in use has an invalid id.
+     */
+    private void buildIndex() throws IOException {
+        freeRecords.clear();
+        for (int record = 0; record < capacity; record++) {
+            int offset = recordOffset(record);
+            if (mapped.get(offset) == 0) {
+                freeRecords.add(record);
+                continue;
+            }
+
+            int length = mapped.get(offset + 1);
+            if (length < 1 || length > MAX_ID_BYTES)
+                throw new IOException("Slot file has an invalid slot id");
+            if (mapped.get(offset + ACTIVE_OFFSET) >>> 1 != 0)
+                throw new IOException("Slot file has an invalid active copy");
+            byte[] id = new byte[length];
+            mapped.get(offset + ID_OFFSET, id);
+            index.put(new String(id, StandardCharsets.UTF_8), record);
+        }
+    }
+
+    /**
+     * Returns the position of a record within the file.
+     *
+     * @param record The record number.
+     * @return The offset of the record in bytes.
+     */
+    private static int recordOffset(int record) {
+        return HEADER_SIZE + record * RECORD_SIZE;
+    }
+
+    /**
+     * Returns the position of a copy of the game within the file.
+     *
+     * @param offset The offset of the record in bytes.
+     * @param copy   The copy, 0 or 1.
+     * @return The offset of the copy in bytes.
+     */
+    private static int copyOffset(int offset, int copy) {
+        return offset + GAME_OFFSET + copy * GameDataCodec.RECORD_SIZE;
+    }
+
+    /**
+     * Encodes a slot id in UTF-8, checking its length.
+     *
+     * @param slotId The id of the slot.
+     * @return The encoded id.
+     */
+    private static byte[] encodeId(String slotId) {
+        byte[] id = slotId.getBytes(StandardCharsets.UTF_8);
+        if (id.length < 1 || id.length > MAX_ID_BYTES)
+            throw new IllegalArgumentException("Slot id must be 1 to " + MAX_ID_BYTES + " bytes long");
+        return id;
+    }
+}
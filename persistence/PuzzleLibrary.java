@@ -0,0 +1,651 @@
+package persistence;
+
+import constants.Difficulty;
+import constants.GameState;
+import constants.SolvingTechnique;
+import problemdomain.BoardGeometry;
+import problemdomain.IPuzzleLibrary;
+import problemdomain.SudokuGame;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The PuzzleLibrary class stores generated 9x9 puzzles for serving them later,
+ * and finds them by difficulty level, clue count and grade.
+ *
+ * Puzzles are appended to a packed file of 81 byte records (the value of every
+ * cell in typewriter order, 0 for an empty cell) and never rewritten, so a
+ * puzzle is identified by its record number. A second file holds 4 bytes per
+ * record: the Difficulty ordinal, the clue count, the SolvingTechnique ordinal
+ * of the grade, and 1 once the puzzle has been served. Both files start with a
+ * 16 byte header (magic number and version). A record only partly appended
+ * before a crash is cut off when the library is opened.
+ *
+ * A library is opened by one process at a time: the puzzle file is locked
+ * exclusively while it is open, so that the game starting while
+ * PuzzleGeneratorCli appends to the library cannot cut off a record the
+ * generator is still writing.
+ *
+ * Both files are read through memory mappings of 2^20 records each, so the
+ * library is not limited by the 2 GB size of a single mapping and scales to
+ * tens of millions of puzzles. The index of each of the three keys is built the
+ * first time it is queried, by scanning the 4 byte records, and is then kept up
+ * to date as puzzles are added. Serving the next unplayed puzzle of a difficulty
+ * level walks its index from a cursor, so it takes constant time on average.
+ *
+ * All methods are synchronized, so a library can be shared by several threads.
+ */
+public class PuzzleLibrary implements IPuzzleLibrary, Closeable {
+
+    /**
+     * The size of a puzzle record in bytes.
+     */
+    public static final int RECORD_SIZE = 81;
+
+    /**
+     * The magic number at the start of the puzzle file: "SDKL" in ASCII.
+     */
+    private static final int MAGIC = 0x53444B4C;
+
+    /**
+     * The magic number at the start of the metadata file: "SDKM" in ASCII.
+     */
+    private static final int METADATA_MAGIC = 0x53444B4D;
+
+    /**
+     * The version of the file layout.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the header of both files in bytes.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * The size of a metadata record in bytes.
+     */
+    private static final int METADATA_SIZE = 4;
+
+    /**
+     * The offset within a metadata record of the byte marking a served puzzle.
+     */
+    private static final int PLAYED_OFFSET = 3;
+
+    /**
+     * The log2 of the number of records in a mapping.
+     */
+    private static final int SEGMENT_BITS = 20;
+
+    /**
+     * The index keyed by Difficulty ordinal; also the offset of the key within a
+     * metadata record.
+     */
+    private static final int BY_DIFFICULTY = 0;
+
+    /**
+     * The index keyed by clue count.
+     */
+    private static final int BY_CLUE_COUNT = 1;
+
+    /**
+     * The index keyed by SolvingTechnique ordinal.
+     */
+    private static final int BY_GRADE = 2;
+
+    /**
+     * The number of keys of each index.
+     */
+    private static final int[] KEY_COUNTS = { Difficulty.values().length, RECORD_SIZE + 1,
+            SolvingTechnique.values().length };
+
+    /**
+     * The file of puzzle records.
+     */
+    private final SegmentedFile puzzles;
+
+    /**
+     * The file of metadata records.
+     */
+    private final SegmentedFile metadata;
+
+    /**
+     * The exclusive lock on the puzzle file, released when it is closed.
+     */
+    private final FileLock lock;
+
+    /**
+     * The number of records in the library.
+     */
+    private int size;
+
+    /**
+     * The record numbers of every key of each index, in ascending order, or null
+     * for an index not built yet.
+     */
+    private final RecordList[][] indexes = new RecordList[KEY_COUNTS.length][];
+
+    /**
+     * The position within the difficulty index from which the next unplayed
+     * puzzle of each difficulty level is searched.
+     */
+    private final int[] unplayedCursors = new int[Difficulty.values().length];
+
+    /**
+     * Opens the library "puzzles.lib" in the "SudokuData" directory within the
+     * user's home directory.
+     *
+     * @throws IOException If the files cannot be opened or are not library files.
+     */
+    public PuzzleLibrary() throws IOException {
+        this(new File(new File(System.getProperty("user.home"), "SudokuData"), "puzzles.lib"));
+    }
+
+    /**
+     * Opens a library, creating its files if they do not exist. The metadata is
+     * kept next to the puzzle file, in a file with the suffix ".meta".
+     *
+     * @param file The puzzle file.
+     * @throws IOException If the files cannot be opened, are not library files or
+     *                     are open in another process or library.
+     */
+    public PuzzleLibrary(File file) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        puzzles = new SegmentedFile(file.toPath(), MAGIC, RECORD_SIZE, FileChannel.MapMode.READ_ONLY);
+        try {
+            lock = puzzles.channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            puzzles.channel.close();
+            throw new IOException("Puzzle library " + file + " is already open", e);
+        }
+        if (lock == null) {
+            puzzles.channel.close();
+            throw new IOException("Puzzle library " + file + " is in use by another process");
+        }
+        try {
+            metadata = new SegmentedFile(Paths.get(file.getPath() + ".meta"), METADATA_MAGIC, METADATA_SIZE,
+                    FileChannel.MapMode.READ_WRITE);
+        } catch (IOException e) {
+            puzzles.channel.close();
+            throw e;
+        }
+
+        size = (int) Math.min(puzzles.records(), metadata.records());
+        puzzles.truncate(size);
+        metadata.truncate(size);
+    }
+
+    /**
+     * Appends a puzzle to the library.
+     *
+     * @param puzzle     The puzzle, indexed by x then y, which must be 9x9.
+     * @param difficulty The difficulty level the puzzle was generated for.
+     * @param grade      The hardest technique the puzzle needs.
+     * @return The record number of the puzzle.
+     * @throws IOException If the puzzle cannot be written.
+     */
+    public synchronized int add(int[][] puzzle, Difficulty difficulty, SolvingTechnique grade) throws IOException {
+        int boundary = BoardGeometry.STANDARD.getSize();
+        if (puzzle.length != boundary)
+            throw new IllegalArgumentException("Only 9x9 puzzles can be stored in the library");
+        if (size == Integer.MAX_VALUE)
+            throw new IOException("Puzzle library is full");
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        int clues = 0;
+        for (int y = 0; y < boundary; y++) {
+            for (int x = 0; x < boundary; x++) {
+                record.put((byte) puzzle[x][y]);
+                if (puzzle[x][y] != 0)
+                    clues++;
+            }
+        }
+        byte[] keys = { (byte) difficulty.ordinal(), (byte) clues, (byte) grade.ordinal(), 0 };
+
+        // the puzzle is written first, so a crash in between leaves a record without
+        // metadata, which is cut off when the library is opened again
+        record.flip();
+        puzzles.write(size, record);
+        metadata.write(size, ByteBuffer.wrap(keys));
+
+        int recordNumber = size++;
+        for (int index = 0; index < indexes.length; index++) {
+            if (indexes[index] != null)
+                list(index, keys[index]).add(recordNumber);
+        }
+        return recordNumber;
+    }
+
+    /**
+     * Returns the number of puzzles in the library.
+     *
+     * @return The number of puzzles.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Reads a puzzle.
+     *
+     * @param record The record number of the puzzle.
+     * @return The puzzle, indexed by x then y.
+     */
+    public synchronized int[][] getPuzzle(int record) {
+        checkRecord(record);
+        ByteBuffer segment = puzzles.segment(record, size);
+        int offset = puzzles.offset(record);
+        int boundary = BoardGeometry.STANDARD.getSize();
+        int[][] puzzle = new int[boundary][boundary];
+        for (int cell = 0; cell < RECORD_SIZE; cell++) {
+            puzzle[cell % boundary][cell / boundary] = segment.get(offset + cell);
+        }
+        return puzzle;
+    }
+
+    /**
+     * Returns the difficulty level a puzzle was generated for.
+     *
+     * @param record The record number of the puzzle.
+     * @return The difficulty level.
+     */
+    public synchronized Difficulty getDifficulty(int record) {
+        return Difficulty.values()[key(record, BY_DIFFICULTY)];
+    }
+
+    /**
+     * Returns the number of filled cells of a puzzle.
+     *
+     * @param record The record number of the puzzle.
+     * @return The clue count.
+     */
+    public synchronized int getClueCount(int record) {
+        return key(record, BY_CLUE_COUNT);
+    }
+
+    /**
+     * Returns the hardest technique a puzzle needs.
+     *
+     * @param record The record number of the puzzle.
+     * @return The grade.
+     */
+    public synchronized SolvingTechnique getGrade(int record) {
+        return SolvingTechnique.values()[key(record, BY_GRADE)];
+    }
+
+    /**
+     * Checks if a puzzle has been served by takeUnplayed.
+     *
+     * @param record The record number of the puzzle.
+     * @return true if the puzzle has been served, false otherwise.
+     */
+    public synchronized boolean isPlayed(int record) {
+        return key(record, PLAYED_OFFSET) != 0;
+    }
+
+    /**
+     * Finds the puzzles generated for a difficulty level.
+     *
+     * @param difficulty The difficulty level.
+     * @return The record numbers of the puzzles, in ascending order.
+     */
+    public synchronized int[] findByDifficulty(Difficulty difficulty) {
+        return find(BY_DIFFICULTY, difficulty.ordinal());
+    }
+
+    /**
+     * Finds the puzzles with a number of filled cells.
+     *
+     * @param clueCount The number of filled cells.
+     * @return The record numbers of the puzzles, in ascending order.
+     */
+    public synchronized int[] findByClueCount(int clueCount) {
+        if (clueCount < 0 || clueCount > RECORD_SIZE)
+            return new int[0];
+        return find(BY_CLUE_COUNT, clueCount);
+    }
+
+    /**
+     * Finds the puzzles whose hardest technique is a given one.
+     *
+     * @param grade The technique.
+     * @return The record numbers of the puzzles, in ascending order.
+     */
+    public synchronized int[] findByGrade(SolvingTechnique grade) {
+        return find(BY_GRADE, grade.ordinal());
+    }
+
+    /**
+     * Serves the oldest puzzle of a difficulty level which has not been served
+     * yet, marking it as played.
+     *
+     * @param difficulty The difficulty level.
+     * @return A new game of the puzzle, or null if every puzzle of the level has
+     *         been served.
+     */
+    @Override
+    public synchronized SudokuGame takeUnplayed(Difficulty difficulty) {
+        RecordList records = index(BY_DIFFICULTY)[difficulty.ordinal()];
+        if (records == null)
+            return null;
+
+        int position = unplayedCursors[difficulty.ordinal()];
+        while (position < records.size) {
+            int record = records.records[position++];
+            ByteBuffer segment = metadata.segment(record, size);
+            int offset = metadata.offset(record) + PLAYED_OFFSET;
+            if (segment.get(offset) != 0)
+                continue;
+
+            segment.put(offset, (byte) 1);
+            unplayedCursors[difficulty.ordinal()] = position;
+            int[][] puzzle = getPuzzle(record);
+            boolean[][] disabledTiles = new boolean[puzzle.length][puzzle.length];
+            for (int x = 0; x < puzzle.length; x++) {
+                for (int y = 0; y < puzzle.length; y++) {
+                    disabledTiles[x][y] = puzzle[x][y] != 0;
+                }
+            }
+            return new SudokuGame(GameState.NEW, puzzle, disabledTiles);
+        }
+        unplayedCursors[difficulty.ordinal()] = position;
+        return null;
+    }
+
+    /**
+     * Writes the appended puzzles and the played marks to disk.
+     *
+     * @throws IOException If the files cannot be forced to disk.
+     */
+    public synchronized void flush() throws IOException {
+        puzzles.force();
+        metadata.force();
+    }
+
+    /**
+     * Writes the library to disk and closes its files, releasing the lock.
+     *
+     * @throws IOException If the files cannot be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        puzzles.channel.close();
+        metadata.channel.close();
+    }
+
+    /**
+     * Returns a copy of the record numbers of one key of an index, building the
+     * index if needed.
+     *
+     * @param index The index.
+     * @param key   The key.
+     * @return The record numbers, in ascending order.
+     */
+    private int[] find(int index, int key) {
+        RecordList records = index(index)[key];
+        return records == null ? new int[0] : Arrays.copyOf(records.records, records.size);
+    }
+
+    /**
+     * Returns an index, building it by scanning every metadata record the first
+     * time.
+     *
+     * @param index The index.
+     * @return The record numbers of every key, null for a key without records.
+     */
+    private RecordList[] index(int index) {
+        if (indexes[index] == null) {
+            indexes[index] = new RecordList[KEY_COUNTS[index]];
+            for (int record = 0; record < size; record++) {
+                list(index, key(record, index)).add(record);
+            }
+        }
+        return indexes[index];
+    }
+
+    /**
+     * Returns the record numbers of one key of a built index, creating the list
+     * if needed.
+     *
+     * @param index The index.
+     * @param key   The key.
+     * @return The record numbers of the key.
+     */
+    private RecordList list(int index, int key) {
+        RecordList[] lists = indexes[index];
+        if (lists[key] == null)
+            lists[key] = new RecordList();
+        return lists[key];
+    }
+
+    /**
+     * Reads one byte of the metadata record of a puzzle.
+     *
+     * @param record The record number of the puzzle.
+     * @param offset The offset of the byte within the metadata record.
+     * @return The byte, as an unsigned value.
+     */
+    private int key(int record, int offset) {
+        checkRecord(record);
+        return metadata.segment(record, size).get(metadata.offset(record) + offset) & 0xFF;
+    }
+
+    /**
+     * Checks that a record number is in the library.
+     *
+     * @param record The record number.
+     */
+    private void checkRecord(int record) {
+        if (record < 0 || record >= size)
+            throw new IndexOutOfBoundsException("No puzzle " + record + " in a library of " + size);
+    }
+
+    /**
+     * The SegmentedFile class represents a file of fixed-size records after a
+     * header, read through mappings of 2^SEGMENT_BITS records each.
+     *
+     * A mapping covers only the records present when it was made, so it never
+     * extends the file; it is made again when a record appended since is read.
+     */
+    private static final class SegmentedFile {
+
+        /**
+         * The open file.
+         */
+        private final FileChannel channel;
+
+        /**
+         * The size of a record in bytes.
+         */
+        private final int recordSize;
+
+        /**
+         * The access mode of the mappings.
+         */
+        private final FileChannel.MapMode mode;
+
+        /**
+         * The mapping of every segment read so far, null for the others.
+         */
+        private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+        /**
+         * The number of records covered by the mapping of every segment.
+         */
+        private final List<Integer> mappedRecords = new ArrayList<>();
+
+        /**
+         * Opens a file, writing its header if it is new.
+         *
+         * @param path       The file.
+         * @param magic      The magic number of the file.
+         * @param recordSize The size of a record in bytes.
+         * @param mode       The access mode of the mappings.
+         * @throws IOException If the file cannot be opened or has another magic
+         *                     number or version.
+         */
+        private SegmentedFile(Path path, int magic, int recordSize, FileChannel.MapMode mode) throws IOException {
+            this.recordSize = recordSize;
+            this.mode = mode;
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(magic).putInt(VERSION).rewind();
+                write(header, 0);
+                return;
+            }
+            if (channel.size() < HEADER_SIZE) {
+                channel.close();
+                throw new IOException("Puzzle library " + path + " is truncated");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt(0) != magic || header.getInt(4) != VERSION) {
+                channel.close();
+                throw new IOException("Puzzle library " + path + " has an unknown format");
+            }
+        }
+
+        /**
+         * Returns the number of complete records in the file.
+         *
+         * @return The number of records.
+         * @throws IOException If the size of the file cannot be read.
+         */
+        private long records() throws IOException {
+            return (channel.size() - HEADER_SIZE) / recordSize;
+        }
+
+        /**
+         * Cuts the file after a number of records.
+         *
+         * @param records The number of records to keep.
+         * @throws IOException If the file cannot be truncated.
+         */
+        private void truncate(int records) throws IOException {
+            channel.truncate(HEADER_SIZE + (long) records * recordSize);
+        }
+
+        /**
+         * Writes a record at its place in the file.
+         *
+         * @param record The record number.
+         * @param buffer The content of the record.
+         * @throws IOException If the record cannot be written.
+         */
+        private void write(int record, ByteBuffer buffer) throws IOException {
+            write(buffer, HEADER_SIZE + (long) record * recordSize);
+        }
+
+        /**
+         * Writes a buffer at a position in the file.
+         *
+         * @param buffer   The content.
+         * @param position The position in the file.
+         * @throws IOException If the buffer cannot be written.
+         */
+        private void write(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+
+        /**
+         * Returns the mapping of the segment holding a record, mapping it if it is
+         * not mapped yet or does not cover the record.
+         *
+         * @param record  The record number.
+         * @param records The number of records in the file.
+         * @return The mapping of the segment.
+         */
+        private MappedByteBuffer segment(int record, int records) {
+            int segment = record >>> SEGMENT_BITS;
+            while (segments.size() <= segment) {
+                segments.add(null);
+                mappedRecords.add(0);
+            }
+            int first = segment << SEGMENT_BITS;
+            if (segments.get(segment) == null || record - first >= mappedRecords.get(segment)) {
+                int count = Math.min(1 << SEGMENT_BITS, records - first);
+                try {
+                    segments.set(segment, channel.map(mode, HEADER_SIZE + (long) first * recordSize,
+                            (long) count * recordSize));
+                } catch (IOException e) {
+                    throw new IllegalStateException("Puzzle library cannot be mapped", e);
+                }
+                mappedRecords.set(segment, count);
+            }
+            return segments.get(segment);
+        }
+
+        /**
+         * Returns the position of a record within the mapping of its segment.
+         *
+         * @param record The record number.
+         * @return The offset of the record in bytes.
+         */
+        private int offset(int record) {
+            return (record & ((1 << SEGMENT_BITS) - 1)) * recordSize;
+        }
+
+        /**
+         * Writes the appended records and the changes made through the mappings to
+         * disk.
+         *
+         * @throws IOException If the file cannot be forced to disk.
+         */
+        private void force() throws IOException {
+            if (mode == FileChannel.MapMode.READ_WRITE) {
+                for (MappedByteBuffer segment : segments) {
+                    if (segment != null)
+                        segment.force();
+                }
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * The RecordList class represents a growable list of record numbers.
+     */
+    private static final class RecordList {
+
+        /**
+         * The record numbers, followed by unused space.
+         */
+        private int[] records = new int[16];
+
+        /**
+         * The number of record numbers in the list.
+         */
+        private int size;
+
+        /**
+         * Appends a record number.
+         *
+         * @param record The record number.
+         */
+        private void add(int record) {
+            if (size == records.length)
+                records = Arrays.copyOf(records, size * 2);
+            records[size++] = record;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package persistence;
+
+import metrics.Counter;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+
+/**
+ * The StorageMetrics class holds the instruments shared by every storage
+ * implementation: the latency and size of reads and writes. Writes cover
+ * replaced files, journal appends and slot saves; reads cover loaded files,
+ * replayed journals and slot loads.
+ */
+final class StorageMetrics {
+
+    /**
+     * The time taken by every write, including forcing it to disk when the
+     * durability mode asks for it.
+     */
+    static final LatencyHistogram WRITE_TIME = Metrics.histogram("storage.write.nanos");
+
+    /**
+     * The number of bytes written.
+     */
+    static final Counter WRITE_BYTES = Metrics.counter("storage.write.bytes");
+
+    /**
+     * The time taken by every read.
+     */
+    static final LatencyHistogram READ_TIME = Metrics.histogram("storage.read.nanos");
+
+    /**
+     * The number of bytes read.
+     */
+    static final Counter READ_BYTES = Metrics.counter("storage.read.bytes");
+
+    /**
+     * StorageMetrics only holds constants and cannot be instantiated.
+     */
+    private StorageMetrics() {
+    }
+
+    /**
+     * Records a write.
+     *
+     * @param startNanos The time the write started, from System.nanoTime.
+     * @param bytes      The number of bytes written.
+     */
+    static void recordWrite(long startNanos, long bytes) {
+        WRITE_TIME.recordSince(startNanos);
+        WRITE_BYTES.add(bytes);
+    }
+
+    /**
+     * Records a read.
+     *
+     * @param startNanos The time the read started, from System.nanoTime.
+     * @param bytes      The number of bytes read.
+     */
+    static void recordRead(long startNanos, long bytes) {
+        READ_TIME.recordSince(startNanos);
+        READ_BYTES.add(bytes);
+    }
+}
@@ -0,0 +1,218 @@
+package problemdomain;
+
+import java.util.Arrays;
+
+/**
+ * The Board class is an immutable Sudoku board: the value of every cell and
+ * whether it is disabled (a given).
+ *
+ * The values are kept in a single byte array in typewriter order (index
+ * y * size + x) and the disabled tiles in a bitset of longs, so a 9x9 board is
+ * 81 bytes and two longs instead of 18 nested arrays. Reading a cell never
+ * copies anything, and changing one cell with withValue copies only the value
+ * bytes; the disabled tiles are shared between a board and every board derived
+ * from it.
+ *
+ * The int[][] and boolean[][] views used by the solvers and the generator are
+ * built on request by toGrid and toDisabledTiles.
+ */
+public final class Board {
+
+    /**
+     * The geometry of the board.
+     */
+    private final BoardGeometry geometry;
+
+    /**
+     * The value of every cell, in typewriter order; 0 means empty.
+     */
+    private final byte[] values;
+
+    /**
+     * The disabled tiles, one bit per cell in typewriter order.
+     */
+    private final long[] disabled;
+
+    /**
+     * Constructs a new Board. The arrays are owned by the board.
+     *
+     * @param geometry The geometry of the board.
+     * @param values   The value of every cell, in typewriter order.
+     * @param disabled The disabled tiles, one bit per cell.
+     */
+    private Board(BoardGeometry geometry, byte[] values, long[] disabled) {
+        this.geometry = geometry;
+        this.values = values;
+        this.disabled = disabled;
+    }
+
+    /**
+     * Creates a board from a grid and its disabled tiles. The arrays are copied.
+     *
+     * @param grid          The value of every cell, indexed [x][y].
+     * @param disabledTiles Whether every cell is disabled, indexed [x][y].
+     * @return The board.
+     * @throws IllegalArgumentException If the size of the grid is not supported.
+     */
+    public static Board of(int[][] grid, boolean[][] disabledTiles) {
+        BoardGeometry geometry = BoardGeometry.of(grid);
+        int size = geometry.getSize();
+        byte[] values = new byte[geometry.getCellCount()];
+        long[] disabled = new long[(values.length + 63) / 64];
+        for (int cell = 0; cell < values.length; cell++) {
+            int x = cell % size;
+            int y = cell / size;
+            values[cell] = (byte) grid[x][y];
+            if (disabledTiles[x][y])
+                disabled[cell >>> 6] |= 1L << cell;
+        }
+        return new Board(geometry, values, disabled);
+    }
+
+    /**
+     * Returns the geometry of the board.
+     *
+     * @return The geometry.
+     */
+    public BoardGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Returns the size of the board along one side.
+     *
+     * @return The board size, 9 for a standard board.
+     */
+    public int getSize() {
+        return geometry.getSize();
+    }
+
+    /**
+     * Returns the value of a cell.
+     *
+     * @param x The x-coordinate of the cell.
+     * @param y The y-coordinate of the cell.
+     * @return The value, 0 if the cell is empty.
+     */
+    public int getValue(int x, int y) {
+        return values[y * geometry.getSize() + x];
+    }
+
+    /**
+     * Returns the value of a cell given its typewriter index.
+     *
+     * @param cell The index of the cell (y * size + x).
+     * @return The value, 0 if the cell is empty.
+     */
+    public int getValue(int cell) {
+        return values[cell];
+    }
+
+    /**
+     * Checks if a cell is disabled, i.e. holds a given value.
+     *
+     * @param x The x-coordinate of the cell.
+     * @param y The y-coordinate of the cell.
+     * @return true if the cell is disabled.
+     */
+    public boolean isDisabled(int x, int y) {
+        return isDisabled(y * geometry.getSize() + x);
+    }
+
+    /**
+     * Checks if a cell is disabled given its typewriter index.
+     *
+     * @param cell The index of the cell (y * size + x).
+     * @return true if the cell is disabled.
+     */
+    public boolean isDisabled(int cell) {
+        return (disabled[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Returns a board with one cell changed. The disabled tiles are shared with
+     * this board.
+     *
+     * @param x     The x-coordinate of the cell.
+     * @param y     The y-coordinate of the cell.
+     * @param value The new value of the cell, 0 to empty it.
+     * @return This board if the cell already holds the value, otherwise a new
+     *         board.
+     */
+    public Board withValue(int x, int y, int value) {
+        int cell = y * geometry.getSize() + x;
+        if (values[cell] == value)
+            return this;
+        byte[] newValues = values.clone();
+        newValues[cell] = (byte) value;
+        return new Board(geometry, newValues, disabled);
+    }
+
+    /**
+     * Checks if this board has the same disabled tiles as another board. Boards
+     * derived from one another share their disabled tiles, in which case this is
+     * a reference comparison.
+     *
+     * @param other The other board.
+     * @return true if both boards have the same size and disabled tiles.
+     */
+    public boolean hasSameDisabledTiles(Board other) {
+        return geometry == other.geometry
+                && (disabled == other.disabled || Arrays.equals(disabled, other.disabled));
+    }
+
+    /**
+     * Returns a new grid holding the value of every cell.
+     *
+     * @return The grid, indexed [x][y].
+     */
+    public int[][] toGrid() {
+        int size = geometry.getSize();
+        int[][] grid = new int[size][size];
+        for (int cell = 0; cell < values.length; cell++) {
+            grid[cell % size][cell / size] = values[cell];
+        }
+        return grid;
+    }
+
+    /**
+     * Returns a new array holding whether every cell is disabled.
+     *
+     * @return The disabled tiles, indexed [x][y].
+     */
+    public boolean[][] toDisabledTiles() {
+        int size = geometry.getSize();
+        boolean[][] disabledTiles = new boolean[size][size];
+        for (int cell = 0; cell < values.length; cell++) {
+            disabledTiles[cell % size][cell / size] = isDisabled(cell);
+        }
+        return disabledTiles;
+    }
+
+    /**
+     * Checks if another object is a board with the same values and disabled
+     * tiles.
+     *
+     * @param other The other object.
+     * @return true if the boards are equal.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other)
+            return true;
+        if (!(other instanceof Board))
+            return false;
+        Board board = (Board) other;
+        return hasSameDisabledTiles(board) && Arrays.equals(values, board.values);
+    }
+
+    /**
+     * Returns a hash code of the values and disabled tiles.
+     *
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(values) + Arrays.hashCode(disabled);
+    }
+}
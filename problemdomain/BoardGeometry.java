@@ -0,0 +1,246 @@
+package problemdomain;
+
+/**
+ * The BoardGeometry class describes the shape of a Sudoku board with square
+ * boxes: a board with box size b has b x b boxes of b x b cells, so it is
+ * b * b cells wide and holds the values 1 to b * b.
+ *
+ * Box sizes 2 to 5 are supported (4x4, 9x9, 16x16 and 25x25 boards). There is
+ * one shared, immutable instance per box size, which also holds the precomputed
+ * units (rows, columns and boxes) and peers of every cell used by the solvers.
+ *
+ * Cells are numbered in typewriter order (left to right, top to bottom), i.e.
+ * the cell at grid[x][y] has index y * size + x. Value masks use bit `value`
+ * for each value, so every supported board fits its values in an int.
+ */
+public final class BoardGeometry {
+
+    /**
+     * The smallest supported box size.
+     */
+    public static final int MIN_BOX_SIZE = 2;
+
+    /**
+     * The largest supported box size.
+     */
+    public static final int MAX_BOX_SIZE = 5;
+
+    /**
+     * The geometry of every supported box size, indexed by box size.
+     */
+    private static final BoardGeometry[] GEOMETRIES = new BoardGeometry[MAX_BOX_SIZE + 1];
+
+    static {
+        for (int boxSize = MIN_BOX_SIZE; boxSize <= MAX_BOX_SIZE; boxSize++) {
+            GEOMETRIES[boxSize] = new BoardGeometry(boxSize);
+        }
+    }
+
+    /**
+     * The geometry of the standard 9x9 board.
+     */
+    public static final BoardGeometry STANDARD = of(3);
+
+    /**
+     * The size of a box along one side.
+     */
+    private final int boxSize;
+
+    /**
+     * The size of the board along one side, which is also the largest value.
+     */
+    private final int size;
+
+    /**
+     * The number of cells on the board.
+     */
+    private final int cellCount;
+
+    /**
+     * A mask with the bits of every value from 1 to size set.
+     */
+    private final int allValues;
+
+    /**
+     * The cell indexes of every row, column and box, in that order.
+     */
+    private final int[][] units;
+
+    /**
+     * The cell indexes of the peers (cells sharing a unit) of every cell.
+     */
+    private final int[][] peers;
+
+    /**
+     * Constructs a new BoardGeometry and precomputes its units and peers.
+     *
+     * @param boxSize The size of a box along one side.
+     */
+    private BoardGeometry(int boxSize) {
+        this.boxSize = boxSize;
+        this.size = boxSize * boxSize;
+        this.cellCount = size * size;
+        this.allValues = ((1 << (size + 1)) - 1) & ~1;
+
+        units = new int[size * 3][size];
+        for (int unit = 0; unit < size; unit++) {
+            for (int index = 0; index < size; index++) {
+                // row, column and box
+                units[unit][index] = unit * size + index;
+                units[size + unit][index] = index * size + unit;
+                int x = (unit % boxSize) * boxSize + index % boxSize;
+                int y = (unit / boxSize) * boxSize + index / boxSize;
+                units[size * 2 + unit][index] = y * size + x;
+            }
+        }
+
+        // a cell shares its row and column with 2 * (size - 1) cells, and its box
+        // with (boxSize - 1)^2 more
+        int peerCount = 2 * (size - 1) + (boxSize - 1) * (boxSize - 1);
+        peers = new int[cellCount][peerCount];
+        for (int cell = 0; cell < cellCount; cell++) {
+            int x = cell % size;
+            int y = cell / size;
+            int count = 0;
+            for (int other = 0; other < cellCount; other++) {
+                int otherX = other % size;
+                int otherY = other / size;
+                if (other != cell && (otherX == x || otherY == y || boxIndex(otherX, otherY) == boxIndex(x, y))) {
+                    peers[cell][count++] = other;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the geometry of the given box size.
+     *
+     * @param boxSize The size of a box along one side, from 2 to 5.
+     * @return The geometry.
+     * @throws IllegalArgumentException If the box size is not supported.
+     */
+    public static BoardGeometry of(int boxSize) {
+        if (boxSize < MIN_BOX_SIZE || boxSize > MAX_BOX_SIZE)
+            throw new IllegalArgumentException("Unsupported box size " + boxSize);
+        return GEOMETRIES[boxSize];
+    }
+
+    /**
+     * Returns the geometry of a board of the given size.
+     *
+     * @param size The size of the board along one side: 4, 9, 16 or 25.
+     * @return The geometry.
+     * @throws IllegalArgumentException If the size is not supported.
+     */
+    public static BoardGeometry forSize(int size) {
+        for (int boxSize = MIN_BOX_SIZE; boxSize <= MAX_BOX_SIZE; boxSize++) {
+            if (boxSize * boxSize == size)
+                return GEOMETRIES[boxSize];
+        }
+        throw new IllegalArgumentException("Unsupported board size " + size);
+    }
+
+    /**
+     * Returns the geometry of a board with the given number of cells.
+     *
+     * @param cellCount The number of cells: 16, 81, 256 or 625.
+     * @return The geometry, or null if no supported board has that many cells.
+     */
+    public static BoardGeometry forCellCount(int cellCount) {
+        for (int boxSize = MIN_BOX_SIZE; boxSize <= MAX_BOX_SIZE; boxSize++) {
+            if (GEOMETRIES[boxSize].cellCount == cellCount)
+                return GEOMETRIES[boxSize];
+        }
+        return null;
+    }
+
+    /**
+     * Returns the geometry of a grid, from its width.
+     *
+     * @param grid The grid, indexed [x][y].
+     * @return The geometry.
+     * @throws IllegalArgumentException If the size of the grid is not supported.
+     */
+    public static BoardGeometry of(int[][] grid) {
+        return forSize(grid.length);
+    }
+
+    /**
+     * Returns the size of a box along one side.
+     *
+     * @return The box size, from 2 to 5.
+     */
+    public int getBoxSize() {
+        return boxSize;
+    }
+
+    /**
+     * Returns the size of the board along one side, which is also the largest
+     * value.
+     *
+     * @return The board size.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of cells on the board.
+     *
+     * @return The number of cells.
+     */
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    /**
+     * Returns a mask with the bits of every value from 1 to size set.
+     *
+     * @return The mask of all values.
+     */
+    public int getAllValues() {
+        return allValues;
+    }
+
+    /**
+     * Returns the cell indexes of every row, column and box, in that order. The
+     * arrays are shared and must not be modified.
+     *
+     * @return The units, 3 * size arrays of size cell indexes.
+     */
+    public int[][] getUnits() {
+        return units;
+    }
+
+    /**
+     * Returns the cell indexes of the peers of every cell. The arrays are shared
+     * and must not be modified.
+     *
+     * @return The peers, indexed by cell.
+     */
+    public int[][] getPeers() {
+        return peers;
+    }
+
+    /**
+     * Returns the index of the box containing the given cell. Boxes are numbered
+     * left to right, top to bottom.
+     *
+     * @param x The x-coordinate of the cell.
+     * @param y The y-coordinate of the cell.
+     * @return The index of the box, from 0 to size - 1.
+     */
+    public int boxIndex(int x, int y) {
+        return (y / boxSize) * boxSize + x / boxSize;
+    }
+
+    /**
+     * Returns a description of the board, such as "9x9".
+     *
+     * @return The description.
+     */
+    @Override
+    public String toString() {
+        return size + "x" + size;
+    }
+}
@@ -0,0 +1,102 @@
+package problemdomain;
+
+import constants.SolvingTechnique;
+
+/**
+ * The Hint class represents the next step suggested to the player: a value to
+ * place in a cell and the technique which deduces it.
+ *
+ * A hint can also be a correction, when a value entered by the player does not
+ * match the solution; the hint then holds the correct value of that cell.
+ */
+public class Hint {
+
+    /**
+     * The x-coordinate of the cell.
+     */
+    private final int x;
+
+    /**
+     * The y-coordinate of the cell.
+     */
+    private final int y;
+
+    /**
+     * The value which belongs in the cell.
+     */
+    private final int value;
+
+    /**
+     * The technique which deduces the value, TRIAL_AND_ERROR if no logical
+     * technique does.
+     */
+    private final SolvingTechnique technique;
+
+    /**
+     * Whether the cell holds a wrong value entered by the player.
+     */
+    private final boolean correction;
+
+    /**
+     * Constructs a new Hint.
+     *
+     * @param x          The x-coordinate of the cell.
+     * @param y          The y-coordinate of the cell.
+     * @param value      The value which belongs in the cell.
+     * @param technique  The technique which deduces the value.
+     * @param correction Whether the cell holds a wrong value entered by the
+     *                   player.
+     */
+    public Hint(int x, int y, int value, SolvingTechnique technique, boolean correction) {
+        this.x = x;
+        this.y = y;
+        this.value = value;
+        this.technique = technique;
+        this.correction = correction;
+    }
+
+    /**
+     * Returns the x-coordinate of the cell.
+     *
+     * @return The x-coordinate.
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Returns the y-coordinate of the cell.
+     *
+     * @return The y-coordinate.
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Returns the value which belongs in the cell.
+     *
+     * @return The value.
+     */
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the technique which deduces the value.
+     *
+     * @return The technique, TRIAL_AND_ERROR if no logical technique deduces it.
+     */
+    public SolvingTechnique getTechnique() {
+        return technique;
+    }
+
+    /**
+     * Checks if the hint corrects a wrong value entered by the player.
+     *
+     * @return true if the cell holds a wrong value, false otherwise.
+     */
+    public boolean isCorrection() {
+        return correction;
+    }
+}
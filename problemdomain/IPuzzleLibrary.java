@@ -0,0 +1,31 @@
+package problemdomain;
+
+import constants.Difficulty;
+
+import java.io.IOException;
+
+/**
+ * The IPuzzleLibrary interface provides a contract for classes that serve
+ * stored puzzles for new games.
+ * It declares methods for taking a puzzle which has not been played yet and for
+ * releasing the library.
+ */
+public interface IPuzzleLibrary {
+
+    /**
+     * Takes a stored puzzle of the given difficulty level which has not been
+     * served before, and marks it as played.
+     *
+     * @param difficulty the difficulty level of the puzzle
+     * @return a new SudokuGame of the puzzle, or null if the library has no
+     *         unplayed puzzle of that level
+     */
+    SudokuGame takeUnplayed(Difficulty difficulty);
+
+    /**
+     * Writes any buffered changes to disk and releases the library.
+     *
+     * @throws IOException if an I/O error occurs while closing the library
+     */
+    void close() throws IOException;
+}
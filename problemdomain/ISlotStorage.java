@@ -0,0 +1,85 @@
+package problemdomain;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The ISlotStorage interface extends IStorage with multiple save slots, each
+ * holding one SudokuGame under an id (for example a player profile).
+ *
+ * The IStorage methods read and write the selected slot, so an ISlotStorage
+ * can be used wherever a single-game IStorage is expected.
+ */
+public interface ISlotStorage extends IStorage {
+
+    /**
+     * Returns the ids of all slots holding a game.
+     *
+     * @return the slot ids, in no particular order
+     * @throws IOException if an I/O error occurs while reading the slots
+     */
+    List<String> listSlots() throws IOException;
+
+    /**
+     * Retrieves the game stored in a slot.
+     *
+     * @param slotId the id of the slot
+     * @return the stored SudokuGame instance
+     * @throws IOException if the slot is empty or cannot be read
+     */
+    SudokuGame loadSlot(String slotId) throws IOException;
+
+    /**
+     * Stores a game in a slot, replacing the game already stored there.
+     *
+     * @param slotId the id of the slot
+     * @param game   the SudokuGame instance to be stored
+     * @throws IOException if an I/O error occurs while storing the game
+     */
+    void saveSlot(String slotId, SudokuGame game) throws IOException;
+
+    /**
+     * Deletes the game stored in a slot.
+     *
+     * @param slotId the id of the slot
+     * @return true if the slot held a game
+     * @throws IOException if an I/O error occurs while deleting the game
+     */
+    boolean deleteSlot(String slotId) throws IOException;
+
+    /**
+     * Selects the slot used by updateGameData and getGameData.
+     *
+     * @param slotId the id of the slot
+     */
+    void selectSlot(String slotId);
+
+    /**
+     * Returns the id of the selected slot.
+     *
+     * @return the id of the slot used by updateGameData and getGameData
+     */
+    String getSelectedSlot();
+
+    /**
+     * Updates the game stored in the selected slot.
+     *
+     * @param game the SudokuGame instance to be stored
+     * @throws IOException if an I/O error occurs while updating the game data
+     */
+    @Override
+    default void updateGameData(SudokuGame game) throws IOException {
+        saveSlot(getSelectedSlot(), game);
+    }
+
+    /**
+     * Retrieves the game stored in the selected slot.
+     *
+     * @return the stored SudokuGame instance
+     * @throws IOException if the selected slot is empty or cannot be read
+     */
+    @Override
+    default SudokuGame getGameData() throws IOException {
+        return loadSlot(getSelectedSlot());
+    }
+}
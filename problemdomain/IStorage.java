@@ -5,7 +5,8 @@ import java.io.IOException;
 /**
  * The IStorage interface provides a contract for classes that handle storage of
  * SudokuGame data.
- * It declares methods for updating and retrieving game data.
+ * It declares methods for updating and retrieving game data, for undoing and
+ * redoing moves, for flushing buffered updates and for closing the storage.
  */
 public interface IStorage {
 
@@ -24,4 +25,57 @@ public interface IStorage {
      * @throws IOException if an I/O error occurs while retrieving the game data
      */
     SudokuGame getGameData() throws IOException;
-}
\ No newline at end of file
+
+    /**
+     * Reverts the most recent move which has not been undone.
+     * Implementations which keep no move history do nothing.
+     *
+     * @return the game after the reversal, or null if there is nothing to undo
+     * @throws IOException if an I/O error occurs while recording the reversal
+     */
+    default SudokuGame undo() throws IOException {
+        return null;
+    }
+
+    /**
+     * Reapplies the most recently undone move.
+     * Implementations which keep no move history do nothing.
+     *
+     * @return the game after the move, or null if there is nothing to redo
+     * @throws IOException if an I/O error occurs while recording the move
+     */
+    default SudokuGame redo() throws IOException {
+        return null;
+    }
+
+    /**
+     * Returns whether updateGameData writes only what changed since the previous
+     * update, so that it is cheap enough to call on every move. Updates to storage
+     * which rewrites the whole game are coalesced by the caller instead.
+     *
+     * @return true if updates are incremental, false otherwise
+     */
+    default boolean savesIncrementally() {
+        return false;
+    }
+
+    /**
+     * Writes any buffered game data to its final destination.
+     * Implementations which write every update immediately do nothing.
+     *
+     * @throws IOException if an I/O error occurs while writing the game data
+     */
+    default void flush() throws IOException {
+    }
+
+    /**
+     * Writes any buffered game data to its final destination and releases the
+     * resources of the storage, such as open files and background threads. The
+     * storage must not be used afterwards.
+     *
+     * @throws IOException if an I/O error occurs while writing the game data
+     */
+    default void close() throws IOException {
+        flush();
+    }
+}
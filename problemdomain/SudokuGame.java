@@ -1,9 +1,12 @@
 package problemdomain;
 
-import computationlogic.SudokuUtilities;
 import constants.Difficulty;
 import constants.GameState;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 
 /**
@@ -11,52 +14,57 @@ import java.io.Serializable;
  * It implements Serializable to allow instances of this class to be saved to a
  * file.
  *
- * Each SudokuGame has a GameState and a 2D array representing the state of the
- * Sudoku grid.
+ * Each SudokuGame has a GameState and an immutable Board holding the value of
+ * every cell and the disabled tiles.
  *
  * The GameState can be either ACTIVE or COMPLETE, representing whether the game
  * is still being played or is finished.
  *
- * The 2D array, gridState, represents the state of the Sudoku game. Each
- * element in the array corresponds to a cell in the Sudoku grid.
  * The value in each cell is an integer between 0 and 9, where 0 represents an
  * empty cell and 1-9 represent the respective numbers in the Sudoku game.
  *
- * The class also provides a method to get a copy of the current grid state.
+ * getBoard gives read access to the cells without copying; the getCopyOf
+ * methods build new arrays for callers which need to modify a grid. The
+ * serialized form is unchanged from earlier versions (the state, the grid and
+ * the disabled tiles as arrays), so games saved with Java serialization can
+ * still be read.
  *
+ * @see Board
  * @see GameState
- * @see SudokuUtilities
  */
 public class SudokuGame implements Serializable {
     private static final long serialVersionUID = 1L;
 
     /**
-     * The difficulty level of the Sudoku game. It is initially set to MEDIUM.
+     * The fields of the serialized form, which predates Board.
      */
-    private static Difficulty difficulty = Difficulty.MEDIUM;
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("gameState", GameState.class),
+            new ObjectStreamField("gridState", int[][].class),
+            new ObjectStreamField("disabledTiles", boolean[][].class)
+    };
 
     /**
-     * Represents the state of the Sudoku game.
+     * The difficulty level of the Sudoku game. It is initially set to MEDIUM.
      */
-    private final GameState gameState;
+    private static Difficulty difficulty = Difficulty.MEDIUM;
 
     /**
-     * The `gridState` field represents the current state of the Sudoku grid.
-     * It is a 2D array where each element corresponds to a cell in the Sudoku grid.
-     * The value in each cell is an integer between 0 and 9, where 0 represents an
-     * empty cell and 1-9 represent the respective numbers in the Sudoku game.
+     * Represents the state of the Sudoku game. Only assigned by the constructors
+     * and readObject.
      */
-    private final int[][] gridState;
+    private GameState gameState;
 
     /**
-     * The `disabledTiles` field represents the disabled state of each tile.
-     * It is a 2D array where each element is a boolean indicating whether the tile is disabled.
+     * The value of every cell and the disabled tiles. Only assigned by the
+     * constructors and readObject.
      */
-    private final boolean[][] disabledTiles;
+    private Board board;
 
     /**
-     * The constant GRID_BOUNDARY represents the size of the Sudoku grid.
-     * It is set to 9, indicating a standard 9x9 Sudoku grid.
+     * The constant GRID_BOUNDARY represents the size of the standard Sudoku grid.
+     * It is set to 9, indicating a standard 9x9 Sudoku grid. Games on other
+     * boards (see BoardGeometry) take their size from the length of their grid.
      */
     public static final int GRID_BOUNDARY = 9;
 
@@ -76,9 +84,18 @@ public class SudokuGame implements Serializable {
      *                      Each element is a boolean where true means the tile is disabled.
      */
     public SudokuGame(GameState gameState, int[][] gridState, boolean[][] disabledTiles) {
+        this(gameState, Board.of(gridState, disabledTiles));
+    }
+
+    /**
+     * Constructs a new SudokuGame instance from a board, without copying it.
+     *
+     * @param gameState The initial state of the game.
+     * @param board     The value of every cell and the disabled tiles.
+     */
+    public SudokuGame(GameState gameState, Board board) {
         this.gameState = gameState;
-        this.gridState = gridState;
-        this.disabledTiles = disabledTiles;
+        this.board = board;
     }
 
     /**
@@ -93,30 +110,70 @@ public class SudokuGame implements Serializable {
         return gameState;
     }
 
+    /**
+     * Returns the board of the game. The board is immutable, so this does not
+     * copy anything.
+     *
+     * @return The value of every cell and the disabled tiles.
+     */
+    public Board getBoard() {
+        return board;
+    }
+
     /**
      * Returns a copy of the current state of the Sudoku grid.
      *
-     * This method uses the `copyToNewArray` method from the
-     * [`SudokuUtilities`](computationlogic/SudokuUtilities.java) class
-     * to create a new 2D array with the same values as `gridState`.
+     * This builds a new 2D array on every call; callers which only read cells
+     * should use getBoard instead.
      *
      * @return A new 2D array representing the current state of the Sudoku grid.
      */
     public int[][] getCopyOfGridState() {
-        return SudokuUtilities.copyToNewArray(gridState);
+        return board.toGrid();
     }
 
     /**
      * Returns a copy of the disabled state of the tiles.
      *
-     * This method uses the `copyToNewArray` method from the
-     * [`SudokuUtilities`](computationlogic/SudokuUtilities.java) class
-     * to create a new 2D array with the same values as `disabledTiles`.
+     * This builds a new 2D array on every call; callers which only read cells
+     * should use getBoard instead.
      *
      * @return A new 2D array representing the disabled state of the tiles.
      */
     public boolean[][] getCopyOfDisabledTiles() {
-        return SudokuUtilities.copyToNewArray(disabledTiles);
+        return board.toDisabledTiles();
+    }
+
+    /**
+     * Writes the game in the serialized form of earlier versions.
+     *
+     * @param out The stream to write to.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("gameState", gameState);
+        fields.put("gridState", board.toGrid());
+        fields.put("disabledTiles", board.toDisabledTiles());
+        out.writeFields();
+    }
+
+    /**
+     * Reads a game written in the serialized form of earlier versions.
+     *
+     * @param in The stream to read from.
+     * @throws IOException            If an I/O error occurs or the grid is not
+     *                                valid.
+     * @throws ClassNotFoundException If a class of the stream cannot be found.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        gameState = (GameState) fields.get("gameState", null);
+        try {
+            board = Board.of((int[][]) fields.get("gridState", null), (boolean[][]) fields.get("disabledTiles", null));
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid serialized game", e);
+        }
     }
 
     /**
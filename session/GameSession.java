@@ -0,0 +1,77 @@
+package session;
+
+import userinterface.IUserInterfaceContract;
+import userinterface.logic.ControlLogic;
+
+/**
+ * The GameSession class represents one player's game running in a
+ * SessionEngine: a ControlLogic with its own in-memory storage, worker thread
+ * and HeadlessView.
+ *
+ * Clients send events through the EventListener returned by getListener, and
+ * wait for their results on the view.
+ */
+public class GameSession {
+
+    /**
+     * The id of the session, unique within its engine.
+     */
+    private final long id;
+
+    /**
+     * The logic of the session.
+     */
+    private final ControlLogic controlLogic;
+
+    /**
+     * The view of the session.
+     */
+    private final HeadlessView view;
+
+    /**
+     * Constructs a new GameSession.
+     *
+     * @param id           The id of the session.
+     * @param controlLogic The logic of the session.
+     * @param view         The view of the session.
+     */
+    GameSession(long id, ControlLogic controlLogic, HeadlessView view) {
+        this.id = id;
+        this.controlLogic = controlLogic;
+        this.view = view;
+    }
+
+    /**
+     * Returns the id of the session.
+     *
+     * @return The id, unique within the engine.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the listener receiving the events of the session.
+     *
+     * @return The event listener.
+     */
+    public IUserInterfaceContract.EventListener getListener() {
+        return controlLogic;
+    }
+
+    /**
+     * Returns the view of the session.
+     *
+     * @return The headless view.
+     */
+    public HeadlessView getView() {
+        return view;
+    }
+
+    /**
+     * Stops the worker thread of the session after its queued work has finished.
+     */
+    void close() {
+        controlLogic.close();
+    }
+}
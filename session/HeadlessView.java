@@ -0,0 +1,175 @@
+package session;
+
+import constants.Messages;
+import problemdomain.Hint;
+import problemdomain.SudokuGame;
+import userinterface.IUserInterfaceContract;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The HeadlessView class implements the IUserInterfaceContract.View interface
+ * without drawing anything, for game sessions driven by code instead of a
+ * window.
+ *
+ * Boards and hints sent by the ControlLogic are queued, so the client driving
+ * the session can wait for the result of each event it sends. Completed games
+ * and errors are counted. All methods are thread safe: the view is updated on
+ * the worker thread of the session and read by the client.
+ */
+public class HeadlessView implements IUserInterfaceContract.View {
+
+    /**
+     * The queued element standing for a null hint, as queues do not hold null.
+     */
+    private static final Object NO_HINT = new Object();
+
+    /**
+     * The boards sent by updateBoard and not yet taken.
+     */
+    private final BlockingQueue<SudokuGame> boards = new LinkedBlockingQueue<>();
+
+    /**
+     * The hints sent by showHint and not yet taken, NO_HINT for a null hint.
+     */
+    private final BlockingQueue<Object> hints = new LinkedBlockingQueue<>();
+
+    /**
+     * The number of completion dialogs shown.
+     */
+    private final AtomicInteger completedGames = new AtomicInteger();
+
+    /**
+     * The number of errors shown.
+     */
+    private final AtomicInteger errors = new AtomicInteger();
+
+    /**
+     * The listener of the session. Clients send events through
+     * GameSession.getListener instead.
+     */
+    private volatile IUserInterfaceContract.EventListener listener;
+
+    /**
+     * Sets the EventListener of the session.
+     *
+     * @param listener The event listener.
+     */
+    @Override
+    public void setListener(IUserInterfaceContract.EventListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Ignores a single square update, which the client made itself.
+     *
+     * @param x     The x-coordinate of the square.
+     * @param y     The y-coordinate of the square.
+     * @param input The new value of the square.
+     */
+    @Override
+    public void updateSquare(int x, int y, int input) {
+    }
+
+    /**
+     * Queues a new board for the client.
+     *
+     * @param game The game to be displayed.
+     */
+    @Override
+    public void updateBoard(SudokuGame game) {
+        boards.add(game);
+    }
+
+    /**
+     * Counts a completion dialog.
+     *
+     * @param message The message of the dialog.
+     */
+    @Override
+    public void showDialog(String message) {
+        if (Messages.GAME_COMPLETE.equals(message))
+            completedGames.incrementAndGet();
+    }
+
+    /**
+     * Counts an error.
+     *
+     * @param message The error message.
+     */
+    @Override
+    public void showError(String message) {
+        errors.incrementAndGet();
+    }
+
+    /**
+     * Queues a hint for the client.
+     *
+     * @param hint The hint, or null if there is none.
+     */
+    @Override
+    public void showHint(Hint hint) {
+        hints.add(hint == null ? NO_HINT : hint);
+    }
+
+    /**
+     * Ignores the pencil marks.
+     *
+     * @param candidates The candidate masks, or null to clear them.
+     */
+    @Override
+    public void updatePencilMarks(int[] candidates) {
+    }
+
+    /**
+     * Waits for the next board sent by the session.
+     *
+     * @param timeoutMillis How long to wait, in milliseconds.
+     * @return The game of the board.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     * @throws TimeoutException     If no board arrives in time.
+     */
+    public SudokuGame awaitBoard(long timeoutMillis) throws InterruptedException, TimeoutException {
+        SudokuGame game = boards.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        if (game == null)
+            throw new TimeoutException("No board within " + timeoutMillis + " ms");
+        return game;
+    }
+
+    /**
+     * Waits for the answer to the next hint request.
+     *
+     * @param timeoutMillis How long to wait, in milliseconds.
+     * @return The hint, or null if the session had none.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     * @throws TimeoutException     If no answer arrives in time.
+     */
+    public Hint awaitHint(long timeoutMillis) throws InterruptedException, TimeoutException {
+        Object hint = hints.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        if (hint == null)
+            throw new TimeoutException("No hint within " + timeoutMillis + " ms");
+        return hint == NO_HINT ? null : (Hint) hint;
+    }
+
+    /**
+     * Returns the number of games completed in the session.
+     *
+     * @return The number of completion dialogs shown.
+     */
+    public int getCompletedGames() {
+        return completedGames.get();
+    }
+
+    /**
+     * Returns the number of errors shown in the session.
+     *
+     * @return The number of errors.
+     */
+    public int getErrors() {
+        return errors.get();
+    }
+}
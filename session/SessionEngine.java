@@ -0,0 +1,216 @@
+package session;
+
+import computationlogic.PuzzlePool;
+import constants.Difficulty;
+import metrics.Counter;
+import metrics.Metrics;
+import persistence.InMemoryStorageImpl;
+import problemdomain.IPuzzleLibrary;
+import userinterface.logic.ControlLogic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The SessionEngine class runs many independent game sessions in one process,
+ * without a user interface, as the backbone for serving the game from a server.
+ *
+ * Every GameSession has its own ControlLogic, in-memory storage and
+ * HeadlessView, and runs its events on its own single worker thread, in the
+ * order in which they arrive, exactly like the desktop game does. Sessions
+ * share the puzzle pool and the puzzle library. View updates run directly on
+ * the worker thread, as there is no UI thread to post them to.
+ *
+ * On a Java runtime with virtual threads (Java 21 and later), the worker of
+ * every session is a virtual thread, so an idle session costs a few hundred
+ * bytes instead of a platform thread stack, and the number of sessions is
+ * limited by memory rather than by threads. Virtual threads are looked up by
+ * reflection, so the engine also runs on older runtimes, where each worker is
+ * a daemon platform thread.
+ */
+public class SessionEngine {
+
+    /**
+     * The number of sessions opened.
+     */
+    private static final Counter SESSIONS_OPENED = Metrics.counter("session.opened");
+
+    /**
+     * The number of sessions closed.
+     */
+    private static final Counter SESSIONS_CLOSED = Metrics.counter("session.closed");
+
+    /**
+     * The pool from which sessions take new games.
+     */
+    private final PuzzlePool puzzlePool;
+
+    /**
+     * The library from which sessions serve new games first, or null.
+     */
+    private final IPuzzleLibrary puzzleLibrary;
+
+    /**
+     * The factory of virtual threads, or null if the runtime has none.
+     */
+    private final ThreadFactory virtualThreads = virtualThreadFactory();
+
+    /**
+     * The factory of the worker threads of the sessions.
+     */
+    private final ThreadFactory threadFactory;
+
+    /**
+     * The id of the next session.
+     */
+    private final AtomicLong nextId = new AtomicLong();
+
+    /**
+     * The open sessions, by id.
+     */
+    private final Map<Long, GameSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new SessionEngine which takes every new game from a puzzle
+     * pool.
+     *
+     * @param puzzlePool The pool from which sessions take new games.
+     */
+    public SessionEngine(PuzzlePool puzzlePool) {
+        this(puzzlePool, null);
+    }
+
+    /**
+     * Constructs a new SessionEngine which serves new games from a puzzle
+     * library before falling back to a puzzle pool.
+     *
+     * @param puzzlePool    The pool from which sessions take new games when the
+     *                      library has none left.
+     * @param puzzleLibrary The library from which sessions serve new games first,
+     *                      or null.
+     */
+    public SessionEngine(PuzzlePool puzzlePool, IPuzzleLibrary puzzleLibrary) {
+        this.puzzlePool = puzzlePool;
+        this.puzzleLibrary = puzzleLibrary;
+        if (virtualThreads != null) {
+            threadFactory = virtualThreads;
+        } else {
+            AtomicLong threadCount = new AtomicLong();
+            threadFactory = runnable -> {
+                Thread thread = new Thread(runnable, "sudoku-session-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    /**
+     * Opens a new session of MEDIUM games and starts loading its first game in
+     * the background. The game is sent to the view of the session when it is
+     * ready.
+     *
+     * @return The new session.
+     */
+    public GameSession openSession() {
+        return openSession(Difficulty.MEDIUM);
+    }
+
+    /**
+     * Opens a new session and starts loading its first game in the background.
+     * The game is sent to the view of the session when it is ready.
+     *
+     * @param difficulty The difficulty level of the games of the session, until
+     *                   its listener is told otherwise.
+     * @return The new session.
+     */
+    public GameSession openSession(Difficulty difficulty) {
+        HeadlessView view = new HeadlessView();
+        ControlLogic controlLogic = new ControlLogic(new InMemoryStorageImpl(), view, puzzlePool, puzzleLibrary,
+                Runnable::run, Executors.newSingleThreadExecutor(threadFactory));
+        view.setListener(controlLogic);
+        controlLogic.onDifficultySelected(difficulty);
+
+        GameSession session = new GameSession(nextId.incrementAndGet(), controlLogic, view);
+        sessions.put(session.getId(), session);
+        SESSIONS_OPENED.increment();
+        controlLogic.loadGame();
+        return session;
+    }
+
+    /**
+     * Closes a session after its queued events have been handled.
+     *
+     * @param session The session.
+     */
+    public void closeSession(GameSession session) {
+        if (sessions.remove(session.getId()) == null)
+            return;
+        session.close();
+        SESSIONS_CLOSED.increment();
+    }
+
+    /**
+     * Returns the number of open sessions.
+     *
+     * @return The number of sessions opened and not yet closed.
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Checks if the workers of the sessions are virtual threads.
+     *
+     * @return true if the runtime has virtual threads, false if the workers are
+     *         platform threads.
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads != null;
+    }
+
+    /**
+     * Starts a thread of the same kind as the session workers, for a client
+     * driving a session, such as a synthetic player.
+     *
+     * @param task The work of the thread.
+     * @return The started thread.
+     */
+    public Thread startThread(Runnable task) {
+        Thread thread = threadFactory.newThread(task);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Closes every open session. The puzzle pool and the puzzle library are left
+     * to their owner.
+     */
+    public void shutdown() {
+        List<GameSession> open = new ArrayList<>(sessions.values());
+        for (GameSession session : open) {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * Looks up the factory of virtual threads of the runtime
+     * (Thread.ofVirtual().name("sudoku-session-", 1).factory()).
+     *
+     * @return The factory, or null if the runtime has no virtual threads.
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "sudoku-session-", 1L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            return null;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package userinterface;
 
+import constants.Difficulty;
+import problemdomain.Hint;
 import problemdomain.SudokuGame;
 
 /**
@@ -28,10 +30,40 @@ public interface IUserInterfaceContract {
          */
         void onDialogClick();
 
+        /**
+         * Triggered when the player selects the difficulty level of the next new
+         * games.
+         *
+         * @param difficulty The selected difficulty level.
+         */
+        void onDifficultySelected(Difficulty difficulty);
+
         /**
          * Triggered when the New Game button is clicked.
          */
         void onNewGameButtonClick();
+
+        /**
+         * Triggered when the player asks for a hint.
+         */
+        void onHintRequest();
+
+        /**
+         * Triggered when the player turns the candidate pencil marks on or off.
+         *
+         * @param enabled Whether pencil marks should be shown.
+         */
+        void onPencilMarksToggle(boolean enabled);
+
+        /**
+         * Triggered when the player reverts their most recent move.
+         */
+        void onUndo();
+
+        /**
+         * Triggered when the player reapplies the most recently reverted move.
+         */
+        void onRedo();
     }
 
     /**
@@ -77,5 +109,21 @@ public interface IUserInterfaceContract {
          * @param message The error message to show.
          */
         void showError(String message);
+
+        /**
+         * Shows a hint, such as the next value to place.
+         *
+         * @param hint The hint, or null if there is none.
+         */
+        void showHint(Hint hint);
+
+        /**
+         * Updates the candidate pencil marks of every square.
+         *
+         * @param candidates The candidate mask of every square in typewriter order
+         *                   (y * size + x), with bit `value` set for every
+         *                   candidate; or null to clear the pencil marks.
+         */
+        void updatePencilMarks(int[] candidates);
     }
 }
\ No newline at end of file
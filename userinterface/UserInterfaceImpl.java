@@ -1,7 +1,10 @@
 package userinterface;
 
 import constants.Difficulty;
+import constants.Messages;
+import problemdomain.Board;
 import problemdomain.Coordinates;
+import problemdomain.Hint;
 import problemdomain.SudokuGame;
 import javafx.event.EventHandler;
 import javafx.geometry.Pos;
@@ -64,6 +67,24 @@ public class UserInterfaceImpl implements IUserInterfaceContract.View, EventHand
      */
     private HashMap<Coordinates, SudokuTextField> textFieldCoordinates;
 
+    /**
+     * The candidate pencil marks drawn over every square, keyed by the
+     * coordinates of the square.
+     */
+    private final HashMap<Coordinates, Text> pencilMarks = new HashMap<>();
+
+    /**
+     * Whether the player has turned the candidate pencil marks on.
+     */
+    private boolean pencilMarksEnabled;
+
+    /**
+     * The difficulty level last selected by the player, preselected in the
+     * difficulty dialog. It is initially set to MEDIUM, like the difficulty of
+     * the ControlLogic.
+     */
+    private Difficulty difficulty = Difficulty.MEDIUM;
+
     /**
      * An instance of a class that implements the
      * IUserInterfaceContract.EventListener interface.
@@ -164,18 +185,30 @@ public class UserInterfaceImpl implements IUserInterfaceContract.View, EventHand
 
     private void drawAdditionalText(VBox mainUIContainer) {
         HBox textContainer = new HBox();
-        textContainer.setSpacing(50);
+        textContainer.setSpacing(20);
         textContainer.setAlignment(Pos.CENTER);
 
         Text pressNText = new Text("Press N = New Game");
         pressNText.setFont(Font.font("Comic Sans MS", FontWeight.SEMI_BOLD, 15));
         pressNText.setFill(Color.rgb(213, 228, 236));
 
+        Text pressHText = new Text("H = Hint");
+        pressHText.setFont(Font.font("Comic Sans MS", FontWeight.SEMI_BOLD, 15));
+        pressHText.setFill(Color.rgb(213, 228, 236));
+
+        Text pressPText = new Text("P = Pencil Marks");
+        pressPText.setFont(Font.font("Comic Sans MS", FontWeight.SEMI_BOLD, 15));
+        pressPText.setFill(Color.rgb(213, 228, 236));
+
+        Text pressUText = new Text("U/R = Undo/Redo");
+        pressUText.setFont(Font.font("Comic Sans MS", FontWeight.SEMI_BOLD, 15));
+        pressUText.setFill(Color.rgb(213, 228, 236));
+
         Text pressQText = new Text("Press Q or ESC = Quit Game");
         pressQText.setFont(Font.font("Comic Sans MS", FontWeight.SEMI_BOLD, 15));
         pressQText.setFill(Color.rgb(213, 228, 236));
 
-        textContainer.getChildren().addAll(pressNText, pressQText);
+        textContainer.getChildren().addAll(pressNText, pressHText, pressPText, pressUText, pressQText);
         mainUIContainer.getChildren().add(textContainer);
     }
 
@@ -183,8 +216,8 @@ public class UserInterfaceImpl implements IUserInterfaceContract.View, EventHand
      * Draws a new game button on the specified container.
      * When the button is clicked, a dialog is shown for selecting the difficulty
      * level.
-     * If a difficulty level is selected, the game's difficulty level is set to the
-     * selected level and a new game is started.
+     * If a difficulty level is selected, the listener is told about it and a new
+     * game is started.
      *
      * @param mainUIContainer the container on which to draw the new game button
      */
@@ -200,14 +233,16 @@ public class UserInterfaceImpl implements IUserInterfaceContract.View, EventHand
     /**
      * Handles the button click event for the "New Game" button.
      * Displays a dialog to choose the difficulty level of the Sudoku game.
-     * Sets the selected difficulty level and notifies the listener.
+     * Passes the selected difficulty level to the listener, then asks it for a new
+     * game.
      */
     private void handleNewGameButtonClick() {
         ChoiceDialog<String> dialog = createDifficultyDialog();
         Map<String, Difficulty> difficultyMap = createDifficultyMap();
         Optional<String> result = dialog.showAndWait();
         if (result.isPresent()) {
-            SudokuGame.setDifficulty(difficultyMap.get(result.get()));
+            difficulty = difficultyMap.get(result.get());
+            listener.onDifficultySelected(difficulty);
             listener.onNewGameButtonClick();
         }
     }
@@ -236,7 +271,7 @@ public class UserInterfaceImpl implements IUserInterfaceContract.View, EventHand
         choices.add(Difficulty.HARD.getName());
         choices.add(Difficulty.EXPERT.getName());
 
-        ChoiceDialog<String> dialog = new ChoiceDialog<>(SudokuGame.getDifficultyName(), choices);
+        ChoiceDialog<String> dialog = new ChoiceDialog<>(difficulty.getName(), choices);
         dialog.setTitle("Select Difficulty");
         dialog.setHeaderText(null);
         dialog.setContentText("Choose your difficulty:");
@@ -301,8 +336,8 @@ public class UserInterfaceImpl implements IUserInterfaceContract.View, EventHand
         // how much to move the x or y value after each loop
         final int xAndYDelta = 64;
 
-        for (int xIndex = 0; xIndex < 9; xIndex++) {
-            for (int yIndex = 0; yIndex < 9; yIndex++) {
+        for (int xIndex = 0; xIndex < SudokuGame.GRID_BOUNDARY; xIndex++) {
+            for (int yIndex = 0; yIndex < SudokuGame.GRID_BOUNDARY; yIndex++) {
                 int x = xOrigin + xIndex * xAndYDelta;
                 int y = yOrigin + yIndex * xAndYDelta;
                 // draw it
@@ -327,6 +362,16 @@ public class UserInterfaceImpl implements IUserInterfaceContract.View, EventHand
                 textFieldCoordinates.put(new Coordinates(xIndex, yIndex), tile);
 
                 root.getChildren().add(tile);
+
+                // drawn over the tile, but never takes its clicks
+                Text pencilMark = new Text("");
+                pencilMark.setLayoutX(x + 6);
+                pencilMark.setLayoutY(y + 14);
+                pencilMark.setFont(Font.font("Monospaced", 11));
+                pencilMark.setFill(Color.rgb(90, 90, 90));
+                pencilMark.setMouseTransparent(true);
+                pencilMarks.put(new Coordinates(xIndex, yIndex), pencilMark);
+                root.getChildren().add(pencilMark);
             }
         }
     }
@@ -496,6 +541,8 @@ public class UserInterfaceImpl implements IUserInterfaceContract.View, EventHand
 
         if (value.equals("0"))
             value = "";
+        else
+            pencilMarks.get(new Coordinates(x, y)).setText("");
 
         tile.textProperty().setValue(value);
     }
@@ -513,17 +560,16 @@ public class UserInterfaceImpl implements IUserInterfaceContract.View, EventHand
      */
     @Override
     public void updateBoard(SudokuGame game) {
-        for (int xIndex = 0; xIndex < 9; xIndex++) {
-            for (int yIndex = 0; yIndex < 9; yIndex++) {
+        // read straight from the immutable board, without copying the grid
+        Board board = game.getBoard();
+        for (int xIndex = 0; xIndex < SudokuGame.GRID_BOUNDARY; xIndex++) {
+            for (int yIndex = 0; yIndex < SudokuGame.GRID_BOUNDARY; yIndex++) {
                 TextField tile = textFieldCoordinates.get(new Coordinates(xIndex, yIndex));
 
-                String value = Integer.toString(game.getCopyOfGridState()[xIndex][yIndex]);
-
-                if (value.equals("0"))
-                    value = "";
-                tile.setText(value);
+                int cellValue = board.getValue(xIndex, yIndex);
+                tile.setText(cellValue == 0 ? "" : Integer.toString(cellValue));
 
-                boolean isDisabled = game.getCopyOfDisabledTiles()[xIndex][yIndex];
+                boolean isDisabled = board.isDisabled(xIndex, yIndex);
                 tile.setDisable(isDisabled);
 
                 if (isDisabled) {
@@ -562,6 +608,70 @@ public class UserInterfaceImpl implements IUserInterfaceContract.View, EventHand
         dialog.showAndWait();
     }
 
+    /**
+     * Shows a hint in a dialog which does not block the board, and moves the
+     * focus to the square it is about.
+     *
+     * @param hint The hint, or null if there is none.
+     */
+    @Override
+    public void showHint(Hint hint) {
+        String message;
+        if (hint == null) {
+            message = Messages.NO_HINT;
+        } else {
+            TextField tile = textFieldCoordinates.get(new Coordinates(hint.getX(), hint.getY()));
+            tile.requestFocus();
+            if (hint.isCorrection())
+                message = String.format(Messages.HINT_CORRECTION, hint.getY() + 1, hint.getX() + 1, hint.getValue());
+            else
+                message = String.format(Messages.HINT, hint.getValue(), hint.getY() + 1, hint.getX() + 1,
+                        hint.getTechnique().getName());
+        }
+        Alert dialog = new Alert(Alert.AlertType.INFORMATION, message, ButtonType.OK);
+        dialog.setHeaderText(null);
+        dialog.show();
+    }
+
+    /**
+     * Draws the candidates of every empty square as small digits in a 3x3
+     * layout, or clears them.
+     *
+     * @param candidates The candidate mask of every square in typewriter order,
+     *                   or null to clear the pencil marks.
+     */
+    @Override
+    public void updatePencilMarks(int[] candidates) {
+        for (int xIndex = 0; xIndex < SudokuGame.GRID_BOUNDARY; xIndex++) {
+            for (int yIndex = 0; yIndex < SudokuGame.GRID_BOUNDARY; yIndex++) {
+                Text pencilMark = pencilMarks.get(new Coordinates(xIndex, yIndex));
+                int mask = candidates == null || !pencilMarksEnabled
+                        ? 0
+                        : candidates[yIndex * SudokuGame.GRID_BOUNDARY + xIndex];
+                pencilMark.setText(mask == 0 ? "" : formatPencilMark(mask));
+            }
+        }
+    }
+
+    /**
+     * Formats a candidate mask as three lines of three digits, leaving a blank
+     * where a value is not a candidate.
+     *
+     * @param mask The candidate mask.
+     * @return The text of the pencil mark.
+     */
+    private static String formatPencilMark(int mask) {
+        StringBuilder text = new StringBuilder();
+        for (int value = 1; value <= SudokuGame.GRID_BOUNDARY; value++) {
+            text.append((mask & 1 << value) != 0 ? (char) ('0' + value) : ' ');
+            if (value % 3 == 0 && value < SudokuGame.GRID_BOUNDARY)
+                text.append('\n');
+            else if (value % 3 != 0)
+                text.append(' ');
+        }
+        return text.toString();
+    }
+
     /**
      * Handles key events for the Sudoku board.
      *
@@ -582,6 +692,17 @@ public class UserInterfaceImpl implements IUserInterfaceContract.View, EventHand
                 handleInput(0, event.getSource());
             } else if (event.getCode() == KeyCode.N) {
                 handleNewGameButtonClick();
+            } else if (event.getCode() == KeyCode.H) {
+                listener.onHintRequest();
+            } else if (event.getCode() == KeyCode.P) {
+                pencilMarksEnabled = !pencilMarksEnabled;
+                if (!pencilMarksEnabled)
+                    updatePencilMarks(null);
+                listener.onPencilMarksToggle(pencilMarksEnabled);
+            } else if (event.getCode() == KeyCode.U) {
+                listener.onUndo();
+            } else if (event.getCode() == KeyCode.R) {
+                listener.onRedo();
             } else if (event.getCode() == KeyCode.Q || event.getCode() == KeyCode.ESCAPE) {
                 Alert dialog = new Alert(Alert.AlertType.CONFIRMATION, "Are you sure you want to quit?", ButtonType.YES,
                         ButtonType.NO);
@@ -631,22 +752,23 @@ public class UserInterfaceImpl implements IUserInterfaceContract.View, EventHand
                 int newY = currentCoordinates.getY() + deltaY;
 
                 // Handle wrapping around the grid
-                if (newX >= 9) {
+                if (newX >= SudokuGame.GRID_BOUNDARY) {
                     newX = 0;
                     newY++;
                 } else if (newX < 0) {
-                    newX = 8;
+                    newX = SudokuGame.GRID_BOUNDARY - 1;
                     newY--;
                 }
 
-                if (newY >= 9) {
+                if (newY >= SudokuGame.GRID_BOUNDARY) {
                     newY = 0;
                 } else if (newY < 0) {
-                    newY = 8;
+                    newY = SudokuGame.GRID_BOUNDARY - 1;
                 }
 
                 // Ensure the new coordinates are within bounds
-                while (newX >= 0 && newX < 9 && newY >= 0 && newY < 9) {
+                while (newX >= 0 && newX < SudokuGame.GRID_BOUNDARY
+                        && newY >= 0 && newY < SudokuGame.GRID_BOUNDARY) {
                     Coordinates newCoordinates = new Coordinates(newX, newY);
                     TextField newTile = textFieldCoordinates.get(newCoordinates);
 
@@ -659,18 +781,18 @@ public class UserInterfaceImpl implements IUserInterfaceContract.View, EventHand
                     newY += deltaY;
 
                     // Handle wrapping around the grid again
-                    if (newX >= 9) {
+                    if (newX >= SudokuGame.GRID_BOUNDARY) {
                         newX = 0;
                         newY++;
                     } else if (newX < 0) {
-                        newX = 8;
+                        newX = SudokuGame.GRID_BOUNDARY - 1;
                         newY--;
                     }
 
-                    if (newY >= 9) {
+                    if (newY >= SudokuGame.GRID_BOUNDARY) {
                         newY = 0;
                     } else if (newY < 0) {
-                        newY = 8;
+                        newY = SudokuGame.GRID_BOUNDARY - 1;
                     }
                 }
             }
@@ -1,13 +1,30 @@
 package userinterface.logic;
 
+import constants.Difficulty;
 import constants.GameState;
 import constants.Messages;
-import computationlogic.GameLogic;
+import computationlogic.HintEngine;
+import computationlogic.MoveValidator;
+import computationlogic.PuzzlePool;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import problemdomain.Hint;
+import problemdomain.IPuzzleLibrary;
 import problemdomain.IStorage;
 import problemdomain.SudokuGame;
 import userinterface.IUserInterfaceContract;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class implements the IUserInterfaceContract.EventListener interface and
@@ -16,9 +33,88 @@ import java.io.IOException;
  * the view to update the user interface.
  * The view could be an instance of the real UserInterfaceImpl or a test class
  * that implements the same interface.
+ *
+ * The current game is held in memory and is the authoritative state: inputs
+ * are applied to it without reading storage, and every change is handed to the
+ * storage. Storage which saves incrementally, such as JournalStorageImpl, which
+ * appends only the changed cells, is updated on every move. Updates to storage
+ * which rewrites the whole game are coalesced: the latest game is saved once no
+ * move has been made for SAVE_DEBOUNCE_MILLIS, and at the latest
+ * SAVE_MAX_DELAY_MILLIS after the first unsaved move, as well as when the game
+ * is completed or replaced. Unsaved moves are saved, and storage is flushed and
+ * closed, when the application exits.
+ *
+ * Events are received on the UI thread, but validation, game generation and
+ * storage calls run on a single background worker thread, in the order in which
+ * the events arrived. Results are posted back to the view through the UI
+ * executor (Platform::runLater for the JavaFX user interface).
+ *
+ * Every new game request supersedes the requests made before it: a pending new
+ * game is cancelled, and work queued for the previous game is dropped instead
+ * of being applied to, or displayed over, the new one.
+ *
+ * New games are served from the IPuzzleLibrary of stored puzzles, if there is
+ * one, as long as it has unplayed puzzles of the selected difficulty level;
+ * the puzzle pool generates them otherwise.
+ *
+ * Hints and candidate pencil marks come from a HintEngine which, like the
+ * MoveValidator, is updated one move at a time on the worker thread, so neither
+ * needs a solve nor stalls the UI thread.
+ *
+ * The latency from an event to its result (the square drawn, the move saved,
+ * the new board drawn) is recorded in the "ui" histograms of Metrics.
  */
 public class ControlLogic implements IUserInterfaceContract.EventListener {
 
+    /**
+     * How long shutdown waits for queued saves to finish.
+     */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    /**
+     * The time without moves after which coalesced moves are saved.
+     */
+    public static final long SAVE_DEBOUNCE_MILLIS = 250;
+
+    /**
+     * The longest time a coalesced move stays unsaved.
+     */
+    public static final long SAVE_MAX_DELAY_MILLIS = 2000;
+
+    /**
+     * Schedules the saves of coalesced moves, which then run on the worker of
+     * their ControlLogic. Shared by every ControlLogic, as it only hands tasks
+     * over.
+     */
+    private static final ScheduledExecutorService SAVE_TIMER = Executors
+            .newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "sudoku-save-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * The time from an input to its value being drawn in the square.
+     */
+    private static final LatencyHistogram INPUT_TO_RENDER = Metrics.histogram("ui.inputToRender.nanos");
+
+    /**
+     * The time from an input to the move being validated and handed to storage,
+     * or kept for a coalesced save, including the time spent queued behind
+     * earlier work.
+     */
+    private static final LatencyHistogram INPUT_TO_SAVE = Metrics.histogram("ui.inputToSave.nanos");
+
+    /**
+     * The time taken to take a new game from the puzzle library or pool.
+     */
+    private static final LatencyHistogram POOL_TAKE = Metrics.histogram("ui.poolTake.nanos");
+
+    /**
+     * The time from a new game request to the new board being drawn.
+     */
+    private static final LatencyHistogram NEW_GAME_TO_RENDER = Metrics.histogram("ui.newGameToRender.nanos");
+
     /**
      * The storage used for retrieving and updating game data.
      * This could be an instance of any class that implements the IStorage
@@ -33,85 +129,538 @@ public class ControlLogic implements IUserInterfaceContract.EventListener {
      */
     private IUserInterfaceContract.View view;
 
+    /**
+     * Keeps the validity and completion of the current game up to date as cells
+     * are edited, so that an input never rescans the grid.
+     * It is created when the saved game is loaded and replaced whenever a new game
+     * is started. Only accessed from the worker thread.
+     */
+    private MoveValidator moveValidator;
+
+    /**
+     * Keeps the candidates of the current game up to date and finds hints. Only
+     * accessed from the worker thread.
+     */
+    private final HintEngine hintEngine = new HintEngine();
+
+    /**
+     * Whether the player wants candidate pencil marks. Only accessed from the
+     * worker thread.
+     */
+    private boolean pencilMarksEnabled;
+
+    /**
+     * The current state of the game. Loaded from storage once at startup, then
+     * updated in memory. Only accessed from the worker thread.
+     */
+    private SudokuGame currentGame;
+
+    /**
+     * The latest game which has not been handed to storage yet, or null. Only
+     * accessed from the worker thread.
+     */
+    private SudokuGame unsavedGame;
+
+    /**
+     * The time of the first move of unsavedGame. Only accessed from the worker
+     * thread.
+     */
+    private long firstUnsavedNanos;
+
+    /**
+     * The scheduled save of unsavedGame, or null. Only accessed from the worker
+     * thread.
+     */
+    private ScheduledFuture<?> scheduledSave;
+
+    /**
+     * The pool of pre-generated games from which new games are taken.
+     */
+    private PuzzlePool puzzlePool;
+
+    /**
+     * The library of stored puzzles from which new games are served first, or
+     * null to take every new game from the puzzle pool.
+     */
+    private final IPuzzleLibrary puzzleLibrary;
+
+    /**
+     * Runs view updates on the UI thread.
+     */
+    private final Executor uiExecutor;
+
+    /**
+     * The single background thread running validation, generation and storage
+     * I/O, in submission order.
+     */
+    private final ExecutorService worker;
+
+    /**
+     * Incremented by every new game request. Work captures the value current when
+     * it was requested and is dropped if the value has changed since.
+     */
+    private final AtomicLong gameGeneration = new AtomicLong();
+
+    /**
+     * The most recent new game request, which is cancelled if superseded before
+     * it starts.
+     */
+    private Future<?> pendingNewGame;
+
+    /**
+     * The difficulty level of the new games of this ControlLogic, so that
+     * sessions sharing a process each keep their own. It is initially set to
+     * MEDIUM.
+     */
+    private volatile Difficulty difficulty = Difficulty.MEDIUM;
+
     /**
      * Constructs a new ControlLogic object.
      * Initializes the storage and view fields with the provided arguments.
      *
-     * @param storage The storage to be used for retrieving and updating game data.
-     * @param view    The view to be used for updating the user interface.
+     * @param storage    The storage to be used for retrieving and updating game
+     *                   data.
+     * @param view       The view to be used for updating the user interface.
+     * @param puzzlePool The pool from which new games are taken.
+     * @param uiExecutor The executor running view updates on the UI thread.
+     */
+    public ControlLogic(IStorage storage, IUserInterfaceContract.View view, PuzzlePool puzzlePool,
+            Executor uiExecutor) {
+        this(storage, view, puzzlePool, null, uiExecutor);
+    }
+
+    /**
+     * Constructs a new ControlLogic object which serves new games from a library
+     * of stored puzzles before falling back to the puzzle pool.
+     *
+     * @param storage       The storage to be used for retrieving and updating game
+     *                      data.
+     * @param view          The view to be used for updating the user interface.
+     * @param puzzlePool    The pool from which new games are taken when the library
+     *                      has none left.
+     * @param puzzleLibrary The library from which new games are served first, or
+     *                      null.
+     * @param uiExecutor    The executor running view updates on the UI thread.
+     */
+    public ControlLogic(IStorage storage, IUserInterfaceContract.View view, PuzzlePool puzzlePool,
+            IPuzzleLibrary puzzleLibrary, Executor uiExecutor) {
+        this(storage, view, puzzlePool, puzzleLibrary, uiExecutor, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sudoku-control-logic");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * Constructs a new ControlLogic object running its background work on the
+     * given worker, such as one of many game sessions sharing a puzzle pool.
+     *
+     * @param storage       The storage to be used for retrieving and updating game
+     *                      data.
+     * @param view          The view to be used for updating the user interface.
+     * @param puzzlePool    The pool from which new games are taken when the library
+     *                      has none left.
+     * @param puzzleLibrary The library from which new games are served first, or
+     *                      null.
+     * @param uiExecutor    The executor running view updates on the UI thread.
+     * @param worker        The executor running validation, game generation and
+     *                      storage calls, which must run its tasks one at a time in
+     *                      submission order. It is shut down by close.
      */
-    public ControlLogic(IStorage storage, IUserInterfaceContract.View view) {
+    public ControlLogic(IStorage storage, IUserInterfaceContract.View view, PuzzlePool puzzlePool,
+            IPuzzleLibrary puzzleLibrary, Executor uiExecutor, ExecutorService worker) {
         this.storage = storage;
         this.view = view;
+        this.puzzlePool = puzzlePool;
+        this.puzzleLibrary = puzzleLibrary;
+        this.uiExecutor = uiExecutor;
+        this.worker = worker;
     }
 
     /**
      * Handles the input event when a user inputs a value into the Sudoku grid.
      *
-     * This method updates the game state with the new input, saves the updated game
-     * state,
-     * and updates the view to reflect the new input. If the game is complete, it
-     * shows a
+     * This method updates the view to reflect the new input immediately, then
+     * updates the in-memory game state with the new input and hands the updated
+     * game state to the storage on the worker thread. If the game is complete, it shows a
      * completion dialog.
      *
+     * The completion check is incremental: only the edited cell is applied to the
+     * MoveValidator. Saves to storage which does not save incrementally are
+     * coalesced, as described in the class comment. Input made before the saved game has been loaded is
+     * discarded, and the square cleared.
+     *
      * @param x     The x-coordinate of the input.
      * @param y     The y-coordinate of the input.
      * @param input The value input by the user.
      */
     @Override
     public void onSudokuInput(int x, int y, int input) {
-        try {
-            SudokuGame gameData = storage.getGameData();
-            int[][] newGridState = gameData.getCopyOfGridState();
-            boolean[][] newDisabledTiles = gameData.getCopyOfDisabledTiles();
-            newGridState[x][y] = input;
+        long start = System.nanoTime();
+        view.updateSquare(x, y, input);
+        INPUT_TO_RENDER.recordSince(start);
 
-            gameData = new SudokuGame(GameLogic.checkForCompletion(newGridState), newGridState, newDisabledTiles);
-            storage.updateGameData(gameData);
-
-            view.updateSquare(x, y, input);
+        long generation = gameGeneration.get();
+        worker.execute(() -> {
+            if (generation != gameGeneration.get())
+                return;
+            // before the first board arrives there is no game to apply the input
+            // to, so the square is cleared again rather than showing an unsaved value
+            if (currentGame == null) {
+                postToView(generation, () -> view.updateSquare(x, y, 0));
+                return;
+            }
+            try {
+                currentGame = new SudokuGame(moveValidator.applyMove(x, y, input),
+                        currentGame.getBoard().withValue(x, y, input));
+                hintEngine.applyMove(x, y, input);
+                postPencilMarks(generation);
+                boolean complete = currentGame.getGameState() == GameState.COMPLETE;
+                if (storage.savesIncrementally() || complete)
+                    storage.updateGameData(currentGame);
+                else
+                    deferSave(currentGame);
+                INPUT_TO_SAVE.recordSince(start);
 
-            if (gameData.getGameState() == GameState.COMPLETE) {
-                view.showDialog(Messages.GAME_COMPLETE);
+                if (complete) {
+                    discardUnsavedGame();
+                    postToView(generation, () -> view.showDialog(Messages.GAME_COMPLETE));
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                postToView(generation, () -> view.showError(Messages.ERROR));
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-            view.showError(Messages.ERROR);
-        }
+        });
     }
 
     /**
      * Handles the event when a dialog is clicked.
      *
-     * This method creates a new game, saves the new game state, and updates the
-     * view
+     * This method takes a new game from the puzzle pool, saves the new game state,
+     * and updates the view
      * to reflect the new game.
      */
     @Override
     public void onDialogClick() {
-        try {
-            storage.updateGameData(GameLogic.getNewGame());
-            view.updateBoard(storage.getGameData());
-        } catch (IOException e) {
-            view.showError(Messages.ERROR);
-        }
+        startNewGame();
+    }
+
+    /**
+     * Sets the difficulty level of the games started from now on. The current
+     * game is left as it is.
+     *
+     * @param difficulty The selected difficulty level.
+     */
+    @Override
+    public void onDifficultySelected(Difficulty difficulty) {
+        this.difficulty = difficulty;
     }
 
     /**
      * Handles the click event from the New Game button in the user interface for a
      * Sudoku game.
-     * This method updates the game data in storage with a new game and updates the
-     * board view to reflect the new game.
+     * This method updates the game data in storage with a new game from the puzzle
+     * pool and updates the board view to reflect the new game.
      * If an error occurs during this process, it shows an error dialog.
      */
     @Override
     public void onNewGameButtonClick() {
+        startNewGame();
+    }
+
+    /**
+     * Finds a hint for the current game on the worker thread and shows it.
+     */
+    @Override
+    public void onHintRequest() {
+        long generation = gameGeneration.get();
+        worker.execute(() -> {
+            if (generation != gameGeneration.get() || currentGame == null)
+                return;
+            Hint hint = hintEngine.nextHint();
+            postToView(generation, () -> view.showHint(hint));
+        });
+    }
+
+    /**
+     * Turns the candidate pencil marks on or off. While they are on, they are
+     * sent to the view after every change to the board.
+     *
+     * @param enabled Whether pencil marks should be shown.
+     */
+    @Override
+    public void onPencilMarksToggle(boolean enabled) {
+        long generation = gameGeneration.get();
+        worker.execute(() -> {
+            pencilMarksEnabled = enabled;
+            if (!enabled)
+                postToView(generation, () -> view.updatePencilMarks(null));
+            else if (currentGame != null)
+                postPencilMarks(generation);
+        });
+    }
+
+    /**
+     * Reverts the most recent move through the storage, which keeps the move
+     * history, and shows the resulting board.
+     */
+    @Override
+    public void onUndo() {
+        applyHistory(true);
+    }
+
+    /**
+     * Reapplies the most recently reverted move through the storage and shows the
+     * resulting board.
+     */
+    @Override
+    public void onRedo() {
+        applyHistory(false);
+    }
+
+    /**
+     * Loads the saved game on the worker thread and shows it. If no game data is
+     * found, a new game is taken from the puzzle pool and saved instead. If the
+     * game data cannot be read, the user is told so before a new game replaces it
+     * (the storage keeps a copy of the unreadable data).
+     * Called once, when the application starts.
+     */
+    public void loadGame() {
+        long generation = gameGeneration.get();
+        worker.execute(() -> {
+            SudokuGame initialState;
+            try {
+                // will throw if no game data is found in storage
+                initialState = storage.getGameData();
+            } catch (IOException e) {
+                if (!(e instanceof FileNotFoundException)) {
+                    e.printStackTrace();
+                    postToView(generation, () -> view.showError(Messages.SAVE_UNREADABLE));
+                }
+                initialState = takeNewGame(difficulty);
+                try {
+                    storage.updateGameData(initialState);
+                } catch (IOException updateException) {
+                    updateException.printStackTrace();
+                    postToView(generation, () -> view.showError(Messages.ERROR));
+                }
+            }
+
+            currentGame = initialState;
+            moveValidator = new MoveValidator(initialState.getBoard());
+            hintEngine.reset(initialState.getBoard());
+            SudokuGame loadedGame = initialState;
+            postToView(generation, () -> view.updateBoard(loadedGame));
+            postPencilMarks(generation);
+        });
+    }
+
+    /**
+     * Stops the worker thread after the work already queued has finished, flushes
+     * and closes the storage, closes the puzzle library and stops the puzzle pool.
+     * Called when the application exits.
+     */
+    public void shutdown() {
+        close();
+        if (puzzleLibrary != null) {
+            try {
+                puzzleLibrary.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        puzzlePool.shutdown();
+    }
+
+    /**
+     * Stops the worker thread after the work already queued has finished, then
+     * flushes the buffered game data to storage and closes it, leaving the puzzle
+     * pool and the puzzle library, which may be shared with other sessions,
+     * running.
+     */
+    public void close() {
+        try {
+            worker.execute(this::saveUnsavedGame);
+        } catch (RejectedExecutionException e) {
+            // already closed
+        }
+        worker.shutdown();
+        try {
+            worker.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
         try {
-            SudokuGame newGame = GameLogic.getNewGame();
-            storage.updateGameData(newGame);
-            view.updateBoard(storage.getGameData());
+            storage.close();
         } catch (IOException e) {
-            view.showError(Messages.ERROR);
+            e.printStackTrace();
         }
     }
+
+    /**
+     * Supersedes all earlier requests and starts a new game on the worker thread,
+     * using the difficulty level selected when the request was made.
+     */
+    private synchronized void startNewGame() {
+        long start = System.nanoTime();
+        long generation = gameGeneration.incrementAndGet();
+        if (pendingNewGame != null)
+            pendingNewGame.cancel(false);
+
+        Difficulty selected = difficulty;
+        pendingNewGame = worker.submit(() -> {
+            if (generation != gameGeneration.get())
+                return;
+            try {
+                long takeStart = System.nanoTime();
+                SudokuGame newGame = takeNewGame(selected);
+                POOL_TAKE.recordSince(takeStart);
+                currentGame = newGame;
+                moveValidator = new MoveValidator(newGame.getBoard());
+                hintEngine.reset(newGame.getBoard());
+                discardUnsavedGame();
+                storage.updateGameData(newGame);
+                postToView(generation, () -> {
+                    view.updateBoard(newGame);
+                    NEW_GAME_TO_RENDER.recordSince(start);
+                });
+                postPencilMarks(generation);
+            } catch (IOException e) {
+                postToView(generation, () -> view.showError(Messages.ERROR));
+            }
+        });
+    }
+
+    /**
+     * Undoes or redoes a move on the worker thread. The game returned by the
+     * storage replaces the current game, and the MoveValidator and HintEngine are
+     * rebuilt from it, so that they agree with the storage.
+     *
+     * @param undo true to undo the most recent move, false to redo the most
+     *             recently undone one.
+     */
+    private void applyHistory(boolean undo) {
+        long generation = gameGeneration.get();
+        worker.execute(() -> {
+            if (generation != gameGeneration.get() || currentGame == null)
+                return;
+            try {
+                saveUnsavedGame();
+                SudokuGame game = undo ? storage.undo() : storage.redo();
+                if (game == null)
+                    return;
+                currentGame = game;
+                moveValidator = new MoveValidator(game.getBoard());
+                hintEngine.reset(game.getBoard());
+                postToView(generation, () -> view.updateBoard(game));
+                postPencilMarks(generation);
+            } catch (IOException e) {
+                e.printStackTrace();
+                postToView(generation, () -> view.showError(Messages.ERROR));
+            }
+        });
+    }
+
+    /**
+     * Keeps a game to be saved later and schedules its save, on the worker
+     * thread, once no move has been made for SAVE_DEBOUNCE_MILLIS, or
+     * SAVE_MAX_DELAY_MILLIS after the first unsaved move, whichever comes first.
+     * Only called from the worker thread.
+     *
+     * @param game The game to be saved.
+     */
+    private void deferSave(SudokuGame game) {
+        long now = System.nanoTime();
+        if (unsavedGame == null)
+            firstUnsavedNanos = now;
+        unsavedGame = game;
+
+        if (scheduledSave != null)
+            scheduledSave.cancel(false);
+        long delay = Math.min(TimeUnit.MILLISECONDS.toNanos(SAVE_DEBOUNCE_MILLIS),
+                TimeUnit.MILLISECONDS.toNanos(SAVE_MAX_DELAY_MILLIS) - (now - firstUnsavedNanos));
+        scheduledSave = SAVE_TIMER.schedule(() -> {
+            try {
+                worker.execute(this::saveUnsavedGame);
+            } catch (RejectedExecutionException e) {
+                // closed, which saved the game already
+            }
+        }, Math.max(0, delay), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Hands the game kept by deferSave, if any, to storage. Only called from the
+     * worker thread.
+     */
+    private void saveUnsavedGame() {
+        SudokuGame game = unsavedGame;
+        discardUnsavedGame();
+        if (game == null)
+            return;
+        try {
+            storage.updateGameData(game);
+        } catch (IOException e) {
+            e.printStackTrace();
+            long generation = gameGeneration.get();
+            postToView(generation, () -> view.showError(Messages.ERROR));
+        }
+    }
+
+    /**
+     * Forgets the game kept by deferSave, if any, and cancels its save, because it
+     * has been saved or superseded. Only called from the worker thread.
+     */
+    private void discardUnsavedGame() {
+        unsavedGame = null;
+        if (scheduledSave != null) {
+            scheduledSave.cancel(false);
+            scheduledSave = null;
+        }
+    }
+
+    /**
+     * Takes a new game, from the puzzle library if it has an unplayed puzzle of
+     * the difficulty level, otherwise from the puzzle pool.
+     *
+     * @param difficulty The difficulty level of the game.
+     * @return The new game.
+     */
+    private SudokuGame takeNewGame(Difficulty difficulty) {
+        SudokuGame game = null;
+        if (puzzleLibrary != null) {
+            try {
+                game = puzzleLibrary.takeUnplayed(difficulty);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        return game != null ? game : puzzlePool.take(difficulty);
+    }
+
+    /**
+     * Sends the current candidates to the view, if pencil marks are enabled. Must
+     * be called on the worker thread.
+     *
+     * @param generation The game generation the candidates belong to.
+     */
+    private void postPencilMarks(long generation) {
+        if (!pencilMarksEnabled)
+            return;
+        int[] candidates = hintEngine.getCandidateMasks();
+        postToView(generation, () -> view.updatePencilMarks(candidates));
+    }
+
+    /**
+     * Runs a view update on the UI thread, unless a new game has been requested
+     * since the work producing it was requested.
+     *
+     * @param generation The game generation the update belongs to.
+     * @param update     The view update.
+     */
+    private void postToView(long generation, Runnable update) {
+        uiExecutor.execute(() -> {
+            if (generation == gameGeneration.get())
+                update.run();
+        });
+    }
 }